@@ -31,7 +31,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -40,6 +40,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.VisibleForTesting;
 
 public class BootstrapLauncher {
@@ -85,45 +86,18 @@ public class BootstrapLauncher {
         var pathLookup = new HashMap<Path, String>();
         // Map of filenames to their 'module number', where all filenames sharing the same 'module number' is combined into one
         var filenameMap = getMergeFilenameMap();
-        // Map of 'module number' to the list of paths which are combined into that module
-        var mergeMap = new LinkedHashMap<String, List<Path>>();
+        // Map of 'module number' to the list of jars which are combined into that module, in the order they were first encountered
+        var mergeMap = new LinkedHashMap<String, List<ClasspathJar>>();
 
-        var order = new ArrayList<String>();
+        // Open all jars in parallel, computing their module names and packages. The results keep the classpath order.
+        var classpathJars = legacyClasspath.parallelStream()
+                .map(legacy -> openClasspathJar(legacy, ignores))
+                .toList();
 
-        outer:
-        for (var legacy : legacyClasspath) {
-            var path = Paths.get(legacy);
-            var filename = path.getFileName().toString();
-
-            for (var filter : ignores) {
-                if (filename.startsWith(filter)) {
-                    if (DEBUG) {
-                        System.out.println("bsl: file '" + legacy + "' ignored because filename starts with '" + filter + "'");
-                    }
-                    continue outer;
-                }
-            }
-
-            if (DEBUG) {
-                System.out.println("bsl: encountered path '" + legacy + "'");
-            }
-
-            if (Files.notExists(path)) continue;
-
-            // This computes the module name for the given artifact
-            String moduleName;
-            try (var jarContent = JarContents.of(path)) {
-                moduleName = JarMetadata.from(jarContent).name();
-            } catch (UncheckedIOException | IOException e) {
-                if (DEBUG) {
-                    System.out.println("bsl: skipping '" + path + "' due to an IO error: " + e);
-                }
-                continue;
-            }
-
-            if ("".equals(moduleName)) {
-                continue;
-            }
+        for (var classpathJar : classpathJars) {
+            if (classpathJar == null) continue;
+            var path = classpathJar.path();
+            var moduleName = classpathJar.metadata().name();
 
             // If a module of the same name is already loaded, skip it
             var existingModuleLocation = loadedModules.get(moduleName);
@@ -136,38 +110,45 @@ public class BootstrapLauncher {
                 if (DEBUG) {
                     System.out.println("bsl: skipping '" + path + "' because it is already loaded on boot-path as " + moduleName);
                 }
+                closeQuietly(classpathJar.contents());
                 continue;
             }
 
-            var jarname = pathLookup.computeIfAbsent(path, k -> filenameMap.getOrDefault(filename, moduleName));
-            order.add(jarname);
-            mergeMap.computeIfAbsent(jarname, k -> new ArrayList<>()).add(path);
+            var jarname = pathLookup.computeIfAbsent(path, k -> filenameMap.getOrDefault(path.getFileName().toString(), moduleName));
+            mergeMap.computeIfAbsent(jarname, k -> new ArrayList<>()).add(classpathJar);
         }
 
         // Iterate over merged modules map and combine them into one SecureJar each
-        mergeMap.entrySet().stream().sorted(Comparator.comparingInt(e -> order.indexOf(e.getKey()))).forEach(e -> {
-            // skip empty paths
+        // This is the only sequential step, since every module may only use packages that no previous module uses
+        for (var e : mergeMap.entrySet()) {
             var name = e.getKey();
-            var paths = e.getValue();
-            if (paths.size() == 1 && Files.notExists(paths.get(0))) return;
-            var pathsArray = paths.toArray(Path[]::new);
-            var jarContents = new JarContentsBuilder()
-                    .paths(pathsArray)
-                    .pathFilter(new PackageTracker(Set.copyOf(previousPackages), pathsArray))
-                    .build();
-            var jar = SecureJar.from(jarContents);
+            var classpathJarsOfModule = e.getValue();
+            SecureJar jar;
+            if (classpathJarsOfModule.size() == 1 && Collections.disjoint(previousPackages, classpathJarsOfModule.getFirst().contents().getPackages())) {
+                // The package filter would not remove anything, so the jar that is already open can be used as-is
+                var classpathJar = classpathJarsOfModule.getFirst();
+                jar = SecureJar.from(classpathJar.contents(), classpathJar.metadata());
+            } else {
+                classpathJarsOfModule.forEach(classpathJar -> closeQuietly(classpathJar.contents()));
+                var pathsArray = classpathJarsOfModule.stream().map(ClasspathJar::path).toArray(Path[]::new);
+                var jarContents = new JarContentsBuilder()
+                        .paths(pathsArray)
+                        .pathFilter(new PackageTracker(Set.copyOf(previousPackages), pathsArray))
+                        .build();
+                jar = SecureJar.from(jarContents);
+            }
             var packages = jar.moduleDataProvider().descriptor().packages();
 
             if (DEBUG) {
                 System.out.println("bsl: the following paths are merged together in module " + name);
-                paths.forEach(path -> System.out.println("bsl:    " + path));
+                classpathJarsOfModule.forEach(classpathJar -> System.out.println("bsl:    " + classpathJar.path()));
                 System.out.println("bsl: list of packages for module " + name);
                 packages.forEach(p -> System.out.println("bsl:    " + p));
             }
 
             previousPackages.addAll(packages);
             jars.add(jar);
-        });
+        }
 
         var secureJarsArray = jars.toArray(SecureJar[]::new);
 
@@ -203,6 +184,63 @@ public class BootstrapLauncher {
         launcherMain.invoke(null, (Object) args); // cast to disambiguate with vararg
     }
 
+    /**
+     * A jar from the classpath, with its module metadata. Its packages have already been computed.
+     */
+    private record ClasspathJar(Path path, JarContents contents, JarMetadata metadata) {}
+
+    /**
+     * Opens the given classpath entry and computes its module name and packages,
+     * or returns {@code null} if it should not be turned into a module.
+     */
+    @Nullable
+    private static ClasspathJar openClasspathJar(String legacy, String[] ignores) {
+        var path = Paths.get(legacy);
+        var filename = path.getFileName().toString();
+
+        for (var filter : ignores) {
+            if (filename.startsWith(filter)) {
+                if (DEBUG) {
+                    System.out.println("bsl: file '" + legacy + "' ignored because filename starts with '" + filter + "'");
+                }
+                return null;
+            }
+        }
+
+        if (DEBUG) {
+            System.out.println("bsl: encountered path '" + legacy + "'");
+        }
+
+        if (Files.notExists(path)) return null;
+
+        // This computes the module name for the given artifact
+        JarContents jarContents = null;
+        try {
+            jarContents = JarContents.of(path);
+            var metadata = JarMetadata.from(jarContents);
+            if ("".equals(metadata.name())) {
+                jarContents.close();
+                return null;
+            }
+            jarContents.getPackages();
+            return new ClasspathJar(path, jarContents, metadata);
+        } catch (UncheckedIOException | IOException e) {
+            if (DEBUG) {
+                System.out.println("bsl: skipping '" + path + "' due to an IO error: " + e);
+            }
+            closeQuietly(jarContents);
+            return null;
+        }
+    }
+
+    private static void closeQuietly(@Nullable JarContents jarContents) {
+        if (jarContents != null) {
+            try {
+                jarContents.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
     /**
      * Find a mapping from module-name to filesystem location for the modules that are on the JVMs boot module path.
      */
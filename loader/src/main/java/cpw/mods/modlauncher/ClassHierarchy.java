@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) NeoForged and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package cpw.mods.modlauncher;
+
+import static cpw.mods.modlauncher.LogMarkers.MODLAUNCHER;
+
+import cpw.mods.modlauncher.api.ITransformerActivity;
+import cpw.mods.modlauncher.util.StringInterner;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * Class hierarchy used by {@link TransformerClassWriter} to compute stack map frames.
+ * <p>
+ * Class names are interned into int ids, and every class stores the sorted ids of all its supertypes (itself
+ * included), so subtype checks are a binary search and never allocate.
+ * <p>
+ * Class headers are read in order of preference from the already loaded class, from the untransformed class bytes
+ * if no transformer or launch plugin targets the class (only the header of the class file is parsed), and finally
+ * from the fully transformed class, since transformers and plugins can change the supertypes of their targets.
+ * <p>
+ * If a file is given, every header that is read is appended to it, and the headers in it are used on the next launch.
+ * The file must only be reused as long as the jars, transformers and plugins are unchanged, which is why it is
+ * stored as part of the {@link TransformedClassCache}. The hierarchy is therefore only persisted when that cache is
+ * enabled with {@code -Dmodlauncher.transformCache=true}; otherwise it is rebuilt on every launch.
+ */
+final class ClassHierarchy {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final String OBJECT = "java/lang/Object";
+    private static final int MAGIC = 0x4D4C4348; // MLCH
+    private static final int FORMAT_VERSION = 1;
+    private static final int[] NO_IDS = new int[0];
+
+    private final ClassTransformer classTransformer;
+    private final StringInterner names = new StringInterner(256);
+    // Indexed by id, only replaced or written to while holding the lock on this
+    private volatile Entry[] entries = new Entry[256];
+    // Headers read from the file of a previous launch
+    private final Map<String, Header> persisted;
+    @Nullable
+    private final Path file;
+    // Opened on the first write, guarded by the lock on this
+    @Nullable
+    private FileChannel output;
+
+    /**
+     * The direct supertypes of a class, as declared in its class file.
+     */
+    private record Header(@Nullable String superName, String[] interfaces, boolean isInterface) {}
+
+    /**
+     * The resolved hierarchy of a class. {@code supers} contains the ids of all supertypes and the class itself, sorted.
+     */
+    private record Entry(int superId, boolean isInterface, int[] supers) {
+        boolean isSubtypeOf(int id) {
+            return Arrays.binarySearch(supers, id) >= 0;
+        }
+    }
+
+    ClassHierarchy(final ClassTransformer classTransformer, @Nullable final Path file) {
+        this.classTransformer = classTransformer;
+        this.file = file;
+        this.persisted = file != null ? read(file) : Map.of();
+    }
+
+    /**
+     * Same contract as {@link org.objectweb.asm.ClassWriter#getCommonSuperClass(String, String)}.
+     */
+    String getCommonSuperClass(final String type1, final String type2) {
+        final int id1 = names.id(type1);
+        final int id2 = names.id(type2);
+        final Entry entry1 = entry(id1);
+        final Entry entry2 = entry(id2);
+        if (entry2.isSubtypeOf(id1)) {
+            return type1;
+        }
+        if (entry1.isSubtypeOf(id2)) {
+            return type2;
+        }
+        if (entry1.isInterface() || entry2.isInterface()) {
+            return OBJECT;
+        }
+
+        int id = id1;
+        do {
+            id = entry(id).superId();
+            if (id < 0) {
+                return OBJECT;
+            }
+        } while (!entry2.isSubtypeOf(id));
+        return names.string(id);
+    }
+
+    /**
+     * Adds the class that is currently being written, unless its hierarchy is already known.
+     */
+    void addClass(final ClassNode node) {
+        final int id = names.id(node.name);
+        if (knownEntry(id) == null) {
+            publish(id, node.name, new Header(node.superName, node.interfaces.toArray(String[]::new), (node.access & Opcodes.ACC_INTERFACE) != 0));
+        }
+    }
+
+    @Nullable
+    private Entry knownEntry(final int id) {
+        final Entry[] entries = this.entries;
+        return id < entries.length ? entries[id] : null;
+    }
+
+    private Entry entry(final int id) {
+        final Entry entry = knownEntry(id);
+        if (entry != null) {
+            return entry;
+        }
+        final String name = names.string(id);
+        return publish(id, name, readHeader(name));
+    }
+
+    private Entry publish(final int id, final String name, final Header header) {
+        // Resolve the supertypes before taking the lock, since that may have to load other classes
+        final int superId = header.superName() != null ? names.id(header.superName()) : -1;
+        int[] supers = superId >= 0 ? entry(superId).supers() : NO_IDS;
+        for (String itf : header.interfaces()) {
+            supers = merge(supers, entry(names.id(itf)).supers());
+        }
+        supers = merge(supers, new int[] { id });
+
+        synchronized (this) {
+            final Entry existing = knownEntry(id);
+            if (existing != null) {
+                // Another thread was faster
+                return existing;
+            }
+            final Entry entry = new Entry(superId, header.isInterface(), supers);
+            if (id >= entries.length) {
+                entries = Arrays.copyOf(entries, Math.max(entries.length * 2, id + 1));
+            }
+            entries[id] = entry;
+            if (file != null && !persisted.containsKey(name)) {
+                append(name, header);
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Merges two sorted arrays of ids, without duplicates.
+     */
+    private static int[] merge(final int[] a, final int[] b) {
+        final int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length || j < b.length) {
+            final int next;
+            if (j == b.length || i < a.length && a[i] < b[j]) {
+                next = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                next = b[j++];
+            } else {
+                next = a[i++];
+                j++;
+            }
+            result[k++] = next;
+        }
+        return k == result.length ? result : Arrays.copyOf(result, k);
+    }
+
+    private Header readHeader(final String className) {
+        final Header known = persisted.get(className);
+        if (known != null) {
+            return known;
+        }
+        final TransformingClassLoader loader = classTransformer.getTransformingClassLoader();
+        final Class<?> clazz = loader.getLoadedClass(className.replace('/', '.'));
+        if (clazz != null) {
+            return fromClass(clazz);
+        }
+        try {
+            return fromFile(className);
+        } catch (ClassNotFoundException e) {
+            //Don't panic just yet. Do a classload on the super classloader
+            //This is safe, as the TCL can't find the class, so it has to be on the super classloader, and it can't cause circulation,
+            //as classes from the parent classloader cannot reference classes from the TCL, as the parent only contains libraries and std lib
+            try {
+                return fromClass(Class.forName(className.replace('/', '.'), false, loader));
+            } catch (ClassNotFoundException classNotFoundException) {
+                classNotFoundException.addSuppressed(e);
+                LOGGER.fatal(MODLAUNCHER, "Failed to find class {} ", className, classNotFoundException);
+                throw new RuntimeException("Cannot find class " + className, classNotFoundException);
+            }
+        }
+    }
+
+    private static Header fromClass(final Class<?> clazz) {
+        final Class<?> superClass = clazz.getSuperclass();
+        final String[] interfaces = Arrays.stream(clazz.getInterfaces())
+                .map(c -> c.getName().replace('.', '/'))
+                .toArray(String[]::new);
+        return new Header(superClass != null ? superClass.getName().replace('.', '/') : null, interfaces, clazz.isInterface());
+    }
+
+    private Header fromFile(final String className) throws ClassNotFoundException {
+        final TransformingClassLoader loader = classTransformer.getTransformingClassLoader();
+        final String name = className.replace('/', '.');
+        byte[] classData;
+        try {
+            classData = loader.readUntransformedClassBytes(name);
+        } catch (IOException e) {
+            classData = new byte[0];
+        }
+        // Only targeted classes can have different supertypes after transformation, so only those need to be transformed
+        if (classData.length == 0 || classTransformer.isTransformationTarget(Type.getObjectType(className), ITransformerActivity.COMPUTING_FRAMES_REASON)) {
+            classData = loader.buildTransformedClassNodeFor(name, ITransformerActivity.COMPUTING_FRAMES_REASON);
+        }
+        // Constructing the reader only indexes the constant pool, the header is read without parsing the rest of the class
+        final ClassReader classReader = new ClassReader(classData);
+        return new Header(classReader.getSuperName(), classReader.getInterfaces(), (classReader.getAccess() & Opcodes.ACC_INTERFACE) != 0);
+    }
+
+    private static Map<String, Header> read(final Path file) {
+        if (!Files.isRegularFile(file)) {
+            return Map.of();
+        }
+        final Map<String, Header> headers = new HashMap<>();
+        try (var in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                Files.delete(file);
+                return Map.of();
+            }
+            while (true) {
+                final String name = in.readUTF();
+                final String superName = in.readUTF();
+                final boolean isInterface = in.readBoolean();
+                final String[] interfaces = new String[in.readUnsignedShort()];
+                for (int i = 0; i < interfaces.length; i++) {
+                    interfaces[i] = in.readUTF();
+                }
+                headers.put(name, new Header(superName.isEmpty() ? null : superName, interfaces, isInterface));
+            }
+        } catch (EOFException e) {
+            // End of the file, or a record that was cut short by the game exiting while it was written
+        } catch (IOException e) {
+            LOGGER.debug(MODLAUNCHER, "Failed to read class hierarchy cache {}", file, e);
+        }
+        return headers;
+    }
+
+    // Must be called while holding the lock on this
+    private void append(final String name, final Header header) {
+        try {
+            if (output == null) {
+                output = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            final var bos = new ByteArrayOutputStream();
+            try (var out = new DataOutputStream(bos)) {
+                if (output.size() == 0) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                }
+                out.writeUTF(name);
+                out.writeUTF(header.superName() != null ? header.superName() : "");
+                out.writeBoolean(header.isInterface());
+                out.writeShort(header.interfaces().length);
+                for (String itf : header.interfaces()) {
+                    out.writeUTF(itf);
+                }
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(bos.toByteArray());
+            while (buffer.hasRemaining()) {
+                output.write(buffer);
+            }
+        } catch (IOException e) {
+            LOGGER.debug(MODLAUNCHER, "Failed to write class hierarchy cache {}", file, e);
+        }
+    }
+}
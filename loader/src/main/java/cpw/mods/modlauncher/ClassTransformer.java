@@ -18,7 +18,6 @@ import static cpw.mods.modlauncher.LogMarkers.MODLAUNCHER;
 
 import cpw.mods.modlauncher.api.ITransformer;
 import cpw.mods.modlauncher.api.ITransformerActivity;
-import cpw.mods.modlauncher.api.TargetType;
 import cpw.mods.modlauncher.api.TransformerVoteResult;
 import cpw.mods.modlauncher.serviceapi.ILaunchPluginService;
 import java.io.IOException;
@@ -30,15 +29,13 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.List;
-import java.util.Map;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.Marker;
 import org.apache.logging.log4j.MarkerManager;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
@@ -58,16 +55,25 @@ public class ClassTransformer {
     private final LaunchPluginHandler pluginHandler;
     private final TransformingClassLoader transformingClassLoader;
     private final TransformerAuditTrail auditTrail;
+    @Nullable
+    private final TransformedClassCache transformCache;
+    private final ClassHierarchy classHierarchy;
 
     ClassTransformer(TransformStore transformStore, LaunchPluginHandler pluginHandler, final TransformingClassLoader transformingClassLoader) {
         this(transformStore, pluginHandler, transformingClassLoader, new TransformerAuditTrail());
     }
 
     ClassTransformer(final TransformStore transformStore, final LaunchPluginHandler pluginHandler, final TransformingClassLoader transformingClassLoader, final TransformerAuditTrail tat) {
+        this(transformStore, pluginHandler, transformingClassLoader, tat, null);
+    }
+
+    ClassTransformer(final TransformStore transformStore, final LaunchPluginHandler pluginHandler, final TransformingClassLoader transformingClassLoader, final TransformerAuditTrail tat, @Nullable final TransformedClassCache transformCache) {
         this.transformers = transformStore;
         this.pluginHandler = pluginHandler;
         this.transformingClassLoader = transformingClassLoader;
         this.auditTrail = tat;
+        this.transformCache = transformCache;
+        this.classHierarchy = new ClassHierarchy(this, transformCache != null ? transformCache.getHierarchyFile() : null);
     }
 
     byte[] transform(byte[] inputClass, String className, final String reason) {
@@ -81,6 +87,19 @@ public class ClassTransformer {
             return inputClass;
         }
 
+        // Only real class loads are cached, frame computation skips frames and synthetic classes may depend on plugin state.
+        // Classes handled by launch plugins are never cached, since plugins may keep state about the classes they process.
+        if (transformCache != null && launchPluginTransformerSet.isEmpty() && inputClass.length > 0 && ITransformerActivity.CLASSLOADING_REASON.equals(reason)) {
+            return transformCache.computeIfAbsent(className, inputClass, () -> transformClass(inputClass, className, reason, classDesc, launchPluginTransformerSet, needsTransforming));
+        }
+        return transformClass(inputClass, className, reason, classDesc, launchPluginTransformerSet, needsTransforming);
+    }
+
+    private byte[] transformClass(byte[] inputClass, String className, final String reason, final Type classDesc, final EnumMap<ILaunchPluginService.Phase, List<ILaunchPluginService>> launchPluginTransformerSet, final boolean needsTransforming) {
+        if (!needsTransforming && inputClass.length > 0 && LaunchPluginHandler.allUseClassVisitors(launchPluginTransformerSet)) {
+            return visitClass(inputClass, className, reason, classDesc, launchPluginTransformerSet);
+        }
+
         ClassNode clazz = new ClassNode(Opcodes.ASM9);
         Supplier<byte[]> digest;
         boolean empty;
@@ -98,7 +117,9 @@ public class ClassTransformer {
         }
         auditTrail.addReason(classDesc.getClassName(), reason);
 
-        final int preFlags = pluginHandler.offerClassNodeToPlugins(ILaunchPluginService.Phase.BEFORE, launchPluginTransformerSet.getOrDefault(ILaunchPluginService.Phase.BEFORE, Collections.emptyList()), clazz, classDesc, auditTrail, reason);
+        final LaunchPluginHandler.ProcessedClass preProcessed = pluginHandler.offerClassNodeToPlugins(ILaunchPluginService.Phase.BEFORE, launchPluginTransformerSet.getOrDefault(ILaunchPluginService.Phase.BEFORE, Collections.emptyList()), clazz, classDesc, auditTrail, reason);
+        clazz = preProcessed.node();
+        final int preFlags = preProcessed.flags();
         if (preFlags == ILaunchPluginService.ComputeFlags.NO_REWRITE && !needsTransforming && launchPluginTransformerSet.getOrDefault(ILaunchPluginService.Phase.AFTER, Collections.emptyList()).isEmpty()) {
             // Shortcut if there's no further work to do
             return inputClass;
@@ -107,30 +128,33 @@ public class ClassTransformer {
         if (needsTransforming) {
             VotingContext context = new VotingContext(className, empty, digest, auditTrail.getActivityFor(className), reason);
 
-            List<ITransformer<ClassNode>> preClassTransformers = new ArrayList<>(transformers.getTransformersFor(className, TargetType.PRE_CLASS));
-            clazz = this.performVote(preClassTransformers, clazz, context);
+            final TransformStore.TransformerPlan plan = transformers.getTransformerPlan(classDesc.getInternalName());
+            clazz = this.performVote(plan.preClassTransformers(), clazz, context);
 
-            List<FieldNode> fieldList = new ArrayList<>(clazz.fields.size());
-            // it's probably possible to inject "dummy" fields into this list for spawning new fields without class transform
-            for (FieldNode field : clazz.fields) {
-                List<ITransformer<FieldNode>> fieldTransformers = new ArrayList<>(transformers.getTransformersFor(className, field));
-                fieldList.add(this.performVote(fieldTransformers, field, context));
+            if (!plan.fieldTransformers().isEmpty()) {
+                List<FieldNode> fieldList = new ArrayList<>(clazz.fields.size());
+                // it's probably possible to inject "dummy" fields into this list for spawning new fields without class transform
+                for (FieldNode field : clazz.fields) {
+                    fieldList.add(this.performVote(plan.getTransformersFor(field), field, context));
+                }
+                clazz.fields = fieldList;
             }
 
-            // it's probably possible to inject "dummy" methods into this list for spawning new methods without class transform
-            List<MethodNode> methodList = new ArrayList<>(clazz.methods.size());
-            for (MethodNode method : clazz.methods) {
-                List<ITransformer<MethodNode>> methodTransformers = new ArrayList<>(transformers.getTransformersFor(className, method));
-                methodList.add(this.performVote(methodTransformers, method, context));
+            if (!plan.methodTransformers().isEmpty()) {
+                // it's probably possible to inject "dummy" methods into this list for spawning new methods without class transform
+                List<MethodNode> methodList = new ArrayList<>(clazz.methods.size());
+                for (MethodNode method : clazz.methods) {
+                    methodList.add(this.performVote(plan.getTransformersFor(method), method, context));
+                }
+                clazz.methods = methodList;
             }
 
-            clazz.fields = fieldList;
-            clazz.methods = methodList;
-            List<ITransformer<ClassNode>> classTransformers = new ArrayList<>(transformers.getTransformersFor(className, TargetType.CLASS));
-            clazz = this.performVote(classTransformers, clazz, context);
+            clazz = this.performVote(plan.classTransformers(), clazz, context);
         }
 
-        final int postFlags = pluginHandler.offerClassNodeToPlugins(ILaunchPluginService.Phase.AFTER, launchPluginTransformerSet.getOrDefault(ILaunchPluginService.Phase.AFTER, Collections.emptyList()), clazz, classDesc, auditTrail, reason);
+        final LaunchPluginHandler.ProcessedClass postProcessed = pluginHandler.offerClassNodeToPlugins(ILaunchPluginService.Phase.AFTER, launchPluginTransformerSet.getOrDefault(ILaunchPluginService.Phase.AFTER, Collections.emptyList()), clazz, classDesc, auditTrail, reason);
+        clazz = postProcessed.node();
+        final int postFlags = postProcessed.flags();
         if (preFlags == ILaunchPluginService.ComputeFlags.NO_REWRITE && postFlags == ILaunchPluginService.ComputeFlags.NO_REWRITE && !needsTransforming) {
             return inputClass;
         }
@@ -150,6 +174,38 @@ public class ClassTransformer {
         return cw.toByteArray();
     }
 
+    /**
+     * Streams the class through launch plugins that all use class visitors, without building a {@link ClassNode}.
+     */
+    private byte[] visitClass(byte[] inputClass, String className, final String reason, final Type classDesc, final EnumMap<ILaunchPluginService.Phase, List<ILaunchPluginService>> launchPluginTransformerSet) {
+        auditTrail.addReason(classDesc.getClassName(), reason);
+        final ClassReader classReader = new ClassReader(inputClass);
+        // Passing the reader lets the writer copy the constant pool and any unchanged methods as they are
+        final ClassWriter simpleWriter = new ClassWriter(classReader, 0);
+        final int flags = pluginHandler.offerClassToPluginVisitors(launchPluginTransformerSet, classReader, simpleWriter, classDesc, auditTrail, reason);
+        if (flags == ILaunchPluginService.ComputeFlags.NO_REWRITE) {
+            return inputClass;
+        }
+
+        byte[] result = simpleWriter.toByteArray();
+        int writerFlags = flags & ~ILaunchPluginService.ComputeFlags.SIMPLE_REWRITE;
+        //Don't compute frames when loading for frame computation to avoid cycles. The byte data will only be used for computing frames anyway
+        if (reason.equals(ITransformerActivity.COMPUTING_FRAMES_REASON))
+            writerFlags &= ~ILaunchPluginService.ComputeFlags.COMPUTE_FRAMES;
+        if (writerFlags != 0) {
+            // Frames or maxs need to be recomputed, which requires the whole class, so do it on the rewritten class
+            final ClassNode clazz = new ClassNode(Opcodes.ASM9);
+            new ClassReader(result).accept(clazz, (writerFlags & ILaunchPluginService.ComputeFlags.COMPUTE_FRAMES) != 0 ? ClassReader.SKIP_FRAMES : ClassReader.EXPAND_FRAMES);
+            final ClassWriter cw = TransformerClassWriter.createClassWriter(writerFlags, this, clazz);
+            clazz.accept(cw);
+            result = cw.toByteArray();
+        }
+        if (LOGGER.isEnabled(Level.TRACE) && ITransformerActivity.CLASSLOADING_REASON.equals(reason) && LOGGER.isEnabled(Level.TRACE, CLASSDUMP)) {
+            dumpClass(result, className);
+        }
+        return result;
+    }
+
     private static Path tempDir;
 
     private void dumpClass(final byte[] clazz, String className) {
@@ -174,38 +230,66 @@ public class ClassTransformer {
         }
     }
 
-    private <T> T performVote(List<ITransformer<T>> transformers, T node, VotingContext context) {
+    private <T> T performVote(@Nullable List<ITransformer<T>> targetedTransformers, T node, VotingContext context) {
+        if (targetedTransformers == null || targetedTransformers.isEmpty()) {
+            return node;
+        }
+        // The transformers still taking part in voting are kept at the start of the array, in their original order
+        @SuppressWarnings("unchecked")
+        final ITransformer<T>[] transformers = targetedTransformers.toArray(new ITransformer[0]);
+        final TransformerVoteResult[] votes = new TransformerVoteResult[transformers.length];
+        int remaining = transformers.length;
         context.setNode(node);
         do {
-            final Stream<TransformerVote<T>> voteResultStream = transformers.stream().map(t -> gatherVote(t, context));
-            final Map<TransformerVoteResult, List<TransformerVote<T>>> results = voteResultStream.collect(Collectors.groupingBy(TransformerVote::getResult));
+            int firstYes = -1;
+            boolean rejected = false;
+            boolean deferred = false;
+            for (int i = 0; i < remaining; i++) {
+                final TransformerVoteResult vote = transformers[i].castVote(context);
+                votes[i] = vote;
+                switch (vote) {
+                    case YES -> {
+                        if (firstYes < 0) firstYes = i;
+                    }
+                    case DEFER -> deferred = true;
+                    case REJECT -> rejected = true;
+                    case NO -> {}
+                }
+            }
             // Someone rejected the current state. We're done here, and cannot proceed.
-            if (results.containsKey(TransformerVoteResult.REJECT)) {
-                throw new VoteRejectedException(results.get(TransformerVoteResult.REJECT), node.getClass());
+            if (rejected) {
+                throw new VoteRejectedException(collectVotes(transformers, votes, remaining, TransformerVoteResult.REJECT), node.getClass());
             }
-            // Remove all the "NO" voters - they don't wish to participate in further voting rounds
-            if (results.containsKey(TransformerVoteResult.NO)) {
-                transformers.removeAll(results.get(TransformerVoteResult.NO).stream().map(TransformerVote::getTransformer).collect(Collectors.toList()));
+            // If we get here without a YES and find a DEFER, it means everyone just voted to DEFER. That's an untenable state and we cannot proceed.
+            if (firstYes < 0 && deferred) {
+                throw new VoteDeadlockException(collectVotes(transformers, votes, remaining, TransformerVoteResult.DEFER), node.getClass());
             }
-            // If there's at least one YES voter, let's apply the first one we find, remove them, and continue.
-            if (results.containsKey(TransformerVoteResult.YES)) {
-                final ITransformer<T> transformer = results.get(TransformerVoteResult.YES).get(0).getTransformer();
+            // If there's at least one YES voter, let's apply the first one we find
+            if (firstYes >= 0) {
+                final ITransformer<T> transformer = transformers[firstYes];
                 node = transformer.transform(node, context);
                 auditTrail.addTransformerAuditTrail(context.getClassName(), ((TransformerHolder<?>) transformer).owner(), transformer);
-                transformers.remove(transformer);
-                continue;
             }
-            // If we get here and find a DEFER, it means everyone just voted to DEFER. That's an untenable state and we cannot proceed.
-            if (results.containsKey(TransformerVoteResult.DEFER)) {
-                throw new VoteDeadlockException(results.get(TransformerVoteResult.DEFER), node.getClass());
+            // Remove the applied YES voter and all the "NO" voters - they don't wish to participate in further voting rounds
+            int kept = 0;
+            for (int i = 0; i < remaining; i++) {
+                if (i != firstYes && votes[i] != TransformerVoteResult.NO) {
+                    transformers[kept++] = transformers[i];
+                }
             }
-        } while (!transformers.isEmpty());
+            remaining = kept;
+        } while (remaining > 0);
         return node;
     }
 
-    private <T> TransformerVote<T> gatherVote(ITransformer<T> transformer, VotingContext context) {
-        TransformerVoteResult vr = transformer.castVote(context);
-        return new TransformerVote<>(vr, transformer);
+    private static <T> List<TransformerVote<T>> collectVotes(ITransformer<T>[] transformers, TransformerVoteResult[] votes, int count, TransformerVoteResult result) {
+        final List<TransformerVote<T>> collected = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (votes[i] == result) {
+                collected.add(new TransformerVote<>(votes[i], transformers[i]));
+            }
+        }
+        return collected;
     }
 
     private MessageDigest getSha256() {
@@ -219,4 +303,15 @@ public class ClassTransformer {
     TransformingClassLoader getTransformingClassLoader() {
         return transformingClassLoader;
     }
+
+    ClassHierarchy getClassHierarchy() {
+        return classHierarchy;
+    }
+
+    /**
+     * {@return whether any transformer or launch plugin would process the given class}
+     */
+    boolean isTransformationTarget(final Type classDesc, final String reason) {
+        return transformers.needsTransforming(classDesc.getInternalName()) || pluginHandler.handlesClass(classDesc, false, reason);
+    }
 }
@@ -28,9 +28,11 @@ import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -38,6 +40,9 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.VisibleForTesting;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
 
@@ -71,6 +76,33 @@ public class LaunchPluginHandler {
         return Optional.ofNullable(plugins.get(name));
     }
 
+    /**
+     * Describes every plugin, including the version of the module or package it comes from.
+     */
+    void describePlugins(Consumer<String> consumer) {
+        plugins.forEach((name, plugin) -> {
+            final Class<?> pluginClass = plugin.getClass();
+            final var descriptor = pluginClass.getModule().getDescriptor();
+            final String version = descriptor != null
+                    ? descriptor.rawVersion().orElse("")
+                    : Objects.requireNonNullElse(pluginClass.getPackage().getImplementationVersion(), "");
+            consumer.accept("plugin:" + name + ":" + pluginClass.getName() + ":" + version);
+        });
+    }
+
+    /**
+     * {@return whether any plugin would handle the given class}
+     * Unlike {@link #computeLaunchPluginTransformerSet}, this does not register custom audit consumers with the plugins.
+     */
+    boolean handlesClass(final Type className, final boolean isEmpty, final String reason) {
+        for (ILaunchPluginService plugin : plugins.values()) {
+            if (!plugin.handlesClass(className, isEmpty, reason).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public EnumMap<ILaunchPluginService.Phase, List<ILaunchPluginService>> computeLaunchPluginTransformerSet(final Type className, final boolean isEmpty, final String reason, final TransformerAuditTrail auditTrail) {
         Set<ILaunchPluginService> uniqueValues = new HashSet<>();
         final EnumMap<ILaunchPluginService.Phase, List<ILaunchPluginService>> phaseObjectEnumMap = new EnumMap<>(ILaunchPluginService.Phase.class);
@@ -90,11 +122,28 @@ public class LaunchPluginHandler {
         plugins.forEach((n, p) -> p.addResources(scanResults));
     }
 
-    int offerClassNodeToPlugins(final ILaunchPluginService.Phase phase, final List<ILaunchPluginService> plugins, @Nullable final ClassNode node, final Type className, TransformerAuditTrail auditTrail, final String reason) {
+    /**
+     * The result of offering a class node to plugins. Plugins that use a class visitor produce a new node.
+     */
+    record ProcessedClass(@Nullable ClassNode node, int flags) {}
+
+    ProcessedClass offerClassNodeToPlugins(final ILaunchPluginService.Phase phase, final List<ILaunchPluginService> plugins, @Nullable ClassNode node, final Type className, TransformerAuditTrail auditTrail, final String reason) {
         int flags = 0;
         for (ILaunchPluginService iLaunchPluginService : plugins) {
             LOGGER.debug(LAUNCHPLUGIN, "LauncherPluginService {} offering transform {}", iLaunchPluginService.name(), className.getClassName());
-            final int pluginFlags = iLaunchPluginService.processClassWithFlags(phase, node, className, reason);
+            final int pluginFlags;
+            if (iLaunchPluginService.usesClassVisitor()) {
+                if (node == null) continue;
+                final int[] visitorFlags = new int[1];
+                final ClassNode result = new ClassNode(Opcodes.ASM9);
+                node.accept(iLaunchPluginService.visitClass(phase, result, className, reason, f -> visitorFlags[0] |= f));
+                pluginFlags = visitorFlags[0];
+                if (pluginFlags != ILaunchPluginService.ComputeFlags.NO_REWRITE) {
+                    node = result;
+                }
+            } else {
+                pluginFlags = iLaunchPluginService.processClassWithFlags(phase, node, className, reason);
+            }
             if (pluginFlags != ILaunchPluginService.ComputeFlags.NO_REWRITE) {
                 auditTrail.addPluginAuditTrail(className.getClassName(), iLaunchPluginService, phase);
                 LOGGER.debug(LAUNCHPLUGIN, "LauncherPluginService {} transformed {} with class compute flags {}", iLaunchPluginService.name(), className.getClassName(), pluginFlags);
@@ -102,6 +151,57 @@ public class LaunchPluginHandler {
             }
         }
         LOGGER.debug(LAUNCHPLUGIN, "Final flags state for {} is {}", className.getClassName(), flags);
+        return new ProcessedClass(node, flags);
+    }
+
+    /**
+     * {@return whether all the given plugins use class visitors}
+     */
+    static boolean allUseClassVisitors(final EnumMap<ILaunchPluginService.Phase, List<ILaunchPluginService>> plugins) {
+        for (List<ILaunchPluginService> phasePlugins : plugins.values()) {
+            for (ILaunchPluginService plugin : phasePlugins) {
+                if (!plugin.usesClassVisitor()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Streams the class from the reader through the visitors of the given plugins, which must all
+     * {@linkplain ILaunchPluginService#usesClassVisitor() use class visitors}, and into the given visitor.
+     *
+     * @return the combined flags of all plugins
+     */
+    int offerClassToPluginVisitors(final EnumMap<ILaunchPluginService.Phase, List<ILaunchPluginService>> plugins, final ClassReader classReader, final ClassVisitor output, final Type className, TransformerAuditTrail auditTrail, final String reason) {
+        final List<ILaunchPluginService> before = plugins.getOrDefault(ILaunchPluginService.Phase.BEFORE, List.of());
+        final List<ILaunchPluginService> after = plugins.getOrDefault(ILaunchPluginService.Phase.AFTER, List.of());
+        final int[] pluginFlags = new int[before.size() + after.size()];
+        // Build the chain from its end, so that the first BEFORE plugin sees the class first
+        ClassVisitor visitor = output;
+        for (int i = after.size() - 1; i >= 0; i--) {
+            final int index = before.size() + i;
+            visitor = after.get(i).visitClass(ILaunchPluginService.Phase.AFTER, visitor, className, reason, f -> pluginFlags[index] |= f);
+        }
+        for (int i = before.size() - 1; i >= 0; i--) {
+            final int index = i;
+            visitor = before.get(i).visitClass(ILaunchPluginService.Phase.BEFORE, visitor, className, reason, f -> pluginFlags[index] |= f);
+        }
+        LOGGER.debug(LAUNCHPLUGIN, "Streaming {} through LaunchPluginServices {} and {}", className.getClassName(), before, after);
+        classReader.accept(visitor, 0);
+
+        int flags = 0;
+        for (int i = 0; i < pluginFlags.length; i++) {
+            if (pluginFlags[i] != ILaunchPluginService.ComputeFlags.NO_REWRITE) {
+                final boolean isBefore = i < before.size();
+                final ILaunchPluginService plugin = isBefore ? before.get(i) : after.get(i - before.size());
+                auditTrail.addPluginAuditTrail(className.getClassName(), plugin, isBefore ? ILaunchPluginService.Phase.BEFORE : ILaunchPluginService.Phase.AFTER);
+                LOGGER.debug(LAUNCHPLUGIN, "LauncherPluginService {} transformed {} with class compute flags {}", plugin.name(), className.getClassName(), pluginFlags[i]);
+                flags |= pluginFlags[i];
+            }
+        }
+        LOGGER.debug(LAUNCHPLUGIN, "Final flags state for {} is {}", className.getClassName(), flags);
         return flags;
     }
 
@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Holds onto a specific list of transformers targetting a particular node type
@@ -51,8 +52,17 @@ public class TransformList<T> {
         });
     }
 
+    void describeTransformers(Consumer<String> consumer) {
+        transformers.forEach((label, list) -> {
+            for (ITransformer<T> transformer : list) {
+                final String owner = transformer instanceof TransformerHolder<?> holder ? holder.owner().name() : "";
+                final Object impl = transformer instanceof TransformerHolder<?> holder ? holder.wrapped() : transformer;
+                consumer.accept("transformer:" + label + ":" + owner + ":" + impl.getClass().getName() + ":" + String.join(",", transformer.labels()));
+            }
+        });
+    }
+
     List<ITransformer<T>> getTransformersForLabel(TransformTargetLabel label) {
-        // thread safety - compute if absent to insert the list
-        return transformers.computeIfAbsent(label, v -> new ArrayList<>());
+        return transformers.getOrDefault(label, List.of());
     }
 }
@@ -21,11 +21,15 @@ import cpw.mods.modlauncher.api.ITransformer;
 import cpw.mods.modlauncher.api.TargetType;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
@@ -37,6 +41,31 @@ public class TransformStore {
     private static final Logger LOGGER = LogManager.getLogger();
     private final Set<String> classNeedsTransforming = new HashSet<>();
     private final Map<TargetType<?>, TransformList<?>> transformers;
+    // Field and method targets of each class, by internal class name
+    private final Map<String, Set<TransformTargetLabel>> memberTargets = new HashMap<>();
+    // Built on first use, and dropped whenever a transformer for the class is added
+    private final Map<String, TransformerPlan> plans = new ConcurrentHashMap<>();
+
+    /**
+     * The transformers for a single class. Fields are keyed by name, and methods by name and then descriptor,
+     * so members without transformers can be looked up without allocating.
+     */
+    record TransformerPlan(
+            List<ITransformer<ClassNode>> preClassTransformers,
+            Map<String, List<ITransformer<FieldNode>>> fieldTransformers,
+            Map<String, Map<String, List<ITransformer<MethodNode>>>> methodTransformers,
+            List<ITransformer<ClassNode>> classTransformers) {
+        @Nullable
+        List<ITransformer<FieldNode>> getTransformersFor(FieldNode field) {
+            return fieldTransformers.get(field.name);
+        }
+
+        @Nullable
+        List<ITransformer<MethodNode>> getTransformersFor(MethodNode method) {
+            final Map<String, List<ITransformer<MethodNode>>> byDesc = methodTransformers.get(method.name);
+            return byDesc != null ? byDesc.get(method.desc) : null;
+        }
+    }
 
     public TransformStore() {
         transformers = new HashMap<>();
@@ -44,30 +73,59 @@ public class TransformStore {
             transformers.put(type, new TransformList<>(type.getNodeType()));
     }
 
-    List<ITransformer<FieldNode>> getTransformersFor(String className, FieldNode field) {
-        TransformTargetLabel tl = new TransformTargetLabel(className, field.name);
-        TransformList<FieldNode> transformerlist = TargetType.FIELD.get(this.transformers);
-        return transformerlist.getTransformersForLabel(tl);
+    /**
+     * {@return the transformers for the given class}
+     * Requires internal class name (using '/' instead of '.')
+     */
+    TransformerPlan getTransformerPlan(String internalClassName) {
+        return plans.computeIfAbsent(internalClassName, this::buildTransformerPlan);
     }
 
-    List<ITransformer<MethodNode>> getTransformersFor(String className, MethodNode method) {
-        TransformTargetLabel tl = new TransformTargetLabel(className, method.name, method.desc);
-        TransformList<MethodNode> transformerlist = TargetType.METHOD.get(this.transformers);
-        return transformerlist.getTransformersForLabel(tl);
+    private TransformerPlan buildTransformerPlan(String internalClassName) {
+        final Map<String, List<ITransformer<FieldNode>>> fieldTransformers = new HashMap<>();
+        final Map<String, Map<String, List<ITransformer<MethodNode>>>> methodTransformers = new HashMap<>();
+        final TransformList<FieldNode> fieldList = TargetType.FIELD.get(this.transformers);
+        final TransformList<MethodNode> methodList = TargetType.METHOD.get(this.transformers);
+        for (TransformTargetLabel label : memberTargets.getOrDefault(internalClassName, Set.of())) {
+            if (label.getTargetType() == TargetType.FIELD) {
+                fieldTransformers.put(label.getElementName(), List.copyOf(fieldList.getTransformersForLabel(label)));
+            } else {
+                methodTransformers.computeIfAbsent(label.getElementName(), k -> new HashMap<>())
+                        .put(label.getElementDescriptor().getDescriptor(), List.copyOf(methodList.getTransformersForLabel(label)));
+            }
+        }
+        return new TransformerPlan(
+                getClassTransformers(internalClassName, TargetType.PRE_CLASS),
+                fieldTransformers,
+                methodTransformers,
+                getClassTransformers(internalClassName, TargetType.CLASS));
     }
 
-    List<ITransformer<ClassNode>> getTransformersFor(String className, TargetType<ClassNode> classType) {
-        TransformTargetLabel tl = new TransformTargetLabel(className, classType);
+    private List<ITransformer<ClassNode>> getClassTransformers(String internalClassName, TargetType<ClassNode> classType) {
+        TransformTargetLabel tl = new TransformTargetLabel(internalClassName, classType);
         TransformList<ClassNode> transformerlist = classType.get(this.transformers);
-        return transformerlist.getTransformersForLabel(tl);
+        return List.copyOf(transformerlist.getTransformersForLabel(tl));
     }
 
     @SuppressWarnings("unchecked")
     <T> void addTransformer(TransformTargetLabel targetLabel, ITransformer<T> transformer, ITransformationService service) {
         LOGGER.debug(MODLAUNCHER, "Adding transformer {} to {}", () -> transformer, () -> targetLabel);
-        classNeedsTransforming.add(targetLabel.getClassName().getInternalName());
+        final String internalClassName = targetLabel.getClassName().getInternalName();
+        classNeedsTransforming.add(internalClassName);
+        if (targetLabel.getTargetType() == TargetType.FIELD || targetLabel.getTargetType() == TargetType.METHOD) {
+            memberTargets.computeIfAbsent(internalClassName, k -> new LinkedHashSet<>()).add(targetLabel);
+        }
         final TransformList<T> transformList = (TransformList<T>) this.transformers.get(targetLabel.getTargetType());
         transformList.addTransformer(targetLabel, new TransformerHolder<>(transformer, service));
+        plans.remove(internalClassName);
+    }
+
+    /**
+     * Describes every registered transformer target, together with the service and class providing the transformer.
+     * Used to detect changes in the transformer setup between launches.
+     */
+    void describeTransformers(Consumer<String> consumer) {
+        transformers.values().forEach(list -> list.describeTransformers(consumer));
     }
 
     /**
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) NeoForged and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package cpw.mods.modlauncher;
+
+import static cpw.mods.modlauncher.LogMarkers.MODLAUNCHER;
+
+import cpw.mods.modlauncher.api.ITransformerActivity;
+import cpw.mods.niofs.union.UnionFileSystem;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.module.Configuration;
+import java.lang.module.ResolvedModule;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * On-disk cache for the output of {@link ClassTransformer#transform}.
+ * <p>
+ * Entries are keyed by the name and SHA-256 digest of the untransformed class and stored in a directory named
+ * after a fingerprint of everything else that can influence the transformation result: the registered transformer
+ * targets, the active launch plugins and their versions, the audit trail mode, and the location, size and
+ * modification time of every jar in the module layers visible to the transforming class loader (which includes
+ * the jars of all transformers and plugins). Changing any of them selects a fresh directory, and stale directories
+ * are removed when the cache is opened.
+ * <p>
+ * The cache is opt-in via {@code -Dmodlauncher.transformCache=true}, since transformers and plugins that base
+ * their output on state outside of the jars (such as configuration files) cannot be detected.
+ * It is also disabled when any of the jars is a directory, since those cannot be fingerprinted cheaply.
+ * <p>
+ * Only classes that are handled by transformers alone are cached. Launch plugins (such as Mixin) may keep state about
+ * the classes they process, so a class that any plugin handles is transformed on every launch and never stored.
+ * On a hit, transformers do not see the class: only the audit trail entries that were recorded when the class was
+ * transformed are replayed.
+ */
+final class TransformedClassCache {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("modlauncher.transformCache", "false"));
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAGIC = 0x4D4C5443; // MLTC
+
+    private final Path cacheDir;
+    private final TransformerAuditTrail auditTrail;
+
+    private TransformedClassCache(Path cacheDir, TransformerAuditTrail auditTrail) {
+        this.cacheDir = cacheDir;
+        this.auditTrail = auditTrail;
+    }
+
+    /**
+     * Opens the cache for the given transformation setup, or returns {@code null} if caching is disabled or
+     * not possible for this setup.
+     */
+    @Nullable
+    static TransformedClassCache open(@Nullable Path gameDir, TransformStore transformStore, LaunchPluginHandler pluginHandler, Configuration configuration, TransformerAuditTrail auditTrail) {
+        if (!ENABLED || gameDir == null) {
+            return null;
+        }
+        try {
+            var fingerprint = computeFingerprint(transformStore, pluginHandler, configuration, auditTrail);
+            if (fingerprint == null) {
+                LOGGER.info(MODLAUNCHER, "Transformed class cache is disabled, since some of the loaded jars are directories");
+                return null;
+            }
+            var cacheRoot = gameDir.resolve(".cache").resolve("modlauncher").resolve("transformed");
+            var cacheDir = cacheRoot.resolve(fingerprint);
+            removeStaleEntries(cacheRoot, cacheDir);
+            Files.createDirectories(cacheDir);
+            LOGGER.info(MODLAUNCHER, "Using transformed class cache in {}, transformers will not see cached classes", cacheDir);
+            return new TransformedClassCache(cacheDir, auditTrail);
+        } catch (IOException e) {
+            LOGGER.error(MODLAUNCHER, "Failed to open the transformed class cache, continuing without it", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the cached transformation result for the class, or computes and stores it using the given transformer.
+     * The audit trail entries recorded during the transformation are stored alongside the class and replayed on a hit.
+     */
+    byte[] computeIfAbsent(String className, byte[] inputClass, Supplier<byte[]> transformer) {
+        final var entry = entryPath(className, inputClass);
+        final var cached = read(className, entry);
+        if (cached != null) {
+            return cached;
+        }
+
+        final var captured = auditTrail.capture(className, transformer);
+        write(entry, captured.activities(), captured.result());
+        return captured.result();
+    }
+
+    /**
+     * {@return the file in which the {@link ClassHierarchy} of this setup is stored}
+     */
+    Path getHierarchyFile() {
+        return cacheDir.resolve("hierarchy.bin");
+    }
+
+    private Path entryPath(String className, byte[] inputClass) {
+        final var digest = sha256();
+        digest.update(className.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        final var hex = HexFormat.of().formatHex(digest.digest(inputClass));
+        return cacheDir.resolve(hex.substring(0, 2)).resolve(hex.substring(2));
+    }
+
+    @Nullable
+    private byte[] read(String className, Path entry) {
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        try (var in = new DataInputStream(Files.newInputStream(entry))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            final var activityCount = in.readInt();
+            final var types = ITransformerActivity.Type.values();
+            for (int i = 0; i < activityCount; i++) {
+                final var type = types[in.readUnsignedByte()];
+                final var context = new String[in.readUnsignedShort()];
+                for (int j = 0; j < context.length; j++) {
+                    context[j] = in.readUTF();
+                }
+                auditTrail.addActivity(className, type, context);
+            }
+            return in.readNBytes(in.readInt());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug(MODLAUNCHER, "Discarding unreadable transformed class cache entry {}", entry, e);
+            return null;
+        }
+    }
+
+    private void write(Path entry, List<ITransformerActivity> activities, byte[] result) {
+        try {
+            final var bos = new ByteArrayOutputStream(result.length + 64);
+            try (var out = new DataOutputStream(bos)) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(activities.size());
+                for (var activity : activities) {
+                    out.writeByte(activity.getType().ordinal());
+                    out.writeShort(activity.getContext().length);
+                    for (var context : activity.getContext()) {
+                        out.writeUTF(context);
+                    }
+                }
+                out.writeInt(result.length);
+                out.write(result);
+            }
+            Files.createDirectories(entry.getParent());
+            // Write to a temporary file first so that concurrent readers never observe a partial entry
+            final var temp = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), ".tmp");
+            Files.write(temp, bos.toByteArray());
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.debug(MODLAUNCHER, "Failed to write transformed class cache entry {}", entry, e);
+        }
+    }
+
+    private static void removeStaleEntries(Path cacheRoot, Path current) throws IOException {
+        if (!Files.isDirectory(cacheRoot)) {
+            return;
+        }
+        try (var children = Files.list(cacheRoot)) {
+            for (var child : children.filter(p -> !p.equals(current)).toList()) {
+                LOGGER.debug(MODLAUNCHER, "Removing stale transformed class cache {}", child);
+                try (var walk = Files.walk(child)) {
+                    for (var p : walk.sorted(Comparator.reverseOrder()).toList()) {
+                        Files.deleteIfExists(p);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the fingerprint of the transformation setup, or returns {@code null} if it cannot be fingerprinted.
+     */
+    @Nullable
+    private static String computeFingerprint(TransformStore transformStore, LaunchPluginHandler pluginHandler, Configuration configuration, TransformerAuditTrail auditTrail) throws IOException {
+        final var digest = sha256();
+        final var lines = new TreeSet<String>();
+        lines.add("format:" + FORMAT_VERSION);
+        lines.add("java:" + Runtime.version());
+        transformStore.describeTransformers(lines::add);
+        pluginHandler.describePlugins(lines::add);
+        lines.add("audit:" + auditTrail.describeMode());
+
+        // Visit the configuration and all of its parents, the boot layer included
+        final var visited = new HashSet<Configuration>();
+        final var queue = new ArrayDeque<Configuration>();
+        queue.add(configuration);
+        while (!queue.isEmpty()) {
+            final var config = queue.poll();
+            if (!visited.add(config)) continue;
+            queue.addAll(config.parents());
+            for (var module : config.modules()) {
+                final var description = describeModule(module);
+                if (description == null) {
+                    return null;
+                }
+                lines.add(description);
+            }
+        }
+
+        for (var line : lines) {
+            digest.update(line.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    @Nullable
+    private static String describeModule(ResolvedModule module) throws IOException {
+        final var location = module.reference().location().orElse(null);
+        if (location == null || "jrt".equals(location.getScheme())) {
+            // Platform modules are covered by the java version
+            return "module:" + module.name();
+        }
+        final var description = new StringBuilder("module:").append(module.name());
+        for (var path : toFilePaths(location)) {
+            final var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (attributes.isDirectory()) {
+                return null;
+            }
+            description.append(':').append(path).append(':').append(attributes.size()).append(':').append(attributes.lastModifiedTime().toMillis());
+        }
+        return description.toString();
+    }
+
+    private static List<Path> toFilePaths(URI location) {
+        final var path = Paths.get(location);
+        // Jars opened by securejarhandler live in a union file system, which we can trace back to its real files
+        return path.getFileSystem() instanceof UnionFileSystem ufs ? ufs.getBasePaths() : List.of(path);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TransformedClassCache[" + cacheDir + "]";
+    }
+}
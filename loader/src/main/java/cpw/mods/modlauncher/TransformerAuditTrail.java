@@ -14,24 +14,95 @@
 
 package cpw.mods.modlauncher;
 
+import static cpw.mods.modlauncher.LogMarkers.MODLAUNCHER;
+
 import cpw.mods.modlauncher.api.ITransformationService;
 import cpw.mods.modlauncher.api.ITransformer;
 import cpw.mods.modlauncher.api.ITransformerActivity;
 import cpw.mods.modlauncher.api.ITransformerAuditTrail;
 import cpw.mods.modlauncher.serviceapi.ILaunchPluginService;
+import cpw.mods.modlauncher.util.StringInterner;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.StringJoiner;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 
+/**
+ * Records the activities of transformers and launch plugins on each class.
+ * <p>
+ * Activities are stored as ints: every activity is a header holding its type and the length of its context,
+ * followed by the ids of the context strings. Transformer, plugin and reason names repeat for many classes,
+ * and are interned once into a shared table.
+ * <p>
+ * The number of classes that are kept can be limited with {@code -Dmodlauncher.auditTrail=<n>}, in which case the
+ * classes recorded first are dropped first, or the audit trail can be turned off with
+ * {@code -Dmodlauncher.auditTrail=false}.
+ */
 public class TransformerAuditTrail implements ITransformerAuditTrail {
-    private Map<String, List<ITransformerActivity>> audit = new ConcurrentHashMap<>();
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final int UNBOUNDED = -1;
+    private static final int CONTEXT_BITS = 16;
+    private static final int CONTEXT_MASK = (1 << CONTEXT_BITS) - 1;
+    private static final ITransformerActivity.Type[] TYPES = ITransformerActivity.Type.values();
+    private static final int[] NO_ACTIVITIES = new int[0];
+
+    // Maximum number of classes, or UNBOUNDED; 0 disables the audit trail
+    private final int maxClasses;
+    private final Map<String, int[]> audit = new ConcurrentHashMap<>();
+    // Classes in the order they were first recorded, only used if the size is bounded
+    @Nullable
+    private final Queue<String> recorded;
+    private final StringInterner strings = new StringInterner(64);
+    // The innermost capture on each thread, see capture()
+    private final ThreadLocal<Capture> captures = new ThreadLocal<>();
+
+    public TransformerAuditTrail() {
+        this(readMaxClasses(System.getProperty("modlauncher.auditTrail", "true")));
+    }
 
+    TransformerAuditTrail(int maxClasses) {
+        this.maxClasses = maxClasses;
+        this.recorded = maxClasses > 0 ? new ConcurrentLinkedQueue<>() : null;
+    }
+
+    private static int readMaxClasses(String value) {
+        if (value.equalsIgnoreCase("true")) {
+            return UNBOUNDED;
+        } else if (value.equalsIgnoreCase("false")) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            LOGGER.warn(MODLAUNCHER, "Invalid audit trail setting {}, expected true, false or a number of classes", value);
+            return UNBOUNDED;
+        }
+    }
+
+    /**
+     * {@return the setting this audit trail was created with, in the format of {@code modlauncher.auditTrail}}
+     */
+    String describeMode() {
+        return maxClasses == UNBOUNDED ? "true" : maxClasses == 0 ? "false" : Integer.toString(maxClasses);
+    }
+
+    /**
+     * {@return a read only view of the activities for the specified class}
+     * The view reflects activities recorded after this call, and is empty if the class was dropped or
+     * the audit trail is disabled.
+     */
     @Override
     public List<ITransformerActivity> getActivityFor(final String className) {
-        return Collections.unmodifiableList(getTransformerActivities(className));
+        return new ActivityList(className);
     }
 
     private static class TransformerActivity implements ITransformerActivity {
@@ -58,35 +129,142 @@ public class TransformerAuditTrail implements ITransformerAuditTrail {
         }
     }
 
+    private class ActivityList extends AbstractList<ITransformerActivity> {
+        private final String clazz;
+
+        private ActivityList(String clazz) {
+            this.clazz = clazz;
+        }
+
+        @Override
+        public ITransformerActivity get(int index) {
+            final int[] encoded = audit.getOrDefault(clazz, NO_ACTIVITIES);
+            int pos = 0;
+            for (int i = 0; pos < encoded.length; i++) {
+                if (i == index) {
+                    return decode(encoded, pos);
+                }
+                pos += 1 + (encoded[pos] & CONTEXT_MASK);
+            }
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        @Override
+        public int size() {
+            final int[] encoded = audit.getOrDefault(clazz, NO_ACTIVITIES);
+            int size = 0;
+            for (int pos = 0; pos < encoded.length; pos += 1 + (encoded[pos] & CONTEXT_MASK)) {
+                size++;
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Runs the given action and collects the activities it records for the given class on this thread.
+     * The activities are collected even if the audit trail does not keep them, since it is disabled or the
+     * class is dropped.
+     */
+    Captured capture(String clazz, Supplier<byte[]> action) {
+        final Capture previous = captures.get();
+        final Capture capture = new Capture(clazz, new ArrayList<>());
+        captures.set(capture);
+        try {
+            return new Captured(action.get(), capture.activities());
+        } finally {
+            if (previous != null) {
+                captures.set(previous);
+            } else {
+                captures.remove();
+            }
+        }
+    }
+
+    record Captured(byte[] result, List<ITransformerActivity> activities) {}
+
+    private record Capture(String clazz, List<ITransformerActivity> activities) {}
+
     public void addReason(String clazz, String reason) {
-        getTransformerActivities(clazz).add(new TransformerActivity(ITransformerActivity.Type.REASON, reason));
+        record(clazz, ITransformerActivity.Type.REASON, null, reason);
     }
 
     public void addPluginCustomAuditTrail(String clazz, ILaunchPluginService plugin, String... data) {
-        getTransformerActivities(clazz).add(new TransformerActivity(ITransformerActivity.Type.PLUGIN, concat(plugin.name(), data)));
+        record(clazz, ITransformerActivity.Type.PLUGIN, plugin.name(), data);
     }
 
     public void addPluginAuditTrail(String clazz, ILaunchPluginService plugin, ILaunchPluginService.Phase phase) {
-        getTransformerActivities(clazz).add(new TransformerActivity(ITransformerActivity.Type.PLUGIN, plugin.name(), phase.name().substring(0, 1)));
+        record(clazz, ITransformerActivity.Type.PLUGIN, plugin.name(), phase.name().substring(0, 1));
     }
 
     public void addTransformerAuditTrail(String clazz, ITransformationService transformService, ITransformer<?> transformer) {
-        getTransformerActivities(clazz).add(new TransformerActivity(ITransformerActivity.Type.TRANSFORMER, concat(transformService.name(), transformer.labels())));
+        record(clazz, ITransformerActivity.Type.TRANSFORMER, transformService.name(), transformer.labels());
     }
 
-    private String[] concat(String first, String[] rest) {
-        final String[] res = new String[rest.length + 1];
-        res[0] = first;
-        System.arraycopy(rest, 0, res, 1, rest.length);
-        return res;
+    void addActivity(String clazz, ITransformerActivity.Type type, String... context) {
+        record(clazz, type, null, context);
     }
 
-    private List<ITransformerActivity> getTransformerActivities(final String clazz) {
-        return audit.computeIfAbsent(clazz, k -> new ArrayList<>());
+    private void record(String clazz, ITransformerActivity.Type type, @Nullable String first, String... rest) {
+        final Capture capture = captures.get();
+        if (capture != null && capture.clazz().equals(clazz)) {
+            final String[] context = first != null ? new String[1 + rest.length] : rest.clone();
+            if (first != null) {
+                context[0] = first;
+                System.arraycopy(rest, 0, context, 1, rest.length);
+            }
+            capture.activities().add(new TransformerActivity(type, context));
+        }
+        if (maxClasses == 0) {
+            return;
+        }
+        final int length = (first != null ? 1 : 0) + rest.length;
+        final int[] activity = new int[1 + length];
+        activity[0] = type.ordinal() << CONTEXT_BITS | length;
+        int pos = 1;
+        if (first != null) {
+            activity[pos++] = strings.id(first);
+        }
+        for (String s : rest) {
+            activity[pos++] = strings.id(s);
+        }
+
+        final boolean[] added = new boolean[1];
+        audit.compute(clazz, (k, existing) -> {
+            if (existing == null) {
+                added[0] = true;
+                return activity;
+            }
+            final int[] result = Arrays.copyOf(existing, existing.length + activity.length);
+            System.arraycopy(activity, 0, result, existing.length, activity.length);
+            return result;
+        });
+        if (added[0] && recorded != null) {
+            recorded.add(clazz);
+            while (audit.size() > maxClasses) {
+                final String oldest = recorded.poll();
+                if (oldest == null) {
+                    break;
+                }
+                audit.remove(oldest);
+            }
+        }
+    }
+
+    private ITransformerActivity decode(int[] encoded, int pos) {
+        final String[] context = new String[encoded[pos] & CONTEXT_MASK];
+        for (int i = 0; i < context.length; i++) {
+            context[i] = strings.string(encoded[pos + 1 + i]);
+        }
+        return new TransformerActivity(TYPES[encoded[pos] >>> CONTEXT_BITS], context);
     }
 
     @Override
     public String getAuditString(final String clazz) {
-        return audit.getOrDefault(clazz, Collections.emptyList()).stream().map(ITransformerActivity::getActivityString).collect(Collectors.joining(","));
+        final int[] encoded = audit.getOrDefault(clazz, NO_ACTIVITIES);
+        final StringJoiner joiner = new StringJoiner(",");
+        for (int pos = 0; pos < encoded.length; pos += 1 + (encoded[pos] & CONTEXT_MASK)) {
+            joiner.add(decode(encoded, pos).getActivityString());
+        }
+        return joiner.toString();
     }
 }
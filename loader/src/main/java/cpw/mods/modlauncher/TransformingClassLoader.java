@@ -18,8 +18,10 @@ import cpw.mods.cl.ModuleClassLoader;
 import cpw.mods.modlauncher.api.IEnvironment;
 import cpw.mods.modlauncher.api.IModuleLayerManager;
 import cpw.mods.modlauncher.api.ITransformerActivity;
+import java.io.IOException;
 import java.lang.module.Configuration;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 import org.jetbrains.annotations.VisibleForTesting;
 
 /**
@@ -29,6 +31,11 @@ public class TransformingClassLoader extends ModuleClassLoader {
     static {
         ClassLoader.registerAsParallelCapable();
     }
+    // Transformation statistics, only collected while startup profiling is enabled
+    private static final boolean PROFILING = System.getProperty("fml.startupProfile") != null;
+    private static final LongAdder TRANSFORMED_CLASSES = new LongAdder();
+    private static final LongAdder TRANSFORMATION_NANOS = new LongAdder();
+    private static final ThreadLocal<int[]> TRANSFORMATION_DEPTH = ThreadLocal.withInitial(() -> new int[1]);
     private final ClassTransformer classTransformer;
 
     public TransformingClassLoader(TransformStore transformStore, LaunchPluginHandler pluginHandler, IModuleLayerManager moduleLayerHandler) {
@@ -46,12 +53,42 @@ public class TransformingClassLoader extends ModuleClassLoader {
         super("TRANSFORMER", configuration, parentLayers, parentClassLoader);
         TransformerAuditTrail tat = new TransformerAuditTrail();
         environment.computePropertyIfAbsent(IEnvironment.Keys.AUDITTRAIL.get(), v -> tat);
-        this.classTransformer = new ClassTransformer(transformStore, pluginHandler, this, tat);
+        var transformCache = TransformedClassCache.open(environment.getProperty(IEnvironment.Keys.GAMEDIR.get()).orElse(null), transformStore, pluginHandler, configuration, tat);
+        this.classTransformer = new ClassTransformer(transformStore, pluginHandler, this, tat, transformCache);
     }
 
     @Override
     protected byte[] maybeTransformClassBytes(final byte[] bytes, final String name, final String context) {
-        return classTransformer.transform(bytes, name, context != null ? context : ITransformerActivity.CLASSLOADING_REASON);
+        if (!PROFILING) {
+            return classTransformer.transform(bytes, name, context != null ? context : ITransformerActivity.CLASSLOADING_REASON);
+        }
+        // Only the outermost transformation on a thread is timed, since transforming a class can load others
+        var depth = TRANSFORMATION_DEPTH.get();
+        long start = depth[0]++ == 0 ? System.nanoTime() : 0;
+        try {
+            return classTransformer.transform(bytes, name, context != null ? context : ITransformerActivity.CLASSLOADING_REASON);
+        } finally {
+            TRANSFORMED_CLASSES.increment();
+            if (--depth[0] == 0) {
+                TRANSFORMATION_NANOS.add(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * {@return the number of classes passed through the transformers of all transforming class loaders}
+     * Only counted if the {@code fml.startupProfile} system property is set.
+     */
+    public static long getTransformedClassCount() {
+        return TRANSFORMED_CLASSES.sum();
+    }
+
+    /**
+     * {@return the wall time all transforming class loaders spent transforming classes, in nanoseconds}
+     * Only measured if the {@code fml.startupProfile} system property is set.
+     */
+    public static long getTransformationNanos() {
+        return TRANSFORMATION_NANOS.sum();
     }
 
     public Class<?> getLoadedClass(String name) {
@@ -61,4 +98,8 @@ public class TransformingClassLoader extends ModuleClassLoader {
     byte[] buildTransformedClassNodeFor(final String className, final String reason) throws ClassNotFoundException {
         return super.getMaybeTransformedClassBytes(className, reason);
     }
+
+    byte[] readUntransformedClassBytes(final String className) throws IOException {
+        return super.getUntransformedClassBytes(className);
+    }
 }
@@ -20,6 +20,8 @@ import java.nio.file.Path;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
@@ -113,7 +115,8 @@ public interface ILaunchPluginService {
      * Ordering between plugins is not known.
      *
      * One of {@link #processClass(Phase, ClassNode, Type)}, {@link #processClass(Phase, ClassNode, Type, String)}
-     * or {@link #processClassWithFlags(Phase, ClassNode, Type, String)} <em>must</em> be implemented.
+     * or {@link #processClassWithFlags(Phase, ClassNode, Type, String)} <em>must</em> be implemented,
+     * unless the plugin {@linkplain #usesClassVisitor() uses a class visitor} instead.
      *
      * @param phase     The phase of the supplied class node
      * @param classNode the classnode to process
@@ -152,6 +155,41 @@ public interface ILaunchPluginService {
         return processClass(phase, classNode, classType, reason) ? ComputeFlags.COMPUTE_FRAMES : ComputeFlags.NO_REWRITE;
     }
 
+    /**
+     * If this plugin processes classes through {@link #visitClass} instead of the {@code processClass} methods.
+     *
+     * When all plugins that handle a class use class visitors, and no transformer targets it, the class is streamed
+     * from a {@link org.objectweb.asm.ClassReader} through the visitors of the plugins, without building a
+     * {@link ClassNode} or expanding its frames. This makes it the preferred option for plugins that only inspect
+     * classes or make simple changes.
+     *
+     * @return true if {@link #visitClass} should be called instead of the {@code processClass} methods
+     */
+    default boolean usesClassVisitor() {
+        return false;
+    }
+
+    /**
+     * Each class loaded is offered to the plugin for processing, if it {@linkplain #usesClassVisitor() uses a class visitor}.
+     * Ordering between plugins is not known.
+     *
+     * The class may be visited straight from the class file, in which case frames are not expanded, or from a
+     * {@link ClassNode} if other plugins or transformers need one. Plugins that change code should therefore request
+     * {@link ComputeFlags#COMPUTE_FRAMES} rather than rely on the format of the frames they receive.
+     *
+     * @param phase        The phase the class is visited in
+     * @param classVisitor the visitor that the returned visitor must delegate to
+     * @param classType    the name of the class
+     * @param reason       Reason for transformation. "classloading" or the name of an {@link ILaunchPluginService}
+     * @param computeFlags accepts the {@link ComputeFlags} required by the changes the plugin makes to the class.
+     *                     If it is not called, the plugin is assumed to have made no changes
+     *                     ({@link ComputeFlags#NO_REWRITE}).
+     * @return a visitor that processes the class and delegates to {@code classVisitor}
+     */
+    default ClassVisitor visitClass(final Phase phase, ClassVisitor classVisitor, final Type classType, String reason, IntConsumer computeFlags) {
+        throw new IllegalStateException("Plugins that use a class visitor need to override visitClass");
+    }
+
     /**
      * Adds a resource to this plugin for processing by it. Used by forge to hand resources to access transformers
      * for example.
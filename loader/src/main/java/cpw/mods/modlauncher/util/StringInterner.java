@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) NeoForged and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package cpw.mods.modlauncher.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Interns strings into consecutive int ids, starting at 0.
+ * <p>
+ * Looking up the id of a known string and the string of a known id never lock, only adding new strings does.
+ */
+@ApiStatus.Internal
+public final class StringInterner {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    // Indexed by id, only replaced or written to while holding the lock on this
+    private volatile String[] strings;
+    private int nextId;
+
+    public StringInterner(int initialCapacity) {
+        this.strings = new String[Math.max(initialCapacity, 1)];
+    }
+
+    /**
+     * {@return the id of the given string, adding it if it is not interned yet}
+     */
+    public int id(String s) {
+        final Integer id = ids.get(s);
+        return id != null ? id : add(s);
+    }
+
+    private synchronized int add(String s) {
+        Integer id = ids.get(s);
+        if (id == null) {
+            id = nextId++;
+            if (id == strings.length) {
+                strings = Arrays.copyOf(strings, id * 2);
+            }
+            strings[id] = s;
+            // Publish the id last, so that anyone who sees it also sees the string
+            ids.put(s, id);
+        }
+        return id;
+    }
+
+    /**
+     * {@return the string with the given id}
+     * The id must have been returned by {@link #id(String)}.
+     */
+    public String string(int id) {
+        return strings[id];
+    }
+}
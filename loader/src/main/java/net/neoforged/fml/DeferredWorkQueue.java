@@ -8,13 +8,18 @@ package net.neoforged.fml;
 import static net.neoforged.fml.Logging.LOADING;
 
 import com.google.common.base.Stopwatch;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import net.neoforged.fml.loading.StartupProfiler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -26,6 +31,11 @@ import org.apache.logging.log4j.Logger;
  * <strong>Use of this class after startup is not possible.</strong> At that
  * point, {@code ReentrantBlockableEventLoop} should be used instead.
  * <p>
+ * Work that does not need the main thread, but relies on work of its mod being
+ * run in order, can be enqueued with {@link #enqueueParallelWork} instead. Such work
+ * runs on the parallel executor before the main thread work, sequentially for each
+ * mod, and only after the parallel work of all dependencies of the mod has completed.
+ * <p>
  * Exceptions from tasks will be handled gracefully, causing a mod loading
  * error. Tasks that take egregiously long times to run will be logged.
  */
@@ -33,6 +43,7 @@ public class DeferredWorkQueue {
     private static final Logger LOGGER = LogManager.getLogger();
 
     private final ConcurrentLinkedDeque<TaskInfo> tasks = new ConcurrentLinkedDeque<>();
+    private final Map<ModContainer, Queue<TaskInfo>> parallelTasks = new ConcurrentHashMap<>();
     private final String name;
 
     public DeferredWorkQueue(String name) {
@@ -58,11 +69,32 @@ public class DeferredWorkQueue {
         }
     }
 
-    private static void makeRunnable(TaskInfo ti, Executor executor, RuntimeException aggregate) {
+    /**
+     * {@return whether any work was enqueued with {@link #enqueueParallelWork}}
+     */
+    boolean hasParallelTasks() {
+        return !parallelTasks.isEmpty();
+    }
+
+    /**
+     * Runs the parallel work of the given mod in the order it was enqueued.
+     * The exceptions of failed tasks are thrown as the suppressed exceptions of a single exception.
+     */
+    void runParallelTasks(ModContainer owner) {
+        var ownerTasks = parallelTasks.remove(owner);
+        if (ownerTasks == null) return;
+        RuntimeException aggregate = new RuntimeException();
+        ownerTasks.forEach(t -> makeRunnable(t, Runnable::run, aggregate));
+        if (aggregate.getSuppressed().length > 0) {
+            throw aggregate;
+        }
+    }
+
+    private void makeRunnable(TaskInfo ti, Executor executor, RuntimeException aggregate) {
         executor.execute(() -> {
             Stopwatch timer = Stopwatch.createStarted();
             ModLoadingContext.get().setActiveContainer(ti.owner);
-            try {
+            try (var span = StartupProfiler.get().start("deferred", name, ti.owner.getModId())) {
                 ti.future.exceptionally(t -> captureException(ti.owner.getModId(), aggregate, t));
                 ti.task.run();
             } finally {
@@ -100,6 +132,34 @@ public class DeferredWorkQueue {
         return future;
     }
 
+    /**
+     * Enqueues work that does not need to run on the main thread.
+     * <p>
+     * The work of each mod runs sequentially in the order it was enqueued, but the work of different mods
+     * runs in parallel, once the parallel work of the dependencies of the mod has completed.
+     * All parallel work completes before the work enqueued with {@link #enqueueWork} starts running.
+     */
+    public CompletableFuture<Void> enqueueParallelWork(final ModContainer modInfo, final Runnable work) {
+        return enqueueParallelWork(modInfo, taskInfo -> CompletableFuture.runAsync(work, r -> taskInfo.task = r));
+    }
+
+    /**
+     * Enqueues work that does not need to run on the main thread.
+     *
+     * @see #enqueueParallelWork(ModContainer, Runnable)
+     */
+    public <T> CompletableFuture<T> enqueueParallelWork(final ModContainer modInfo, final Supplier<T> work) {
+        return enqueueParallelWork(modInfo, taskInfo -> CompletableFuture.supplyAsync(work, r -> taskInfo.task = r));
+    }
+
+    private <T> CompletableFuture<T> enqueueParallelWork(final ModContainer modInfo, Function<TaskInfo, CompletableFuture<T>> futureGen) {
+        TaskInfo taskInfo = new TaskInfo(modInfo);
+        CompletableFuture<T> future = futureGen.apply(taskInfo);
+        taskInfo.future = future;
+        parallelTasks.computeIfAbsent(modInfo, owner -> new ConcurrentLinkedQueue<>()).add(taskInfo);
+        return future;
+    }
+
     private static class TaskInfo {
         private final ModContainer owner;
         private Runnable task;
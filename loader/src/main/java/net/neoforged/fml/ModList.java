@@ -5,19 +5,18 @@
 
 package net.neoforged.fml;
 
-import java.util.AbstractMap;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
-import java.util.concurrent.CompletionStage;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -30,6 +29,8 @@ import net.neoforged.neoforgespi.language.IModFileInfo;
 import net.neoforged.neoforgespi.language.IModInfo;
 import net.neoforged.neoforgespi.language.ModFileScanData;
 import net.neoforged.neoforgespi.locating.IModFile;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Type;
 
 /**
  * Master list of all mods - game-side version. This is classloaded in the game scope and
@@ -42,7 +43,9 @@ public class ModList {
     private final Map<String, ModFileInfo> fileById;
     private List<ModContainer> mods;
     private Map<String, ModContainer> indexedMods;
-    private List<ModFileScanData> modFileScanData;
+    private volatile List<ModFileScanData> modFileScanData;
+    @Nullable
+    private volatile AnnotationIndex annotationIndex;
     private List<ModContainer> sortedContainers;
 
     private ModList(final List<ModFile> modFiles, final List<ModInfo> sortedList) {
@@ -82,39 +85,6 @@ public class ModList {
         return this.fileById.get(modid);
     }
 
-    static CompletionStage<Void> completableFutureFromExceptionList(List<? extends Map.Entry<?, Throwable>> t) {
-        if (t.stream().noneMatch(e -> e.getValue() != null)) {
-            return CompletableFuture.completedFuture(null);
-        } else {
-            final List<Throwable> throwables = t.stream().filter(e -> e.getValue() != null).map(Map.Entry::getValue).collect(Collectors.toList());
-            CompletableFuture<Void> cf = new CompletableFuture<>();
-            final RuntimeException accumulator = new RuntimeException();
-            cf.completeExceptionally(accumulator);
-            throwables.forEach(exception -> {
-                if (exception instanceof CompletionException) {
-                    exception = exception.getCause();
-                }
-                if (exception.getSuppressed().length != 0) {
-                    Arrays.stream(exception.getSuppressed()).forEach(accumulator::addSuppressed);
-                } else {
-                    accumulator.addSuppressed(exception);
-                }
-            });
-            return cf;
-        }
-    }
-
-    static <V> CompletableFuture<List<Map.Entry<V, Throwable>>> gather(List<? extends CompletableFuture<? extends V>> futures) {
-        List<Map.Entry<V, Throwable>> list = new ArrayList<>(futures.size());
-        CompletableFuture<?>[] results = new CompletableFuture[futures.size()];
-        futures.forEach(future -> {
-            int i = list.size();
-            list.add(null);
-            results[i] = future.whenComplete((result, exception) -> list.set(i, new AbstractMap.SimpleImmutableEntry<>(result, exception)));
-        });
-        return CompletableFuture.allOf(results).handle((r, th) -> null).thenApply(res -> list);
-    }
-
     void setLoadedMods(final List<ModContainer> modContainers) {
         this.mods = modContainers;
         this.sortedContainers = modContainers.stream().sorted(Comparator.comparingInt(c -> sortedList.indexOf(c.getModInfo()))).toList();
@@ -144,6 +114,65 @@ public class ModList {
         return modFileScanData;
     }
 
+    /**
+     * {@return the annotations of the given type on elements of the given type, across all mod files}
+     * The annotations are looked up in an index, which is rebuilt if annotations were added to any mod file since.
+     */
+    public Stream<ModFileScanData.AnnotationData> getAnnotatedBy(Class<? extends Annotation> type, ElementType elementType) {
+        return getAnnotatedBy(Type.getType(type), elementType);
+    }
+
+    /**
+     * {@return the annotations of the given type on elements of the given type, across all mod files}
+     * Only the scan data of mod files that contain such annotations is queried.
+     */
+    public Stream<ModFileScanData.AnnotationData> getAnnotatedBy(Type annotationType, ElementType elementType) {
+        final List<ModFileScanData> allScanData = getAllScanData();
+        AnnotationIndex index = annotationIndex;
+        if (index == null || index.annotationCount() != AnnotationIndex.countAnnotations(allScanData)) {
+            index = buildAnnotationIndex(allScanData);
+        }
+        return index.files().getOrDefault(annotationType, Map.of()).getOrDefault(elementType, List.of()).stream()
+                .flatMap(scanData -> scanData.getAnnotatedBy(annotationType, elementType));
+    }
+
+    private synchronized AnnotationIndex buildAnnotationIndex(List<ModFileScanData> allScanData) {
+        // Count before reading the annotations, so that annotations added while building trigger another rebuild
+        final long annotationCount = AnnotationIndex.countAnnotations(allScanData);
+        final AnnotationIndex existing = annotationIndex;
+        if (existing != null && existing.annotationCount() == annotationCount) {
+            // Another thread was faster
+            return existing;
+        }
+        final Map<Type, Map<ElementType, List<ModFileScanData>>> files = new HashMap<>();
+        for (ModFileScanData scanData : allScanData) {
+            scanData.forEachAnnotation(annotation -> {
+                final List<ModFileScanData> targetFiles = files.computeIfAbsent(annotation.annotationType(), t -> new EnumMap<>(ElementType.class))
+                        .computeIfAbsent(annotation.targetType(), t -> new ArrayList<>());
+                if (targetFiles.isEmpty() || targetFiles.getLast() != scanData) {
+                    targetFiles.add(scanData);
+                }
+            });
+        }
+        final AnnotationIndex index = new AnnotationIndex(annotationCount, files);
+        annotationIndex = index;
+        return index;
+    }
+
+    /**
+     * The scan data containing annotations of each annotation type and target, and the number of annotations
+     * across all mod files at the time it was built.
+     */
+    private record AnnotationIndex(long annotationCount, Map<Type, Map<ElementType, List<ModFileScanData>>> files) {
+        static long countAnnotations(List<ModFileScanData> allScanData) {
+            long count = 0;
+            for (ModFileScanData scanData : allScanData) {
+                count += scanData.getAnnotations().size();
+            }
+            return count;
+        }
+    }
+
     public void forEachModFile(Consumer<IModFile> fileConsumer) {
         modFiles.stream().map(IModFileInfo::getFile).forEach(fileConsumer);
     }
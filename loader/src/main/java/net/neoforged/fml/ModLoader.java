@@ -8,7 +8,10 @@ package net.neoforged.fml;
 import static net.neoforged.fml.Logging.CORE;
 import static net.neoforged.fml.Logging.LOADING;
 
+import cpw.mods.jarhandling.StartupIndex;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -21,6 +24,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -30,11 +34,13 @@ import net.neoforged.bus.api.Event;
 import net.neoforged.bus.api.EventPriority;
 import net.neoforged.fml.event.IModBusEvent;
 import net.neoforged.fml.event.lifecycle.FMLConstructModEvent;
+import net.neoforged.fml.event.lifecycle.FMLLoadCompleteEvent;
 import net.neoforged.fml.event.lifecycle.ParallelDispatchEvent;
 import net.neoforged.fml.i18n.FMLTranslations;
 import net.neoforged.fml.loading.FMLEnvironment;
 import net.neoforged.fml.loading.FMLLoader;
 import net.neoforged.fml.loading.LoadingModList;
+import net.neoforged.fml.loading.StartupProfiler;
 import net.neoforged.fml.loading.moddiscovery.ModFileInfo;
 import net.neoforged.fml.loading.moddiscovery.ModInfo;
 import net.neoforged.fml.loading.progress.StartupNotificationManager;
@@ -104,8 +110,7 @@ public final class ModLoader {
             for (var loadingError : loadingErrors) {
                 LOGGER.fatal(CORE, "Error during pre-loading phase: {}", FMLTranslations.translateIssueEnglish(loadingError), loadingError.cause());
             }
-            cancelLoading(modList);
-            throw new ModLoadingException(loadingIssues);
+            throw abortLoading(modList);
         }
         List<? extends ForgeFeature.Bound> failedBounds = loadingModList.getMods().stream()
                 .map(ModInfo::getForgeFeatures)
@@ -118,8 +123,7 @@ public final class ModLoader {
             for (var fb : failedBounds) {
                 loadingIssues.add(ModLoadingIssue.error("fml.modloadingissue.feature.missing", fb, ForgeFeature.featureValue(fb)).withAffectedMod(fb.modInfo()));
             }
-            cancelLoading(modList);
-            throw new ModLoadingException(loadingIssues);
+            throw abortLoading(modList);
         }
 
         var modContainers = loadingModList.getModFiles().stream()
@@ -131,13 +135,34 @@ public final class ModLoader {
             for (var loadingError : getLoadingErrors()) {
                 LOGGER.fatal(CORE, "Failed to initialize mod containers: {}", loadingError, loadingError.cause());
             }
-            cancelLoading(modList);
-            throw new ModLoadingException(loadingIssues);
+            throw abortLoading(modList);
         }
         modList.setLoadedMods(modContainers);
         ModLoader.modList = modList;
 
         constructMods(syncExecutor, parallelExecutor, periodicTask);
+        saveStartupIndex();
+    }
+
+    /**
+     * Persists the securejarhandler startup index once all mods have been constructed successfully,
+     * so that the next launch with the same set of jars can skip package scanning and module graph walks.
+     */
+    private static void saveStartupIndex() {
+        try {
+            StartupIndex.get().save();
+        } catch (IOException e) {
+            LOGGER.warn(LOADING, "Failed to save the startup index", e);
+        }
+    }
+
+    /**
+     * Cancels loading before any lifecycle phase has run, and writes the startup profile recorded so far.
+     */
+    private static ModLoadingException abortLoading(ModList modList) {
+        cancelLoading(modList);
+        StartupProfiler.get().export();
+        return new ModLoadingException(loadingIssues);
     }
 
     private static void cancelLoading(ModList modList) {
@@ -151,7 +176,17 @@ public final class ModLoader {
             modContainer.constructMod();
             modContainer.acceptEvent(new FMLConstructModEvent(modContainer, workQueue));
         });
-        waitForTask("Mod Construction: Deferred Queue", periodicTask, CompletableFuture.runAsync(workQueue::runTasks, syncExecutor));
+        runDeferredWork("Mod Construction", workQueue, syncExecutor, parallelExecutor, periodicTask);
+    }
+
+    /**
+     * Runs the work enqueued in the given queue: first the parallel work of all mods, then the main thread work.
+     */
+    private static void runDeferredWork(String name, DeferredWorkQueue workQueue, Executor syncExecutor, Executor parallelExecutor, Runnable periodicTask) {
+        if (workQueue.hasParallelTasks()) {
+            dispatchParallelTask(name + ": Parallel Deferred Queue", parallelExecutor, periodicTask, workQueue::runParallelTasks);
+        }
+        runInitTask(name + ": Deferred Queue", syncExecutor, periodicTask, workQueue::runTasks);
     }
 
     /**
@@ -166,10 +201,19 @@ public final class ModLoader {
      */
     public static void dispatchParallelEvent(String name, Executor syncExecutor, Executor parallelExecutor, Runnable periodicTask, BiFunction<ModContainer, DeferredWorkQueue, ParallelDispatchEvent> eventConstructor) {
         var workQueue = new DeferredWorkQueue(name);
+        var loadComplete = new AtomicBoolean();
         dispatchParallelTask(name, parallelExecutor, periodicTask, modContainer -> {
-            modContainer.acceptEvent(eventConstructor.apply(modContainer, workQueue));
+            var event = eventConstructor.apply(modContainer, workQueue);
+            if (event instanceof FMLLoadCompleteEvent) {
+                loadComplete.set(true);
+            }
+            modContainer.acceptEvent(event);
         });
-        runInitTask(name + ": Deferred Queue", syncExecutor, periodicTask, workQueue::runTasks);
+        runDeferredWork(name, workQueue, syncExecutor, parallelExecutor, periodicTask);
+        if (loadComplete.get()) {
+            // The load complete event is the last lifecycle phase, so the startup profile is complete
+            StartupProfiler.get().export();
+        }
     }
 
     /**
@@ -177,69 +221,42 @@ public final class ModLoader {
      */
     public static void waitForTask(String name, Runnable periodicTask, CompletableFuture<?> future) {
         var progress = StartupNotificationManager.addProgressBar(name, 0);
-        try {
+        try (var span = StartupProfiler.get().start("phase", name, null)) {
             waitForFuture(name, periodicTask, future);
+        } catch (ModLoadingException e) {
+            // Loading stops here, so write the startup profile including the failed phase
+            StartupProfiler.get().export();
+            throw e;
         } finally {
             progress.complete();
         }
     }
 
-    /**
-     * Exception that is fired when a mod loading future cannot be executed because a dependent future failed.
-     * It is only used for control flow and easy filtering out, but never logged or propagated further.
-     */
-    private static class DependentFutureFailedException extends RuntimeException {}
-
     /**
      * Dispatches a task across all mod containers in parallel, with progress displayed on the loading screen.
+     * The task of a mod only runs once the tasks of all its dependencies have completed successfully.
      */
     public static void dispatchParallelTask(String name, Executor parallelExecutor, Runnable periodicTask, Consumer<ModContainer> task) {
         var progress = StartupNotificationManager.addProgressBar(name, modList.size());
-        try {
+        try (var span = StartupProfiler.get().start("phase", name, null)) {
             periodicTask.run();
-            Map<IModInfo, CompletableFuture<Void>> modFutures = new IdentityHashMap<>(modList.size());
-            var futureList = modList.getSortedMods().stream()
-                    .map(modContainer -> {
-                        // Collect futures for all dependencies first
-                        var depFutures = LoadingModList.get().getDependencies(modContainer.getModInfo()).stream()
-                                .map(modInfo -> {
-                                    var future = modFutures.get(modInfo);
-                                    if (future == null) {
-                                        throw new IllegalStateException("Dependency future for mod %s which is a dependency of %s not found!".formatted(
-                                                modInfo.getModId(), modContainer.getModId()));
-                                    }
-                                    return future;
-                                })
-                                .toArray(CompletableFuture[]::new);
-
-                        // Build the future for this container
-                        var future = CompletableFuture.allOf(depFutures)
-                                .<Void>handleAsync((void_, exception) -> {
-                                    if (exception != null) {
-                                        // If there was any exception, short circuit.
-                                        // The exception will already be handled by `waitForFuture` since it comes from another mod.
-                                        LOGGER.debug("Skipping {} task for mod {} because a dependency threw an exception.", name, modContainer.getModId());
-                                        progress.increment();
-                                        // Throw a marker exception to make sure that dependencies of *this* task don't get executed.
-                                        throw new DependentFutureFailedException();
-                                    }
-
-                                    try {
-                                        ModLoadingContext.get().setActiveContainer(modContainer);
-                                        task.accept(modContainer);
-                                    } finally {
-                                        progress.increment();
-                                        ModLoadingContext.get().setActiveContainer(null);
-                                    }
-                                    return null;
-                                }, parallelExecutor);
-                        modFutures.put(modContainer.getModInfo(), future);
-                        return future;
-                    })
-                    .toList();
-            var singleFuture = ModList.gather(futureList)
-                    .thenCompose(ModList::completableFutureFromExceptionList);
-            waitForFuture(name, periodicTask, singleFuture);
+            var scheduler = new ModTaskScheduler(name, modList.getSortedMods(), LoadingModList.get()::getDependencies, task, progress::increment);
+            var failures = scheduler.run(parallelExecutor, periodicTask).failures();
+            if (!failures.isEmpty()) {
+                final RuntimeException accumulator = new RuntimeException();
+                for (var exception : failures) {
+                    if (exception.getSuppressed().length != 0) {
+                        Arrays.stream(exception.getSuppressed()).forEach(accumulator::addSuppressed);
+                    } else {
+                        accumulator.addSuppressed(exception);
+                    }
+                }
+                handleFailure(name, accumulator);
+            }
+        } catch (ModLoadingException e) {
+            // Loading stops here, so write the startup profile including the failed phase
+            StartupProfiler.get().export();
+            throw e;
         } finally {
             progress.complete();
         }
@@ -252,35 +269,35 @@ public final class ModLoader {
                 future.get(50, TimeUnit.MILLISECONDS);
                 return;
             } catch (ExecutionException e) {
-                // Merge all potential modloading issues
-                var issueCountBefore = loadingIssues.size();
-                // Add the cause itself if it seems meaningful based on its type and/or message, since we'd
-                // present this exception to the user using toString().
-                // "RuntimeException: null" or "IllegalStateException: null" isn't meaningful.
-                if (isMeaningfulException(e.getCause())) {
-                    addLoadingIssuesFromException(name, e.getCause());
-                }
-                for (var error : e.getCause().getSuppressed()) {
-                    // When a prerequisite of the task failed due to an exception, skip this so only
-                    // the root cause is reported.
-                    if (!(error instanceof DependentFutureFailedException)) {
-                        addLoadingIssuesFromException(name, error);
-                    }
-                }
-                // If we discarded all exceptions, we'd report an empty issue list while still canceling the loading process
-                // Fall back to using the cause.
-                if (loadingIssues.isEmpty()) {
-                    addLoadingIssuesFromException(name, e.getCause());
-                }
-
-                var errorCount = loadingIssues.size() - issueCountBefore;
-                LOGGER.fatal(LOADING, "Failed to wait for future {}, {} errors found", name, errorCount);
-                cancelLoading(modList);
-                throw new ModLoadingException(loadingIssues);
+                handleFailure(name, e.getCause());
             } catch (Exception ignored) {}
         }
     }
 
+    private static void handleFailure(String name, Throwable cause) {
+        // Merge all potential modloading issues
+        var issueCountBefore = loadingIssues.size();
+        // Add the cause itself if it seems meaningful based on its type and/or message, since we'd
+        // present this exception to the user using toString().
+        // "RuntimeException: null" or "IllegalStateException: null" isn't meaningful.
+        if (isMeaningfulException(cause)) {
+            addLoadingIssuesFromException(name, cause);
+        }
+        for (var error : cause.getSuppressed()) {
+            addLoadingIssuesFromException(name, error);
+        }
+        // If we discarded all exceptions, we'd report an empty issue list while still canceling the loading process
+        // Fall back to using the cause.
+        if (loadingIssues.isEmpty()) {
+            addLoadingIssuesFromException(name, cause);
+        }
+
+        var errorCount = loadingIssues.size() - issueCountBefore;
+        LOGGER.fatal(LOADING, "Failed to wait for future {}, {} errors found", name, errorCount);
+        cancelLoading(modList);
+        throw new ModLoadingException(loadingIssues);
+    }
+
     private static boolean isMeaningfulException(Throwable error) {
         var message = error.getLocalizedMessage();
         if (message != null && !message.isBlank()) {
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) NeoForged and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.neoforged.fml;
+
+import static net.neoforged.fml.Logging.LOADING;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import net.neoforged.fml.loading.StartupProfiler;
+import net.neoforged.neoforgespi.language.IModInfo;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs a task for every mod in parallel, starting the task of a mod only once the tasks of all its dependencies
+ * have completed. Tasks never wait for their dependencies on a pool thread: a task is only handed to the executor
+ * once it is ready to run.
+ * <p>
+ * When several tasks are ready, the one with the longest chain of dependents is run first, so that long dependency
+ * chains do not end up running on their own once all other tasks are done.
+ * If a task fails, the tasks of all mods that depend on it are skipped.
+ */
+final class ModTaskScheduler {
+    private static final Logger LOGGER = LogManager.getLogger();
+    // How often the periodic task runs while waiting for the tasks to complete
+    private static final long PERIODIC_TASK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(50);
+    // Number of mods listed when logging the slowest mods of a task
+    private static final int SLOWEST_MODS_LOGGED = 10;
+
+    private final String name;
+    private final Consumer<ModContainer> task;
+    private final Runnable onTaskDone;
+    private final List<Node> nodes;
+    private final PriorityBlockingQueue<Node> ready;
+    private final AtomicInteger remaining;
+    private volatile Thread waitingThread;
+
+    /**
+     * The result of running a task for all mods.
+     *
+     * @param failures the exceptions thrown by the tasks that failed, in mod order
+     * @param timings  the wall time spent running the task of each mod, in nanoseconds, for mods whose task ran
+     */
+    record Result(List<Throwable> failures, Map<ModContainer, Long> timings) {}
+
+    private static final class Node {
+        private final ModContainer container;
+        private final int index;
+        private final List<Node> dependents = new ArrayList<>();
+        private final AtomicInteger pendingDependencies = new AtomicInteger();
+        // Number of tasks on the longest chain of dependents starting at this node, including itself
+        private int criticalPath;
+        private volatile boolean dependencyFailed;
+        private Throwable failure;
+        private long nanos = -1;
+
+        private Node(ModContainer container, int index) {
+            this.container = container;
+            this.index = index;
+        }
+    }
+
+    /**
+     * @param sortedMods   the mods to run the task for, sorted so that every mod comes after its dependencies
+     * @param dependencies the dependencies of a mod
+     * @param onTaskDone   called after the task of a mod has completed, failed or was skipped
+     */
+    ModTaskScheduler(String name, List<ModContainer> sortedMods, Function<IModInfo, ? extends Collection<? extends IModInfo>> dependencies,
+            Consumer<ModContainer> task, Runnable onTaskDone) {
+        this.name = name;
+        this.task = task;
+        this.onTaskDone = onTaskDone;
+        this.nodes = new ArrayList<>(sortedMods.size());
+        Map<IModInfo, Node> nodesByMod = new IdentityHashMap<>(sortedMods.size());
+        for (var container : sortedMods) {
+            var node = new Node(container, nodes.size());
+            for (var dependency : dependencies.apply(container.getModInfo())) {
+                var dependencyNode = nodesByMod.get(dependency);
+                if (dependencyNode == null) {
+                    throw new IllegalStateException("Dependency task for mod %s which is a dependency of %s not found!".formatted(
+                            dependency.getModId(), container.getModId()));
+                }
+                dependencyNode.dependents.add(node);
+                node.pendingDependencies.incrementAndGet();
+            }
+            nodesByMod.put(container.getModInfo(), node);
+            nodes.add(node);
+        }
+        // Dependents always come later in the list, so their critical paths are known when walking it backwards
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            var node = nodes.get(i);
+            int longestDependentPath = 0;
+            for (var dependent : node.dependents) {
+                longestDependentPath = Math.max(longestDependentPath, dependent.criticalPath);
+            }
+            node.criticalPath = longestDependentPath + 1;
+        }
+        this.ready = new PriorityBlockingQueue<>(Math.max(1, nodes.size()),
+                Comparator.<Node>comparingInt(node -> -node.criticalPath).thenComparingInt(node -> node.index));
+        this.remaining = new AtomicInteger(nodes.size());
+    }
+
+    /**
+     * Runs the tasks on the given executor, and waits for all of them to complete.
+     * The periodic task is run on the calling thread while waiting.
+     */
+    Result run(Executor executor, Runnable periodicTask) {
+        waitingThread = Thread.currentThread();
+        long start = System.nanoTime();
+        // Collect the nodes without dependencies first, since scheduled tasks may already be counting down others
+        // All of them are queued before any runs, so that the most important one runs first
+        var roots = nodes.stream().filter(node -> node.pendingDependencies.get() == 0).toList();
+        ready.addAll(roots);
+        for (int i = 0; i < roots.size(); i++) {
+            dispatch(executor);
+        }
+        // Tasks wake this thread once the last of them has completed
+        while (remaining.get() > 0) {
+            periodicTask.run();
+            LockSupport.parkNanos(this, PERIODIC_TASK_INTERVAL);
+        }
+        waitingThread = null;
+
+        var failures = new ArrayList<Throwable>();
+        Map<ModContainer, Long> timings = new IdentityHashMap<>(nodes.size());
+        for (var node : nodes) {
+            if (node.failure != null) {
+                failures.add(node.failure);
+            }
+            if (node.nanos >= 0) {
+                timings.put(node.container, node.nanos);
+            }
+        }
+        logTimings(System.nanoTime() - start, timings);
+        return new Result(failures, timings);
+    }
+
+    private void schedule(Node node, Executor executor) {
+        ready.add(node);
+        dispatch(executor);
+    }
+
+    private void dispatch(Executor executor) {
+        try {
+            executor.execute(() -> runNext(executor));
+        } catch (RejectedExecutionException e) {
+            // Run it on this thread instead, so that the node does not get lost
+            runNext(executor);
+        }
+    }
+
+    /**
+     * Runs the most important task that is ready. Every ready node schedules exactly one call to this,
+     * so there always is a ready node, but it is not necessarily the one that scheduled the call.
+     */
+    private void runNext(Executor executor) {
+        var node = ready.poll();
+        if (node == null) {
+            return;
+        }
+        try {
+            if (node.dependencyFailed) {
+                // The exception of the dependency is reported instead
+                LOGGER.debug(LOADING, "Skipping {} task for mod {} because a dependency threw an exception.", name, node.container.getModId());
+            } else {
+                long start = System.nanoTime();
+                try (var span = StartupProfiler.get().start("task", name, node.container.getModId())) {
+                    ModLoadingContext.get().setActiveContainer(node.container);
+                    task.accept(node.container);
+                } catch (Throwable t) {
+                    node.failure = t;
+                } finally {
+                    ModLoadingContext.get().setActiveContainer(null);
+                    node.nanos = System.nanoTime() - start;
+                }
+            }
+        } finally {
+            onTaskDone.run();
+            boolean failed = node.dependencyFailed || node.failure != null;
+            for (var dependent : node.dependents) {
+                if (failed) {
+                    dependent.dependencyFailed = true;
+                }
+                if (dependent.pendingDependencies.decrementAndGet() == 0) {
+                    schedule(dependent, executor);
+                }
+            }
+            if (remaining.decrementAndGet() == 0) {
+                var thread = waitingThread;
+                if (thread != null) {
+                    LockSupport.unpark(thread);
+                }
+            }
+        }
+    }
+
+    private void logTimings(long totalNanos, Map<ModContainer, Long> timings) {
+        if (!LOGGER.isDebugEnabled(LOADING)) {
+            return;
+        }
+        var slowest = timings.entrySet().stream()
+                .sorted(Map.Entry.<ModContainer, Long>comparingByValue().reversed())
+                .limit(SLOWEST_MODS_LOGGED)
+                .map(entry -> entry.getKey().getModId() + " (" + TimeUnit.NANOSECONDS.toMillis(entry.getValue()) + " ms)")
+                .toList();
+        LOGGER.debug(LOADING, "{} took {} ms for {} mods, slowest mods: {}", name, TimeUnit.NANOSECONDS.toMillis(totalNanos), nodes.size(), slowest);
+    }
+}
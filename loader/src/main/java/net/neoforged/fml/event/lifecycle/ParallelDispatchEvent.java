@@ -25,4 +25,24 @@ public abstract class ParallelDispatchEvent extends ModLifecycleEvent {
     public <T> CompletableFuture<T> enqueueWork(Supplier<T> work) {
         return workQueue.enqueueWork(getContainer(), work);
     }
+
+    /**
+     * Enqueues work that does not need to run on the main thread, but must run after this event,
+     * in order with the other work of this mod.
+     *
+     * @see DeferredWorkQueue#enqueueParallelWork(ModContainer, Runnable)
+     */
+    public CompletableFuture<Void> enqueueParallelWork(Runnable work) {
+        return workQueue.enqueueParallelWork(getContainer(), work);
+    }
+
+    /**
+     * Enqueues work that does not need to run on the main thread, but must run after this event,
+     * in order with the other work of this mod.
+     *
+     * @see DeferredWorkQueue#enqueueParallelWork(ModContainer, Supplier)
+     */
+    public <T> CompletableFuture<T> enqueueParallelWork(Supplier<T> work) {
+        return workQueue.enqueueParallelWork(getContainer(), work);
+    }
 }
@@ -7,6 +7,7 @@ package net.neoforged.fml.javafmlmod;
 
 import static net.neoforged.fml.Logging.LOADING;
 
+import java.lang.annotation.ElementType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.EnumSet;
@@ -42,8 +43,8 @@ public class AutomaticEventSubscriber {
     public static void inject(final ModContainer mod, final ModFileScanData scanData, final Module layer) {
         if (scanData == null) return;
         LOGGER.debug(LOADING, "Attempting to inject @EventBusSubscriber classes into the eventbus for {}", mod.getModId());
-        List<ModFileScanData.AnnotationData> ebsTargets = scanData.getAnnotations().stream().filter(annotationData -> AUTO_SUBSCRIBER.equals(annotationData.annotationType())).collect(Collectors.toList());
-        Map<String, String> modids = scanData.getAnnotations().stream().filter(annotationData -> MOD_TYPE.equals(annotationData.annotationType())).collect(Collectors.toMap(a -> a.clazz().getClassName(), a -> (String) a.annotationData().get("value")));
+        List<ModFileScanData.AnnotationData> ebsTargets = scanData.getAnnotatedBy(AUTO_SUBSCRIBER, ElementType.TYPE).collect(Collectors.toList());
+        Map<String, String> modids = scanData.getAnnotatedBy(MOD_TYPE, ElementType.TYPE).collect(Collectors.toMap(a -> a.clazz().getClassName(), a -> (String) a.annotationData().get("value")));
 
         ebsTargets.forEach(ad -> {
             final EnumSet<Dist> sides = getSides(ad.annotationData().get("value"));
@@ -44,7 +44,9 @@ public class FMLConfig {
         EARLY_WINDOW_WIDTH("earlyWindowWidth", 854, "Early window width"),
         EARLY_WINDOW_HEIGHT("earlyWindowHeight", 480, "Early window height"),
         EARLY_WINDOW_MAXIMIZED("earlyWindowMaximized", Boolean.FALSE, "Early window starts maximized"),
-        EARLY_LOADING_SCREEN_THEME("earlyLoadingScreenTheme", "", "Force a given theme-id to be used for the early loading screen");
+        EARLY_LOADING_SCREEN_THEME("earlyLoadingScreenTheme", "", "Force a given theme-id to be used for the early loading screen"),
+        MOD_SCAN_CACHE("modScanCache", Boolean.TRUE, "Cache the classes and annotations found in mod files between launches, so that unchanged mod files are not scanned again"),
+        EXTRACT_NESTED_JARS("extractNestedJars", Boolean.TRUE, "Extract the jars that are nested in mod files into a cache directory, instead of reading them through the outer jar");
 
         private final String entry;
         private final Object defaultValue;
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) NeoForged and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.neoforged.fml.loading;
+
+import com.google.gson.stream.JsonWriter;
+import com.mojang.logging.LogUtils;
+import cpw.mods.cl.ModuleClassLoader;
+import cpw.mods.modlauncher.TransformingClassLoader;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+/**
+ * Records how long the steps of mod loading take, and exports them as a report.
+ * <p>
+ * The profiler is enabled by setting the {@code fml.startupProfile} system property to a directory.
+ * Every {@linkplain #start span} records its wall time, and the CPU time and allocations of the thread that ran it,
+ * if the JVM supports measuring them. Spans are recorded for mod discovery, mod file scanning, every mod in every
+ * lifecycle phase, and every deferred task, and the report also contains the totals of class loading and
+ * transformation.
+ * <p>
+ * {@link #export()} writes the report as {@code startup-profile.json}, and in the Chrome trace event format as
+ * {@code startup-profile.trace.json}, which can be opened in {@code chrome://tracing} or Perfetto.
+ * It is called once the last lifecycle phase has finished, or when loading fails.
+ */
+@ApiStatus.Internal
+public final class StartupProfiler {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final StartupProfiler INSTANCE = new StartupProfiler(System.getProperty("fml.startupProfile"));
+    private static final Span NO_SPAN = () -> {};
+
+    @Nullable
+    private final Path outputDir;
+    private final long origin = System.nanoTime();
+    private final Queue<SpanRecord> records = new ConcurrentLinkedQueue<>();
+    @Nullable
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    /**
+     * A span that is being recorded. Closing it records it.
+     */
+    public interface Span extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private record SpanRecord(String category, String name, @Nullable String modId, long threadId, String threadName,
+            long start, long wallNanos, long cpuNanos, long allocatedBytes) {}
+
+    private StartupProfiler(@Nullable String outputDir) {
+        this.outputDir = outputDir == null || outputDir.isEmpty() ? null : Path.of(outputDir);
+        this.threadBean = this.outputDir != null ? findThreadBean() : null;
+    }
+
+    @Nullable
+    private static com.sun.management.ThreadMXBean findThreadBean() {
+        try {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                    && bean.isCurrentThreadCpuTimeSupported() && bean.isThreadAllocatedMemorySupported()) {
+                bean.setThreadCpuTimeEnabled(true);
+                bean.setThreadAllocatedMemoryEnabled(true);
+                return bean;
+            }
+        } catch (LinkageError | RuntimeException e) {
+            LOGGER.debug(LogMarkers.LOADING, "Thread CPU time and allocations cannot be measured", e);
+        }
+        return null;
+    }
+
+    /**
+     * {@return the startup profiler of this launch}
+     */
+    public static StartupProfiler get() {
+        return INSTANCE;
+    }
+
+    /**
+     * {@return whether the profiler is enabled}
+     */
+    public boolean isEnabled() {
+        return outputDir != null;
+    }
+
+    /**
+     * Starts a span on the current thread, which is recorded once it is closed.
+     *
+     * @param category the kind of step, such as {@code discovery} or {@code task}
+     * @param name     the name of the step
+     * @param modId    the mod the step was run for, if any
+     */
+    public Span start(String category, String name, @Nullable String modId) {
+        if (outputDir == null) {
+            return NO_SPAN;
+        }
+        var thread = Thread.currentThread();
+        long start = System.nanoTime();
+        long cpu = threadBean != null ? threadBean.getCurrentThreadCpuTime() : 0;
+        long allocated = threadBean != null ? threadBean.getCurrentThreadAllocatedBytes() : 0;
+        return () -> records.add(new SpanRecord(category, name, modId, thread.threadId(), thread.getName(),
+                start - origin,
+                System.nanoTime() - start,
+                threadBean != null ? threadBean.getCurrentThreadCpuTime() - cpu : -1,
+                threadBean != null ? threadBean.getCurrentThreadAllocatedBytes() - allocated : -1));
+    }
+
+    /**
+     * Writes the report of everything recorded so far, replacing the previous report.
+     */
+    public void export() {
+        if (outputDir == null) {
+            return;
+        }
+        var snapshot = new ArrayList<>(records);
+        try {
+            Files.createDirectories(outputDir);
+            write(outputDir.resolve("startup-profile.json"), writer -> writeReport(writer, snapshot));
+            write(outputDir.resolve("startup-profile.trace.json"), writer -> writeTrace(writer, snapshot));
+        } catch (IOException e) {
+            LOGGER.warn(LogMarkers.LOADING, "Failed to write the startup profile to {}", outputDir, e);
+        }
+    }
+
+    private interface JsonContent {
+        void write(JsonWriter writer) throws IOException;
+    }
+
+    private static void write(Path file, JsonContent content) throws IOException {
+        var temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8); var writer = new JsonWriter(out)) {
+                writer.setIndent(" ");
+                content.write(writer);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void writeReport(JsonWriter writer, List<SpanRecord> snapshot) throws IOException {
+        writer.beginObject();
+        writer.name("elapsedMillis").value(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - origin));
+
+        // Totals per category, which also covers discovery and scanning
+        record Total(int count, long wallNanos, long cpuNanos, long allocatedBytes) {
+            Total add(SpanRecord record) {
+                return new Total(count + 1, wallNanos + record.wallNanos(), cpuNanos + record.cpuNanos(), allocatedBytes + record.allocatedBytes());
+            }
+        }
+        Map<String, Total> totals = new LinkedHashMap<>();
+        for (var record : snapshot) {
+            totals.compute(record.category(), (category, total) -> (total != null ? total : new Total(0, 0, 0, 0)).add(record));
+        }
+        writer.name("totals").beginObject();
+        for (var entry : totals.entrySet()) {
+            writer.name(entry.getKey()).beginObject();
+            writer.name("count").value(entry.getValue().count());
+            writer.name("wallNanos").value(entry.getValue().wallNanos());
+            if (threadBean != null) {
+                writer.name("cpuNanos").value(entry.getValue().cpuNanos());
+                writer.name("allocatedBytes").value(entry.getValue().allocatedBytes());
+            }
+            writer.endObject();
+        }
+        writer.endObject();
+
+        writer.name("classLoading").beginObject();
+        writer.name("classes").value(ModuleClassLoader.getLoadedClassCount());
+        writer.name("wallNanos").value(ModuleClassLoader.getClassLoadingNanos());
+        writer.endObject();
+        writer.name("transformation").beginObject();
+        writer.name("classes").value(TransformingClassLoader.getTransformedClassCount());
+        writer.name("wallNanos").value(TransformingClassLoader.getTransformationNanos());
+        writer.endObject();
+
+        writer.name("spans").beginArray();
+        for (var record : snapshot) {
+            writer.beginObject();
+            writer.name("category").value(record.category());
+            writer.name("name").value(record.name());
+            if (record.modId() != null) {
+                writer.name("mod").value(record.modId());
+            }
+            writer.name("thread").value(record.threadName());
+            writer.name("startNanos").value(record.start());
+            writer.name("wallNanos").value(record.wallNanos());
+            if (threadBean != null) {
+                writer.name("cpuNanos").value(record.cpuNanos());
+                writer.name("allocatedBytes").value(record.allocatedBytes());
+            }
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    private void writeTrace(JsonWriter writer, List<SpanRecord> snapshot) throws IOException {
+        writer.beginObject();
+        writer.name("displayTimeUnit").value("ms");
+        writer.name("traceEvents").beginArray();
+        Map<Long, String> threadNames = new LinkedHashMap<>();
+        for (var record : snapshot) {
+            threadNames.putIfAbsent(record.threadId(), record.threadName());
+            writer.beginObject();
+            writer.name("name").value(record.modId() != null ? record.modId() : record.name());
+            writer.name("cat").value(record.category());
+            writer.name("ph").value("X");
+            writer.name("ts").value(record.start() / 1000.0);
+            writer.name("dur").value(record.wallNanos() / 1000.0);
+            writer.name("pid").value(1);
+            writer.name("tid").value(record.threadId());
+            writer.name("args").beginObject();
+            writer.name("name").value(record.name());
+            if (threadBean != null) {
+                writer.name("cpuMillis").value(record.cpuNanos() / 1_000_000.0);
+                writer.name("allocatedBytes").value(record.allocatedBytes());
+            }
+            writer.endObject();
+            writer.endObject();
+        }
+        // Metadata events, so that threads are shown by name
+        for (var entry : threadNames.entrySet()) {
+            writer.beginObject();
+            writer.name("name").value("thread_name");
+            writer.name("ph").value("M");
+            writer.name("pid").value(1);
+            writer.name("tid").value(entry.getKey());
+            writer.name("args").beginObject().name("name").value(entry.getValue()).endObject();
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+}
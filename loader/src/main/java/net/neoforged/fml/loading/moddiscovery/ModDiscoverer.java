@@ -16,13 +16,21 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.zip.ZipException;
 import net.neoforged.fml.ModLoadingException;
 import net.neoforged.fml.ModLoadingIssue;
 import net.neoforged.fml.i18n.FMLTranslations;
+import net.neoforged.fml.loading.FMLConfig;
 import net.neoforged.fml.loading.ImmediateWindowHandler;
 import net.neoforged.fml.loading.LogMarkers;
+import net.neoforged.fml.loading.StartupProfiler;
 import net.neoforged.fml.loading.UniqueModListBuilder;
 import net.neoforged.fml.util.ServiceLoaderUtil;
 import net.neoforged.neoforgespi.ILaunchContext;
@@ -64,21 +72,32 @@ public class ModDiscoverer {
         ImmediateWindowHandler.updateProgress("Discovering mod files");
 
         // Loop all mod locators to get the root mods to load from.
-        for (var locator : modFileLocators) {
-            LOGGER.debug(LogMarkers.SCAN, "Trying locator {}", locator);
+        // Locators run one after another, so that earlier locators take precedence, but the paths they submit are read in parallel.
+        var executor = createReaderExecutor();
+        try {
+            for (var locator : modFileLocators) {
+                LOGGER.debug(LogMarkers.SCAN, "Trying locator {}", locator);
+
+                var defaultAttributes = ModFileDiscoveryAttributes.DEFAULT.withLocator(locator);
+                var pipeline = new DiscoveryPipeline(defaultAttributes, loadedFiles, discoveryIssues, executor);
+                try (var span = StartupProfiler.get().start("discovery", locator.toString(), null)) {
+                    try {
+                        locator.findCandidates(launchContext, pipeline);
+                    } finally {
+                        // Paths submitted before the locator failed are still added
+                        pipeline.completePendingReads();
+                    }
+                } catch (ModLoadingException e) {
+                    discoveryIssues.addAll(e.getIssues());
+                } catch (Exception e) {
+                    discoveryIssues.add(ModLoadingIssue.error("fml.modloadingissue.technical_error", locator.toString() + "failed").withCause(e));
+                }
 
-            var defaultAttributes = ModFileDiscoveryAttributes.DEFAULT.withLocator(locator);
-            var pipeline = new DiscoveryPipeline(defaultAttributes, loadedFiles, discoveryIssues);
-            try {
-                locator.findCandidates(launchContext, pipeline);
-            } catch (ModLoadingException e) {
-                discoveryIssues.addAll(e.getIssues());
-            } catch (Exception e) {
-                discoveryIssues.add(ModLoadingIssue.error("fml.modloadingissue.technical_error", locator.toString() + "failed").withCause(e));
+                LOGGER.debug(LogMarkers.SCAN, "Locator {} found {} mods, {} warnings, {} errors and skipped {} candidates", locator,
+                        pipeline.successCount, pipeline.warningCount, pipeline.errorCount, pipeline.skipCount);
             }
-
-            LOGGER.debug(LogMarkers.SCAN, "Locator {} found {} mods, {} warnings, {} errors and skipped {} candidates", locator,
-                    pipeline.successCount, pipeline.warningCount, pipeline.errorCount, pipeline.skipCount);
+        } finally {
+            executor.shutdown();
         }
 
         //First processing run of the mod list. Any duplicates will cause resolution failure and dependency loading will be skipped.
@@ -102,7 +121,7 @@ public class ModDiscoverer {
         if (successfullyLoadedMods) {
             LOGGER.debug(LogMarkers.SCAN, "Successfully Loaded {} mods. Attempting to load dependencies...", loadedFiles.size());
             for (var locator : dependencyLocators) {
-                try {
+                try (var span = StartupProfiler.get().start("discovery", locator.toString(), null)) {
                     LOGGER.debug(LogMarkers.SCAN, "Trying locator {}", locator);
                     var pipeline = new DiscoveryPipeline(ModFileDiscoveryAttributes.DEFAULT.withDependencyLocator(locator), loadedFiles, discoveryIssues);
                     locator.scanMods(List.copyOf(loadedFiles), pipeline);
@@ -139,6 +158,17 @@ public class ModDiscoverer {
         return validator;
     }
 
+    private static ExecutorService createReaderExecutor() {
+        int poolSize = FMLConfig.getIntConfigValue(FMLConfig.ConfigValue.MAX_THREADS);
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(poolSize, r -> {
+            final Thread thread = Executors.defaultThreadFactory().newThread(r);
+            thread.setDaemon(true);
+            thread.setName("mod-file-reader-" + threadCount.getAndIncrement());
+            return thread;
+        });
+    }
+
     private String logReport(Collection<List<ModFile>> modFiles) {
         return modFiles.stream()
                 .flatMap(Collection::stream)
@@ -161,6 +191,10 @@ public class ModDiscoverer {
         private final ModFileDiscoveryAttributes defaultAttributes;
         private final List<ModFile> loadedFiles;
         private final List<ModLoadingIssue> issues;
+        @Nullable
+        private final Executor executor;
+        // Reads of submitted paths, in the order the paths were submitted
+        private final List<CompletableFuture<ReadResult>> pendingReads = new ArrayList<>();
 
         private int successCount;
         private int errorCount;
@@ -170,34 +204,84 @@ public class ModDiscoverer {
         public DiscoveryPipeline(ModFileDiscoveryAttributes defaultAttributes,
                 List<ModFile> loadedFiles,
                 List<ModLoadingIssue> issues) {
+            this(defaultAttributes, loadedFiles, issues, null);
+        }
+
+        public DiscoveryPipeline(ModFileDiscoveryAttributes defaultAttributes,
+                List<ModFile> loadedFiles,
+                List<ModLoadingIssue> issues,
+                @Nullable Executor executor) {
             this.defaultAttributes = defaultAttributes;
             this.loadedFiles = loadedFiles;
             this.issues = issues;
+            this.executor = executor;
         }
 
         @Override
         public Optional<IModFile> addPath(List<Path> groupedPaths, ModFileDiscoveryAttributes attributes, IncompatibleFileReporting reporting) {
-            var primaryPath = groupedPaths.getFirst();
+            completePendingReads();
+            if (!locate(groupedPaths.getFirst())) {
+                return Optional.empty();
+            }
+            return apply(readPath(groupedPaths, attributes, reporting));
+        }
 
+        @Override
+        public void submitPath(List<Path> groupedPaths, ModFileDiscoveryAttributes attributes, IncompatibleFileReporting reporting) {
+            // Paths are located right away, so that duplicates are detected in the same order as with addPath
+            if (!locate(groupedPaths.getFirst())) {
+                return;
+            }
+            if (executor == null) {
+                completePendingReads();
+                apply(readPath(groupedPaths, attributes, reporting));
+            } else {
+                pendingReads.add(CompletableFuture.supplyAsync(() -> readPath(groupedPaths, attributes, reporting), executor)
+                        .exceptionally(e -> ReadResult.crashed(groupedPaths.getFirst(), e instanceof CompletionException ? e.getCause() : e)));
+            }
+        }
+
+        /**
+         * Adds the results of all submitted paths, in the order in which they were submitted.
+         * A read that failed only reports its own issues, it does not prevent the other results from being added.
+         */
+        void completePendingReads() {
+            try {
+                for (var read : pendingReads) {
+                    apply(read.join());
+                }
+            } finally {
+                pendingReads.clear();
+            }
+        }
+
+        private boolean locate(Path primaryPath) {
             if (!launchContext.addLocated(primaryPath)) {
                 LOGGER.debug("Skipping {} because it was already located earlier", primaryPath);
                 skipCount++;
-                return Optional.empty();
+                return false;
             }
+            return true;
+        }
+
+        /**
+         * Opens and reads the given paths without changing the state of the pipeline, so that it can run in parallel.
+         */
+        private ReadResult readPath(List<Path> groupedPaths, ModFileDiscoveryAttributes attributes, IncompatibleFileReporting reporting) {
+            var primaryPath = groupedPaths.getFirst();
 
             JarContents jarContents;
             try {
                 jarContents = JarContents.of(groupedPaths);
             } catch (Exception e) {
                 if (causeChainContains(e, ZipException.class)) {
-                    addIssue(ModLoadingIssue.error("fml.modloadingissue.brokenfile.invalidzip").withAffectedPath(primaryPath).withCause(e));
+                    return ReadResult.failed(ModLoadingIssue.error("fml.modloadingissue.brokenfile.invalidzip").withAffectedPath(primaryPath).withCause(e));
                 } else {
-                    addIssue(ModLoadingIssue.error("fml.modloadingissue.brokenfile").withAffectedPath(primaryPath).withCause(e));
+                    return ReadResult.failed(ModLoadingIssue.error("fml.modloadingissue.brokenfile").withAffectedPath(primaryPath).withCause(e));
                 }
-                return Optional.empty();
             }
 
-            return addJarContent(jarContents, attributes, reporting);
+            return readJarContent(jarContents, attributes, reporting);
         }
 
         @Override
@@ -214,6 +298,11 @@ public class ModDiscoverer {
 
         @Override
         public Optional<IModFile> addJarContent(JarContents jarContents, ModFileDiscoveryAttributes attributes, IncompatibleFileReporting reporting) {
+            completePendingReads();
+            return apply(readJarContent(jarContents, attributes, reporting));
+        }
+
+        private ReadResult readJarContent(JarContents jarContents, ModFileDiscoveryAttributes attributes, IncompatibleFileReporting reporting) {
             attributes = defaultAttributes.merge(attributes);
 
             List<ModLoadingIssue> incompatibilityIssues = new ArrayList<>();
@@ -222,10 +311,7 @@ public class ModDiscoverer {
                 try {
                     var provided = reader.read(jarContents, attributes);
                     if (provided != null) {
-                        if (addModFile(provided)) {
-                            return Optional.of(provided);
-                        }
-                        return Optional.empty();
+                        return new ReadResult(provided, List.of());
                     }
                 } catch (ModLoadingException e) {
                     // The reader didn't outright crash but reported reasons for incompatibility.
@@ -233,11 +319,11 @@ public class ModDiscoverer {
                     incompatibilityIssues.addAll(e.getIssues());
                 } catch (Exception e) {
                     // When a reader just outright crashes while reading the file, we do error intentionally.
-                    addIssue(ModLoadingIssue.error("fml.modloadingissue.brokenfile").withAffectedPath(jarContents.getPrimaryPath()).withCause(e));
-                    return Optional.empty();
+                    return ReadResult.failed(ModLoadingIssue.error("fml.modloadingissue.brokenfile").withAffectedPath(jarContents.getPrimaryPath()).withCause(e));
                 }
             }
 
+            List<ModLoadingIssue> issues = new ArrayList<>();
             // If a jar file was found in a subdirectory of the game directory, but could not be loaded,
             // it might be an incompatible mod type. We do not perform this validation for jars that we
             // found on the classpath or other locations since these are usually not under user control.
@@ -257,18 +343,31 @@ public class ModDiscoverer {
                     LOGGER.atLevel(reporting.getLogLevel())
                             .addMarker(LogMarkers.SCAN)
                             .log("Skipping jar. {}", FMLTranslations.translateIssueEnglish(issue));
-                    addIssue(issue);
+                    issues.add(issue);
                 }
             }
 
+            return new ReadResult(null, issues);
+        }
+
+        private Optional<IModFile> apply(ReadResult result) {
+            result.issues().forEach(this::reportIssue);
+            if (result.modFile() != null && acceptModFile(result.modFile())) {
+                return Optional.of(result.modFile());
+            }
             return Optional.empty();
         }
 
         @Override
         public boolean addModFile(IModFile mf) {
+            completePendingReads();
+            return acceptModFile(mf);
+        }
+
+        private boolean acceptModFile(IModFile mf) {
             if (!(mf instanceof ModFile modFile)) {
                 String detail = "Unexpected IModFile subclass: " + mf.getClass();
-                addIssue(ModLoadingIssue.error("fml.modloadingissue.technical_error", detail).withAffectedModFile(mf));
+                reportIssue(ModLoadingIssue.error("fml.modloadingissue.technical_error", detail).withAffectedModFile(mf));
                 return false;
             }
 
@@ -284,6 +383,11 @@ public class ModDiscoverer {
 
         @Override
         public void addIssue(ModLoadingIssue issue) {
+            completePendingReads();
+            reportIssue(issue);
+        }
+
+        private void reportIssue(ModLoadingIssue issue) {
             issues.add(issue);
             switch (issue.severity()) {
                 case WARNING -> warningCount++;
@@ -292,6 +396,25 @@ public class ModDiscoverer {
         }
     }
 
+    /**
+     * The result of reading a path or jar: the mod file, if a reader accepted it, and the issues to report.
+     */
+    private record ReadResult(@Nullable IModFile modFile, List<ModLoadingIssue> issues) {
+        static ReadResult failed(ModLoadingIssue issue) {
+            return new ReadResult(null, List.of(issue));
+        }
+
+        /**
+         * The result of a read that threw instead of returning a result.
+         */
+        static ReadResult crashed(Path primaryPath, Throwable e) {
+            if (e instanceof ModLoadingException mle) {
+                return new ReadResult(null, mle.getIssues());
+            }
+            return failed(ModLoadingIssue.error("fml.modloadingissue.brokenfile").withAffectedPath(primaryPath).withCause(e));
+        }
+    }
+
     private static boolean causeChainContains(Throwable e, Class<?> exceptionClass) {
         for (; e != null; e = e.getCause()) {
             if (exceptionClass.isInstance(e)) {
@@ -27,6 +27,8 @@ import java.util.jar.Manifest;
 import java.util.stream.Stream;
 import net.neoforged.fml.loading.FMLLoader;
 import net.neoforged.fml.loading.LogMarkers;
+import net.neoforged.fml.loading.StartupProfiler;
+import net.neoforged.fml.loading.modscan.ModScanCache;
 import net.neoforged.fml.loading.modscan.Scanner;
 import net.neoforged.neoforgespi.language.IModFileInfo;
 import net.neoforged.neoforgespi.language.IModInfo;
@@ -143,11 +145,22 @@ public class ModFile implements IModFile {
     }
 
     public CompletionStage<ModFileScanData> startScan(Executor executor) {
+        return startScan(executor, null);
+    }
+
+    /**
+     * Starts scanning this mod file, using the scan data in the given cache if it is still up-to-date.
+     */
+    public CompletionStage<ModFileScanData> startScan(Executor executor, @Nullable ModScanCache scanCache) {
         if (this.futureScanResult != null) {
             throw new IllegalStateException("The mod file scan was already started.");
         }
 
-        this.futureScanResult = CompletableFuture.supplyAsync(() -> new Scanner(this).scan(), executor);
+        this.futureScanResult = CompletableFuture.supplyAsync(() -> {
+            try (var span = StartupProfiler.get().start("scan", getFileName(), null)) {
+                return scanCache != null ? scanCache.computeIfAbsent(this, () -> new Scanner(this, executor).scan()) : new Scanner(this, executor).scan();
+            }
+        }, executor);
         return this.futureScanResult;
     }
 
@@ -21,6 +21,8 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import net.neoforged.fml.ModLoadingException;
 import net.neoforged.fml.ModLoadingIssue;
+import net.neoforged.fml.loading.FMLConfig;
+import net.neoforged.fml.loading.FMLPaths;
 import net.neoforged.jarjar.selection.JarSelector;
 import net.neoforged.neoforgespi.language.IModInfo;
 import net.neoforged.neoforgespi.locating.IDependencyLocator;
@@ -30,19 +32,27 @@ import net.neoforged.neoforgespi.locating.ModFileDiscoveryAttributes;
 import net.neoforged.neoforgespi.locating.ModFileLoadingException;
 import org.apache.maven.artifact.versioning.ArtifactVersion;
 import org.apache.maven.artifact.versioning.VersionRange;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 public class JarInJarDependencyLocator implements IDependencyLocator {
     private static final Logger LOGGER = LogUtils.getLogger();
 
+    @Nullable
+    private NestedJarCache nestedJarCache;
+
     @Override
     public void scanMods(List<IModFile> loadedMods, IDiscoveryPipeline pipeline) {
+        nestedJarCache = FMLConfig.getBoolConfigValue(FMLConfig.ConfigValue.EXTRACT_NESTED_JARS) ? NestedJarCache.open(FMLPaths.GAMEDIR.get()) : null;
         List<IModFile> dependenciesToLoad = JarSelector.detectAndSelect(
                 loadedMods,
                 this::loadResourceFromModFile,
                 (file, path) -> loadModFileFrom(file, path, pipeline),
                 this::identifyMod,
                 this::exception);
+        if (nestedJarCache != null) {
+            nestedJarCache.removeUnusedEntries();
+        }
 
         if (dependenciesToLoad.isEmpty()) {
             LOGGER.info("No dependencies to load found. Skipping!");
@@ -58,6 +68,11 @@ public class JarInJarDependencyLocator implements IDependencyLocator {
     protected Optional<IModFile> loadModFileFrom(IModFile file, final Path path, IDiscoveryPipeline pipeline) {
         try {
             var pathInModFile = file.findResource(path.toString());
+            var extracted = nestedJarCache != null ? nestedJarCache.extract(file, pathInModFile, path.toString()) : null;
+            if (extracted != null) {
+                var providerResult = pipeline.readModFile(JarContents.of(extracted), ModFileDiscoveryAttributes.DEFAULT.withParent(file));
+                return Optional.ofNullable(providerResult);
+            }
             var filePathUri = new URI("jij:" + (pathInModFile.toAbsolutePath().toUri().getRawSchemeSpecificPart())).normalize();
             var outerFsArgs = ImmutableMap.of("packagePath", pathInModFile);
             var zipFS = FileSystems.newFileSystem(filePathUri, outerFsArgs);
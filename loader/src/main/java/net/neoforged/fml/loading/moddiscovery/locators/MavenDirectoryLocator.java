@@ -44,7 +44,7 @@ public class MavenDirectoryLocator implements IModFileCandidateLocator {
 
             var path = mavenRootPaths.stream().map(root -> root.resolve(relativePath)).filter(Files::exists).findFirst();
             if (path.isPresent()) {
-                pipeline.addPath(path.get(), ModFileDiscoveryAttributes.DEFAULT, IncompatibleFileReporting.ERROR);
+                pipeline.submitPath(path.get(), ModFileDiscoveryAttributes.DEFAULT, IncompatibleFileReporting.ERROR);
             } else {
                 pipeline.addIssue(ModLoadingIssue.error("fml.modloadingissue.maven_coordinate_not_found", modCoordinate, mavenRootPaths));
             }
@@ -67,7 +67,7 @@ public class ModsFolderLocator implements IModFileCandidateLocator {
                 continue;
             }
 
-            pipeline.addPath(file, ModFileDiscoveryAttributes.DEFAULT, IncompatibleFileReporting.WARN_ALWAYS);
+            pipeline.submitPath(file, ModFileDiscoveryAttributes.DEFAULT, IncompatibleFileReporting.WARN_ALWAYS);
         }
     }
 
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) NeoForged and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.neoforged.fml.loading.moddiscovery.locators;
+
+import com.mojang.logging.LogUtils;
+import cpw.mods.niofs.union.UnionFileSystem;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import net.neoforged.fml.loading.LogMarkers;
+import net.neoforged.neoforgespi.locating.IModFile;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+/**
+ * Extracts jars that are nested in mod files into a cache directory, so that they can be opened directly instead of
+ * through a file system on top of the file system of the outer jar.
+ * <p>
+ * Every extracted jar is stored in a directory named after the SHA-256 digest of the outer jars and the path of the
+ * nested jar in them, and keeps its file name, since the module name of a jar can be derived from it. The digests of
+ * the outer jars are stored along with their size and modification time, and are only computed again if those change.
+ * Extracted jars are reused by later launches, and directories that were not used by a launch are removed.
+ */
+final class NestedJarCache {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final String DIGESTS_FILE = "digests.properties";
+
+    private final Path cacheDir;
+    // Digests of the outer jars that were stored by previous launches
+    private final Map<Path, OuterDigest> storedDigests;
+    // Digests of the outer jars used by this launch, which are computed at most once per launch
+    private final Map<Path, OuterDigest> outerDigests = new ConcurrentHashMap<>();
+    private final Set<String> usedEntries = ConcurrentHashMap.newKeySet();
+
+    private record OuterDigest(long size, long lastModified, byte[] digest) {
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    private NestedJarCache(Path cacheDir) {
+        this.cacheDir = cacheDir;
+        this.storedDigests = readDigests(cacheDir.resolve(DIGESTS_FILE));
+    }
+
+    /**
+     * Opens the cache in the given game directory, or returns {@code null} if it cannot be used.
+     */
+    @Nullable
+    static NestedJarCache open(@Nullable Path gameDir) {
+        if (gameDir == null) {
+            return null;
+        }
+        var cacheDir = gameDir.resolve(".cache").resolve("fml").resolve("jarinjar");
+        try {
+            Files.createDirectories(cacheDir);
+        } catch (IOException e) {
+            LOGGER.warn(LogMarkers.LOADING, "Failed to create nested jar cache directory {}, nested jars will be read in place", cacheDir, e);
+            return null;
+        }
+        return new NestedJarCache(cacheDir);
+    }
+
+    /**
+     * Returns the extracted copy of the given nested jar, extracting it first if necessary.
+     * Returns {@code null} if any of the paths of the outer mod file is not a file on the default file system.
+     */
+    @Nullable
+    Path extract(IModFile outer, Path nestedJar, String entryPath) throws IOException {
+        // The nested jar can come from any of the paths of the outer mod file
+        var outerPaths = outer.getSecureJar().getRootPath().getFileSystem() instanceof UnionFileSystem fs ? fs.getBasePaths() : List.of(outer.getFilePath());
+        for (var outerPath : outerPaths) {
+            if (outerPath.getFileSystem() != FileSystems.getDefault() || !Files.isRegularFile(outerPath)) {
+                return null;
+            }
+        }
+
+        var digest = sha256();
+        for (var outerPath : outerPaths) {
+            digest.update(outerDigest(outerPath));
+        }
+        digest.update(entryPath.getBytes(StandardCharsets.UTF_8));
+        var entryName = HexFormat.of().formatHex(digest.digest());
+        usedEntries.add(entryName);
+        var entryDir = cacheDir.resolve(entryName);
+        var extracted = entryDir.resolve(nestedJar.getFileName().toString());
+        if (Files.isRegularFile(extracted)) {
+            return extracted;
+        }
+
+        LOGGER.debug(LogMarkers.LOADING, "Extracting nested jar {} from {} to {}", entryPath, outer.getFileName(), extracted);
+        Files.createDirectories(entryDir);
+        var temp = Files.createTempFile(entryDir, extracted.getFileName().toString(), ".tmp");
+        try {
+            Files.copy(nestedJar, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, extracted, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return extracted;
+    }
+
+    /**
+     * Removes the extracted jars and outer jar digests that were not used since the cache was opened.
+     */
+    void removeUnusedEntries() {
+        try (Stream<Path> entries = Files.list(cacheDir)) {
+            for (var entry : (Iterable<Path>) entries::iterator) {
+                var name = entry.getFileName().toString();
+                if (!name.equals(DIGESTS_FILE) && !usedEntries.contains(name)) {
+                    deleteRecursively(entry);
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.debug(LogMarkers.LOADING, "Failed to clean up the nested jar cache {}", cacheDir, e);
+        }
+        writeDigests(cacheDir.resolve(DIGESTS_FILE), outerDigests);
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> children = Files.list(path)) {
+                for (var child : (Iterable<Path>) children::iterator) {
+                    deleteRecursively(child);
+                }
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+
+    private byte[] outerDigest(Path outerPath) throws IOException {
+        var known = outerDigests.get(outerPath);
+        if (known != null) {
+            return known.digest();
+        }
+        var attributes = Files.readAttributes(outerPath, BasicFileAttributes.class);
+        var stored = storedDigests.get(outerPath);
+        if (stored != null && stored.matches(attributes)) {
+            outerDigests.put(outerPath, stored);
+            return stored.digest();
+        }
+        var digest = sha256();
+        try (InputStream in = Files.newInputStream(outerPath)) {
+            var buffer = new byte[65536];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        var result = digest.digest();
+        outerDigests.put(outerPath, new OuterDigest(attributes.size(), attributes.lastModifiedTime().toMillis(), result));
+        return result;
+    }
+
+    /**
+     * Reads the stored digests of outer jars, as a property per jar of its size, modification time and digest.
+     */
+    private static Map<Path, OuterDigest> readDigests(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return Map.of();
+        }
+        var properties = new Properties();
+        try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.debug(LogMarkers.LOADING, "Failed to read the nested jar cache digests {}", file, e);
+            return Map.of();
+        }
+        var result = new HashMap<Path, OuterDigest>();
+        for (var path : properties.stringPropertyNames()) {
+            var parts = properties.getProperty(path).split(":");
+            try {
+                result.put(Path.of(path), new OuterDigest(Long.parseLong(parts[0]), Long.parseLong(parts[1]), HexFormat.of().parseHex(parts[2])));
+            } catch (RuntimeException e) {
+                LOGGER.debug(LogMarkers.LOADING, "Ignoring invalid nested jar cache digest for {}", path, e);
+            }
+        }
+        return result;
+    }
+
+    private static void writeDigests(Path file, Map<Path, OuterDigest> digests) {
+        var properties = new Properties();
+        digests.forEach((path, digest) -> properties.setProperty(path.toString(), digest.size() + ":" + digest.lastModified() + ":" + HexFormat.of().formatHex(digest.digest())));
+        try {
+            var temp = Files.createTempFile(file.getParent(), DIGESTS_FILE, ".tmp");
+            try {
+                try (var writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    properties.store(writer, null);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            LOGGER.debug(LogMarkers.LOADING, "Failed to write the nested jar cache digests {}", file, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
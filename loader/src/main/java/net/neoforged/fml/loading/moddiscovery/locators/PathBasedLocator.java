@@ -24,7 +24,7 @@ public record PathBasedLocator(String name, List<Path> paths) implements IModFil
     @Override
     public void findCandidates(ILaunchContext context, IDiscoveryPipeline pipeline) {
         for (var path : paths) {
-            pipeline.addPath(path, ModFileDiscoveryAttributes.DEFAULT, IncompatibleFileReporting.ERROR);
+            pipeline.submitPath(path, ModFileDiscoveryAttributes.DEFAULT, IncompatibleFileReporting.ERROR);
         }
     }
 
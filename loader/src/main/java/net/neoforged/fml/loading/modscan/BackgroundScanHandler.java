@@ -15,10 +15,12 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import net.neoforged.fml.loading.FMLConfig;
+import net.neoforged.fml.loading.FMLPaths;
 import net.neoforged.fml.loading.ImmediateWindowHandler;
 import net.neoforged.fml.loading.LoadingModList;
 import net.neoforged.fml.loading.LogMarkers;
 import net.neoforged.fml.loading.moddiscovery.ModFile;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 public class BackgroundScanHandler {
@@ -38,6 +40,8 @@ public class BackgroundScanHandler {
     private final List<ModFile> allFiles;
     private ScanStatus status;
     private LoadingModList loadingModList;
+    @Nullable
+    private final ModScanCache scanCache;
 
     public BackgroundScanHandler() {
         int maxThreads = FMLConfig.getIntConfigValue(FMLConfig.ConfigValue.MAX_THREADS);
@@ -54,6 +58,7 @@ public class BackgroundScanHandler {
         pendingFiles = new ArrayList<>();
         allFiles = new ArrayList<>();
         status = ScanStatus.NOT_STARTED;
+        scanCache = FMLConfig.getBoolConfigValue(FMLConfig.ConfigValue.MOD_SCAN_CACHE) ? ModScanCache.open(FMLPaths.GAMEDIR.get()) : null;
     }
 
     public void submitForScanning(final ModFile file) {
@@ -65,7 +70,7 @@ public class BackgroundScanHandler {
         ImmediateWindowHandler.updateProgress("Scanning mod candidates");
         allFiles.add(file);
         pendingFiles.add(file);
-        file.startScan(modContentScanner)
+        file.startScan(modContentScanner, scanCache)
                 .whenComplete((ignored, t) -> this.addCompletedFile(file, t));
     }
 
@@ -101,5 +106,6 @@ public class BackgroundScanHandler {
         } while (status == ScanStatus.RUNNING);
         if (status == ScanStatus.INTERRUPTED) Thread.currentThread().interrupt();
         if (status != ScanStatus.COMPLETE) throw new IllegalStateException("Failed to complete mod scan");
+        if (scanCache != null) scanCache.removeUnusedEntries();
     }
 }
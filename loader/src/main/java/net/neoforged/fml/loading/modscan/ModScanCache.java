@@ -0,0 +1,561 @@
+/*
+ * Copyright (c) NeoForged and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.neoforged.fml.loading.modscan;
+
+import com.mojang.logging.LogUtils;
+import cpw.mods.niofs.union.UnionFileSystem;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.ElementType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import net.neoforged.fml.loading.LogMarkers;
+import net.neoforged.fml.loading.moddiscovery.ModFile;
+import net.neoforged.neoforgespi.language.ModFileScanData;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+
+/**
+ * Persists the {@link ModFileScanData} of mod files between launches, so that unchanged mod files are not scanned again.
+ * <p>
+ * There is one entry per list of jars a mod file consists of, which stores the size and modification time of every jar
+ * and a SHA-256 digest of all of them, along with the classes and annotations found in the mod file.
+ * An entry is used as-is if all sizes and modification times still match, and is only used after comparing the digest
+ * if just the modification times changed. Entries of mod files that were not scanned in a launch are removed at the end of it.
+ * <p>
+ * Only mod files made of jars on the default file system are cached. Mod files containing directories or nested jars
+ * are always scanned, and so are filtered mod files, since their filter cannot be fingerprinted.
+ */
+@ApiStatus.Internal
+public final class ModScanCache {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int MAGIC = 0x464D5343; // FMSC
+    private static final int FORMAT_VERSION = 2;
+
+    // Tags of annotation values
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte BYTE = 3;
+    private static final byte CHAR = 4;
+    private static final byte SHORT = 5;
+    private static final byte INT = 6;
+    private static final byte LONG = 7;
+    private static final byte FLOAT = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte TYPE = 10;
+    private static final byte ENUM = 11;
+    private static final byte LIST = 12;
+    private static final byte MAP = 13;
+    private static final byte BOOLEAN_ARRAY = 14;
+    private static final byte BYTE_ARRAY = 15;
+    private static final byte CHAR_ARRAY = 16;
+    private static final byte SHORT_ARRAY = 17;
+    private static final byte INT_ARRAY = 18;
+    private static final byte LONG_ARRAY = 19;
+    private static final byte FLOAT_ARRAY = 20;
+    private static final byte DOUBLE_ARRAY = 21;
+    private static final ElementType[] ELEMENT_TYPES = ElementType.values();
+
+    private final Path cacheDir;
+    private final Set<String> usedEntries = ConcurrentHashMap.newKeySet();
+
+    private ModScanCache(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Opens the cache in the given game directory, or returns {@code null} if it cannot be used.
+     */
+    @Nullable
+    public static ModScanCache open(@Nullable Path gameDir) {
+        if (gameDir == null) {
+            return null;
+        }
+        var cacheDir = gameDir.resolve(".cache").resolve("fml").resolve("modscan");
+        try {
+            Files.createDirectories(cacheDir);
+        } catch (IOException e) {
+            LOGGER.warn(LogMarkers.SCAN, "Failed to create mod scan cache directory {}, mod files will always be scanned", cacheDir, e);
+            return null;
+        }
+        return new ModScanCache(cacheDir);
+    }
+
+    /**
+     * Returns the cached scan data of the given mod file, or scans it using the given scanner and stores the result.
+     */
+    public ModFileScanData computeIfAbsent(ModFile file, Supplier<ModFileScanData> scanner) {
+        // Directories, nested jars and filtered jars are not cached
+        if (!(file.getSecureJar().getRootPath().getFileSystem() instanceof UnionFileSystem fs) || fs.getFilesystemFilter() != null) {
+            return scanner.get();
+        }
+        var paths = fs.getBasePaths();
+        var sizes = new long[paths.size()];
+        var modified = new long[paths.size()];
+        try {
+            for (int i = 0; i < paths.size(); i++) {
+                var path = paths.get(i);
+                if (path.getFileSystem() != FileSystems.getDefault()) {
+                    return scanner.get();
+                }
+                var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    return scanner.get();
+                }
+                sizes[i] = attributes.size();
+                modified[i] = attributes.lastModifiedTime().toMillis();
+            }
+        } catch (IOException e) {
+            return scanner.get();
+        }
+
+        var entryName = entryName(paths);
+        usedEntries.add(entryName);
+        var entry = cacheDir.resolve(entryName);
+        var digest = new byte[][] { null };
+        var cached = read(entry, file, paths, sizes, modified, digest);
+        if (cached != null) {
+            LOGGER.debug(LogMarkers.SCAN, "Using cached scan data for {}", file);
+            if (digest[0] != null) {
+                // Store the new modification times, so that the digest is not computed again next time
+                write(entry, file, paths, sizes, modified, digest[0], cached);
+            }
+            cached.addModFileInfo(file.getModFileInfo());
+            return cached;
+        }
+
+        var result = scanner.get();
+        write(entry, file, paths, sizes, modified, digest[0], result);
+        return result;
+    }
+
+    /**
+     * Reads the entry if it matches the jars of the mod file. If the digest of the jars had to be computed,
+     * it is stored in the given array.
+     */
+    @Nullable
+    private static ModFileScanData read(Path entry, ModFile file, List<Path> paths, long[] sizes, long[] modified, byte[][] digest) {
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != paths.size()) {
+                return null;
+            }
+            boolean modifiedChanged = false;
+            for (int i = 0; i < paths.size(); i++) {
+                if (in.readLong() != sizes[i]) {
+                    return null;
+                }
+                modifiedChanged |= in.readLong() != modified[i];
+            }
+            var cachedDigest = in.readNBytes(32);
+            if (modifiedChanged) {
+                digest[0] = digest(paths);
+                if (!Arrays.equals(digest[0], cachedDigest)) {
+                    return null;
+                }
+            }
+            return new Reader(in).read();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug(LogMarkers.SCAN, "Ignoring invalid mod scan cache entry {} for {}", entry, file, e);
+            return null;
+        }
+    }
+
+    private void write(Path entry, ModFile file, List<Path> paths, long[] sizes, long[] modified, byte @Nullable [] digest, ModFileScanData data) {
+        try {
+            var temp = Files.createTempFile(cacheDir, entry.getFileName().toString(), ".tmp");
+            try {
+                try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeInt(paths.size());
+                    for (int i = 0; i < paths.size(); i++) {
+                        out.writeLong(sizes[i]);
+                        out.writeLong(modified[i]);
+                    }
+                    out.write(digest != null ? digest : digest(paths));
+                    new Writer(out).write(data);
+                }
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug(LogMarkers.SCAN, "Failed to store scan data of {} in the mod scan cache", file, e);
+        }
+    }
+
+    /**
+     * Removes the entries of all mod files that were not looked up since the cache was opened.
+     */
+    public void removeUnusedEntries() {
+        try (Stream<Path> entries = Files.list(cacheDir)) {
+            for (var entry : (Iterable<Path>) entries::iterator) {
+                if (!usedEntries.contains(entry.getFileName().toString())) {
+                    Files.deleteIfExists(entry);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug(LogMarkers.SCAN, "Failed to clean up the mod scan cache {}", cacheDir, e);
+        }
+    }
+
+    private static String entryName(List<Path> paths) {
+        var digest = sha256();
+        for (var path : paths) {
+            digest.update(path.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static byte[] digest(List<Path> paths) throws IOException {
+        var digest = sha256();
+        var buffer = new byte[65536];
+        for (var path : paths) {
+            try (InputStream in = Files.newInputStream(path)) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, n);
+                }
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Writes scan data. Every string is written in full on its first use, and as an index afterwards.
+     */
+    private static final class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        private Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void write(ModFileScanData data) throws IOException {
+            // Collect the records, so that compact scan data does not have to be converted back
+            var classes = new ArrayList<ModFileScanData.ClassData>();
+            data.forEachClass(classes::add);
+            var annotations = new ArrayList<ModFileScanData.AnnotationData>();
+            data.forEachAnnotation(annotations::add);
+
+            out.writeInt(classes.size());
+            for (var classData : classes) {
+                writeType(classData.clazz());
+                writeType(classData.parent());
+                out.writeInt(classData.interfaces().size());
+                for (var itf : classData.interfaces()) {
+                    writeType(itf);
+                }
+            }
+            out.writeInt(annotations.size());
+            for (var annotation : annotations) {
+                writeType(annotation.annotationType());
+                out.writeByte(annotation.targetType().ordinal());
+                writeType(annotation.clazz());
+                writeString(annotation.memberName());
+                writeMap(annotation.annotationData());
+            }
+        }
+
+        private void writeString(@Nullable String s) throws IOException {
+            if (s == null) {
+                out.writeInt(-1);
+                return;
+            }
+            var index = strings.get(s);
+            if (index != null) {
+                out.writeInt(index);
+            } else {
+                out.writeInt(strings.size());
+                strings.put(s, strings.size());
+                out.writeUTF(s);
+            }
+        }
+
+        private void writeType(@Nullable Type type) throws IOException {
+            writeString(type != null ? type.getDescriptor() : null);
+        }
+
+        private void writeMap(Map<String, Object> map) throws IOException {
+            out.writeInt(map.size());
+            for (var e : map.entrySet()) {
+                writeString(e.getKey());
+                writeValue(e.getValue());
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void writeValue(@Nullable Object value) throws IOException {
+            switch (value) {
+                case null -> out.writeByte(NULL);
+                case String s -> {
+                    out.writeByte(STRING);
+                    writeString(s);
+                }
+                case Boolean b -> {
+                    out.writeByte(BOOLEAN);
+                    out.writeBoolean(b);
+                }
+                case Byte b -> {
+                    out.writeByte(BYTE);
+                    out.writeByte(b);
+                }
+                case Character c -> {
+                    out.writeByte(CHAR);
+                    out.writeChar(c);
+                }
+                case Short s -> {
+                    out.writeByte(SHORT);
+                    out.writeShort(s);
+                }
+                case Integer i -> {
+                    out.writeByte(INT);
+                    out.writeInt(i);
+                }
+                case Long l -> {
+                    out.writeByte(LONG);
+                    out.writeLong(l);
+                }
+                case Float f -> {
+                    out.writeByte(FLOAT);
+                    out.writeFloat(f);
+                }
+                case Double d -> {
+                    out.writeByte(DOUBLE);
+                    out.writeDouble(d);
+                }
+                case Type t -> {
+                    out.writeByte(TYPE);
+                    writeType(t);
+                }
+                case ModAnnotation.EnumHolder holder -> {
+                    out.writeByte(ENUM);
+                    writeString(holder.desc());
+                    writeString(holder.value());
+                }
+                case List<?> list -> {
+                    out.writeByte(LIST);
+                    out.writeInt(list.size());
+                    for (var element : list) {
+                        writeValue(element);
+                    }
+                }
+                case Map<?, ?> map -> {
+                    out.writeByte(MAP);
+                    writeMap((Map<String, Object>) map);
+                }
+                case boolean[] array -> {
+                    out.writeByte(BOOLEAN_ARRAY);
+                    out.writeInt(array.length);
+                    for (var b : array) out.writeBoolean(b);
+                }
+                case byte[] array -> {
+                    out.writeByte(BYTE_ARRAY);
+                    out.writeInt(array.length);
+                    out.write(array);
+                }
+                case char[] array -> {
+                    out.writeByte(CHAR_ARRAY);
+                    out.writeInt(array.length);
+                    for (var c : array) out.writeChar(c);
+                }
+                case short[] array -> {
+                    out.writeByte(SHORT_ARRAY);
+                    out.writeInt(array.length);
+                    for (var s : array) out.writeShort(s);
+                }
+                case int[] array -> {
+                    out.writeByte(INT_ARRAY);
+                    out.writeInt(array.length);
+                    for (var i : array) out.writeInt(i);
+                }
+                case long[] array -> {
+                    out.writeByte(LONG_ARRAY);
+                    out.writeInt(array.length);
+                    for (var l : array) out.writeLong(l);
+                }
+                case float[] array -> {
+                    out.writeByte(FLOAT_ARRAY);
+                    out.writeInt(array.length);
+                    for (var f : array) out.writeFloat(f);
+                }
+                case double[] array -> {
+                    out.writeByte(DOUBLE_ARRAY);
+                    out.writeInt(array.length);
+                    for (var d : array) out.writeDouble(d);
+                }
+                default -> throw new IOException("Unsupported annotation value " + value.getClass());
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+        // Types are shared between classes and annotations, so they are created once per descriptor
+        private final Map<String, Type> types = new HashMap<>();
+
+        private Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        ModFileScanData read() throws IOException {
+            var data = new ModFileScanData();
+            var classCount = in.readInt();
+            for (int i = 0; i < classCount; i++) {
+                var clazz = readType();
+                var parent = readType();
+                var interfaceCount = in.readInt();
+                var interfaces = HashSet.<Type>newHashSet(interfaceCount);
+                for (int j = 0; j < interfaceCount; j++) {
+                    interfaces.add(readType());
+                }
+                data.getClasses().add(new ModFileScanData.ClassData(clazz, parent, interfaces));
+            }
+            var annotationCount = in.readInt();
+            for (int i = 0; i < annotationCount; i++) {
+                var annotationType = readType();
+                var targetType = ELEMENT_TYPES[in.readUnsignedByte()];
+                var clazz = readType();
+                var memberName = readString();
+                data.getAnnotations().add(new ModFileScanData.AnnotationData(annotationType, targetType, clazz, memberName, readMap()));
+            }
+            data.compact();
+            return data;
+        }
+
+        @Nullable
+        private String readString() throws IOException {
+            var index = in.readInt();
+            if (index < 0) {
+                return null;
+            } else if (index == strings.size()) {
+                var s = in.readUTF();
+                strings.add(s);
+                return s;
+            }
+            return strings.get(index);
+        }
+
+        @Nullable
+        private Type readType() throws IOException {
+            var descriptor = readString();
+            return descriptor != null ? types.computeIfAbsent(descriptor, Type::getType) : null;
+        }
+
+        private Map<String, Object> readMap() throws IOException {
+            var size = in.readInt();
+            Map<String, Object> map = HashMap.newHashMap(size);
+            for (int i = 0; i < size; i++) {
+                var key = readString();
+                map.put(key, readValue());
+            }
+            return map;
+        }
+
+        @Nullable
+        private Object readValue() throws IOException {
+            var tag = in.readByte();
+            return switch (tag) {
+                case NULL -> null;
+                case STRING -> readString();
+                case BOOLEAN -> in.readBoolean();
+                case BYTE -> in.readByte();
+                case CHAR -> in.readChar();
+                case SHORT -> in.readShort();
+                case INT -> in.readInt();
+                case LONG -> in.readLong();
+                case FLOAT -> in.readFloat();
+                case DOUBLE -> in.readDouble();
+                case TYPE -> readType();
+                case ENUM -> new ModAnnotation.EnumHolder(readString(), readString());
+                case LIST -> {
+                    var size = in.readInt();
+                    var list = new ArrayList<Object>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    yield list;
+                }
+                case MAP -> readMap();
+                case BOOLEAN_ARRAY -> {
+                    var array = new boolean[in.readInt()];
+                    for (int i = 0; i < array.length; i++) array[i] = in.readBoolean();
+                    yield array;
+                }
+                case BYTE_ARRAY -> in.readNBytes(in.readInt());
+                case CHAR_ARRAY -> {
+                    var array = new char[in.readInt()];
+                    for (int i = 0; i < array.length; i++) array[i] = in.readChar();
+                    yield array;
+                }
+                case SHORT_ARRAY -> {
+                    var array = new short[in.readInt()];
+                    for (int i = 0; i < array.length; i++) array[i] = in.readShort();
+                    yield array;
+                }
+                case INT_ARRAY -> {
+                    var array = new int[in.readInt()];
+                    for (int i = 0; i < array.length; i++) array[i] = in.readInt();
+                    yield array;
+                }
+                case LONG_ARRAY -> {
+                    var array = new long[in.readInt()];
+                    for (int i = 0; i < array.length; i++) array[i] = in.readLong();
+                    yield array;
+                }
+                case FLOAT_ARRAY -> {
+                    var array = new float[in.readInt()];
+                    for (int i = 0; i < array.length; i++) array[i] = in.readFloat();
+                    yield array;
+                }
+                case DOUBLE_ARRAY -> {
+                    var array = new double[in.readInt()];
+                    for (int i = 0; i < array.length; i++) array[i] = in.readDouble();
+                    yield array;
+                }
+                default -> throw new IOException("Unknown annotation value tag " + tag);
+            };
+        }
+    }
+}
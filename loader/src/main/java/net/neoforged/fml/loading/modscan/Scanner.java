@@ -10,33 +10,119 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import net.neoforged.fml.loading.LogMarkers;
 import net.neoforged.fml.loading.moddiscovery.ModFile;
 import net.neoforged.neoforgespi.language.ModFileScanData;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassReader;
 import org.slf4j.Logger;
 
 public class Scanner {
     private static final Logger LOGGER = LogUtils.getLogger();
+    // Number of class files that are scanned as one unit of work
+    private static final int CHUNK_SIZE = 64;
     private final ModFile fileToScan;
+    @Nullable
+    private final Executor executor;
 
     public Scanner(final ModFile fileToScan) {
+        this(fileToScan, null);
+    }
+
+    /**
+     * Creates a scanner that splits the classes of large mod files into chunks, which are scanned in parallel on the
+     * given executor. The thread calling {@link #scan()} scans chunks too, so the scan completes even if the executor
+     * has no free threads.
+     */
+    public Scanner(final ModFile fileToScan, @Nullable final Executor executor) {
         this.fileToScan = fileToScan;
+        this.executor = executor;
     }
 
     public ModFileScanData scan() {
         ModFileScanData result = new ModFileScanData();
         result.addModFileInfo(fileToScan.getModFileInfo());
-        fileToScan.scanFile(p -> fileVisitor(p, result));
+        final List<Path> classFiles = new ArrayList<>();
+        fileToScan.scanFile(classFiles::add);
+        if (executor == null || classFiles.size() <= CHUNK_SIZE) {
+            classFiles.forEach(p -> fileVisitor(p, result.getClasses(), result.getAnnotations()));
+        } else {
+            scanInParallel(classFiles, result);
+        }
+        result.compact();
         return result;
     }
 
-    private void fileVisitor(final Path path, final ModFileScanData result) {
+    private void scanInParallel(final List<Path> classFiles, final ModFileScanData result) {
+        final int chunkCount = (classFiles.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        // Every chunk has its own buffers, which are merged in order so the result is the same as for a sequential scan
+        final List<Set<ModFileScanData.ClassData>> classes = new ArrayList<>(chunkCount);
+        final List<Set<ModFileScanData.AnnotationData>> annotations = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            classes.add(new LinkedHashSet<>());
+            annotations.add(new LinkedHashSet<>());
+        }
+        final AtomicInteger nextChunk = new AtomicInteger();
+        final CountDownLatch remainingChunks = new CountDownLatch(chunkCount);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Runnable worker = () -> {
+            int chunk;
+            while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+                try {
+                    for (Path path : classFiles.subList(chunk * CHUNK_SIZE, Math.min(classFiles.size(), (chunk + 1) * CHUNK_SIZE))) {
+                        fileVisitor(path, classes.get(chunk), annotations.get(chunk));
+                    }
+                } catch (Throwable t) {
+                    if (!failure.compareAndSet(null, t)) {
+                        failure.get().addSuppressed(t);
+                    }
+                } finally {
+                    remainingChunks.countDown();
+                }
+            }
+        };
+
+        // Helpers that only start once all chunks were taken return immediately
+        final int helpers = Math.min(chunkCount, Runtime.getRuntime().availableProcessors()) - 1;
+        try {
+            for (int i = 0; i < helpers; i++) {
+                executor.execute(worker);
+            }
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug(LogMarkers.SCAN, "Scanning {} without helpers, since the executor is shut down", fileToScan);
+        }
+        worker.run();
+        try {
+            remainingChunks.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while scanning " + fileToScan, e);
+        }
+
+        if (failure.get() != null) {
+            throw new RuntimeException("Failed to scan " + fileToScan, failure.get());
+        }
+        for (int i = 0; i < chunkCount; i++) {
+            result.getClasses().addAll(classes.get(i));
+            result.getAnnotations().addAll(annotations.get(i));
+        }
+    }
+
+    private void fileVisitor(final Path path, final Set<ModFileScanData.ClassData> classes, final Set<ModFileScanData.AnnotationData> annotations) {
         try (InputStream in = Files.newInputStream(path)) {
             ModClassVisitor mcv = new ModClassVisitor();
             ClassReader cr = new ClassReader(in);
             cr.accept(mcv, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG);
-            mcv.buildData(result.getClasses(), result.getAnnotations());
+            mcv.buildData(classes, annotations);
         } catch (IOException | IllegalArgumentException e) {
             LOGGER.error(LogMarkers.SCAN, "Exception scanning {} path {}", fileToScan, path, e);
         }
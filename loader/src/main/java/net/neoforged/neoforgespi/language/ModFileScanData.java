@@ -5,33 +5,276 @@
 
 package net.neoforged.neoforgespi.language;
 
+import cpw.mods.modlauncher.util.StringInterner;
 import java.lang.annotation.Annotation;
 import java.lang.annotation.ElementType;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.Type;
 
+/**
+ * The classes and annotations found in a mod file.
+ * <p>
+ * Once a mod file has been scanned, its scan data is {@linkplain #compact() compacted}: type descriptors, member
+ * names and annotation keys are interned into ids of a string table shared by all mod files, and classes and
+ * annotations are stored in int arrays. Records are only created when they are queried. The sets returned by
+ * {@link #getClasses()} and {@link #getAnnotations()} read the compact form, and only convert the scan data back
+ * into sets of records when they are modified.
+ */
 public class ModFileScanData {
-    private final Set<AnnotationData> annotations = new LinkedHashSet<>();
-    private final Set<ClassData> classes = new LinkedHashSet<>();
+    private static final StringTable STRINGS = new StringTable();
+    private static final ElementType[] ELEMENT_TYPES = ElementType.values();
+    private static final int NO_ID = -1;
+    // Number of ints per annotation: annotation type, target type, class, member name, values index
+    private static final int ANNOTATION_SIZE = 5;
+
     private final List<IModFileInfo> modFiles = new ArrayList<>();
+    // Used while the mod file is scanned, and once the compact form was converted back; null while compact
+    @Nullable
+    private Set<AnnotationData> annotations = new LinkedHashSet<>();
+    @Nullable
+    private Set<ClassData> classes = new LinkedHashSet<>();
+    private final Set<ClassData> classesView = new View<>(() -> classes, this::forEachClass, () -> this.compactClassCount);
+    private final Set<AnnotationData> annotationsView = new View<>(() -> annotations, this::forEachAnnotation, () -> this.compactAnnotations.length / ANNOTATION_SIZE);
+    // Annotations by annotation type and target, rebuilt if annotations were added since it was built
+    @Nullable
+    private Map<AnnotationKey, List<AnnotationData>> annotationIndex;
+    private int indexedAnnotationCount;
+
+    // The compact form. Every class is stored as its type, parent type, interface count and interface types
+    @Nullable
+    private int[] compactClasses;
+    private int compactClassCount;
+    @Nullable
+    private int[] compactAnnotations;
+    // Annotation values, as flattened arrays of keys and values
+    @Nullable
+    private Object[][] annotationValues;
+    // Annotation numbers by annotation type and target
+    @Nullable
+    private Map<AnnotationKey, int[]> compactIndex;
+
+    private record AnnotationKey(Type annotationType, ElementType targetType) {}
 
+    // Markers for list and map annotation values in the compact form
+    private record ListValue(Object[] elements) {}
+
+    private record MapValue(Object[] entries) {}
+
+    /**
+     * {@return the classes of the mod file}
+     * If the scan data is compact, the set reads the compact form until it is modified.
+     */
     public Set<ClassData> getClasses() {
-        return classes;
+        return classesView;
     }
 
+    /**
+     * {@return the annotations of the mod file}
+     * If the scan data is compact, the set reads the compact form until it is modified.
+     */
     public Set<AnnotationData> getAnnotations() {
-        return annotations;
+        return annotationsView;
     }
 
     public Stream<AnnotationData> getAnnotatedBy(Class<? extends Annotation> type, ElementType elementType) {
-        final var anType = Type.getType(type);
-        return getAnnotations().stream()
-                .filter(ad -> ad.targetType == elementType && ad.annotationType.equals(anType));
+        return getAnnotatedBy(Type.getType(type), elementType);
+    }
+
+    /**
+     * {@return the annotations of the given type on elements of the given type}
+     * The annotations are looked up in an index, which is built on the first call.
+     */
+    public synchronized Stream<AnnotationData> getAnnotatedBy(Type annotationType, ElementType elementType) {
+        final AnnotationKey key = new AnnotationKey(annotationType, elementType);
+        if (compactIndex != null) {
+            final int[] matches = compactIndex.get(key);
+            if (matches == null) {
+                return Stream.empty();
+            }
+            final List<AnnotationData> result = new ArrayList<>(matches.length);
+            for (int annotation : matches) {
+                result.add(annotationAt(annotation));
+            }
+            return result.stream();
+        }
+        return getAnnotationIndex().getOrDefault(key, List.of()).stream();
+    }
+
+    private Map<AnnotationKey, List<AnnotationData>> getAnnotationIndex() {
+        if (annotationIndex == null || indexedAnnotationCount != annotations.size()) {
+            final Map<AnnotationKey, List<AnnotationData>> index = new HashMap<>();
+            for (AnnotationData annotation : annotations) {
+                index.computeIfAbsent(new AnnotationKey(annotation.annotationType(), annotation.targetType()), k -> new ArrayList<>()).add(annotation);
+            }
+            annotationIndex = index;
+            indexedAnnotationCount = annotations.size();
+        }
+        return annotationIndex;
+    }
+
+    /**
+     * Passes every class to the given consumer, without converting compact scan data back.
+     */
+    public synchronized void forEachClass(Consumer<ClassData> consumer) {
+        if (compactClasses == null) {
+            classes.forEach(consumer);
+            return;
+        }
+        for (int pos = 0; pos < compactClasses.length; pos += 3 + compactClasses[pos + 2]) {
+            consumer.accept(classAt(pos));
+        }
+    }
+
+    /**
+     * Passes every annotation to the given consumer, without converting compact scan data back.
+     */
+    public synchronized void forEachAnnotation(Consumer<AnnotationData> consumer) {
+        if (compactAnnotations == null) {
+            annotations.forEach(consumer);
+            return;
+        }
+        for (int i = 0; i < compactAnnotations.length / ANNOTATION_SIZE; i++) {
+            consumer.accept(annotationAt(i));
+        }
+    }
+
+    /**
+     * Converts the scan data into its compact form. Called once the mod file has been scanned.
+     */
+    @ApiStatus.Internal
+    public synchronized void compact() {
+        if (classes == null) {
+            return;
+        }
+        int classesSize = 0;
+        for (ClassData classData : classes) {
+            classesSize += 3 + classData.interfaces().size();
+        }
+        final int[] compactClasses = new int[classesSize];
+        int pos = 0;
+        for (ClassData classData : classes) {
+            compactClasses[pos++] = STRINGS.id(classData.clazz());
+            compactClasses[pos++] = STRINGS.id(classData.parent());
+            compactClasses[pos++] = classData.interfaces().size();
+            for (Type itf : classData.interfaces()) {
+                compactClasses[pos++] = STRINGS.id(itf);
+            }
+        }
+
+        final int[] compactAnnotations = new int[annotations.size() * ANNOTATION_SIZE];
+        final List<Object[]> values = new ArrayList<>();
+        final Map<AnnotationKey, List<Integer>> index = new HashMap<>();
+        int annotation = 0;
+        for (AnnotationData data : annotations) {
+            pos = annotation * ANNOTATION_SIZE;
+            compactAnnotations[pos] = STRINGS.id(data.annotationType());
+            compactAnnotations[pos + 1] = data.targetType().ordinal();
+            compactAnnotations[pos + 2] = STRINGS.id(data.clazz());
+            compactAnnotations[pos + 3] = STRINGS.id(data.memberName());
+            if (data.annotationData().isEmpty()) {
+                compactAnnotations[pos + 4] = NO_ID;
+            } else {
+                compactAnnotations[pos + 4] = values.size();
+                values.add(compactEntries(data.annotationData()));
+            }
+            index.computeIfAbsent(new AnnotationKey(data.annotationType(), data.targetType()), k -> new ArrayList<>()).add(annotation);
+            annotation++;
+        }
+
+        this.compactIndex = HashMap.newHashMap(index.size());
+        index.forEach((key, annotations) -> compactIndex.put(key, annotations.stream().mapToInt(Integer::intValue).toArray()));
+        this.compactClasses = compactClasses;
+        this.compactClassCount = classes.size();
+        this.compactAnnotations = compactAnnotations;
+        this.annotationValues = values.toArray(Object[][]::new);
+        this.classes = null;
+        this.annotations = null;
+        this.annotationIndex = null;
+    }
+
+    private void expand() {
+        if (classes != null) {
+            return;
+        }
+        final Set<ClassData> classes = LinkedHashSet.newLinkedHashSet(compactClassCount);
+        final Set<AnnotationData> annotations = LinkedHashSet.newLinkedHashSet(compactAnnotations.length / ANNOTATION_SIZE);
+        forEachClass(classes::add);
+        forEachAnnotation(annotations::add);
+        this.classes = classes;
+        this.annotations = annotations;
+        this.compactClasses = null;
+        this.compactAnnotations = null;
+        this.annotationValues = null;
+        this.compactIndex = null;
+    }
+
+    private ClassData classAt(int pos) {
+        final Set<Type> interfaces = HashSet.newHashSet(compactClasses[pos + 2]);
+        for (int i = 0; i < compactClasses[pos + 2]; i++) {
+            interfaces.add(STRINGS.type(compactClasses[pos + 3 + i]));
+        }
+        return new ClassData(STRINGS.type(compactClasses[pos]), STRINGS.type(compactClasses[pos + 1]), interfaces);
+    }
+
+    private AnnotationData annotationAt(int annotation) {
+        final int pos = annotation * ANNOTATION_SIZE;
+        final int values = compactAnnotations[pos + 4];
+        return new AnnotationData(
+                STRINGS.type(compactAnnotations[pos]),
+                ELEMENT_TYPES[compactAnnotations[pos + 1]],
+                STRINGS.type(compactAnnotations[pos + 2]),
+                STRINGS.string(compactAnnotations[pos + 3]),
+                values == NO_ID ? new HashMap<>() : expandEntries(annotationValues[values]));
+    }
+
+    private static Object[] compactEntries(Map<?, ?> map) {
+        final Object[] entries = new Object[map.size() * 2];
+        int i = 0;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            entries[i++] = compactValue(entry.getKey());
+            entries[i++] = compactValue(entry.getValue());
+        }
+        return entries;
+    }
+
+    private static Object compactValue(Object value) {
+        return switch (value) {
+            case String s -> STRINGS.intern(s);
+            case List<?> list -> new ListValue(list.stream().map(ModFileScanData::compactValue).toArray());
+            case Map<?, ?> map -> new MapValue(compactEntries(map));
+            case null, default -> value;
+        };
+    }
+
+    private static Map<String, Object> expandEntries(Object[] entries) {
+        final Map<String, Object> map = HashMap.newHashMap(entries.length / 2);
+        for (int i = 0; i < entries.length; i += 2) {
+            map.put((String) entries[i], expandValue(entries[i + 1]));
+        }
+        return map;
+    }
+
+    private static Object expandValue(Object value) {
+        return switch (value) {
+            case ListValue list -> new ArrayList<>(Arrays.stream(list.elements()).map(ModFileScanData::expandValue).toList());
+            case MapValue map -> expandEntries(map.entries());
+            case null, default -> value;
+        };
     }
 
     public void addModFileInfo(IModFileInfo info) {
@@ -42,7 +285,123 @@ public class ModFileScanData {
         return this.modFiles;
     }
 
+    /**
+     * A set of classes or annotations. While the scan data is compact, it creates records from the compact form on
+     * every read, and converts the scan data back into sets of records before it is modified.
+     */
+    private final class View<T> extends AbstractSet<T> {
+        private final Supplier<Set<T>> records;
+        private final Consumer<Consumer<T>> forEachCompact;
+        private final IntSupplier compactSize;
+
+        private View(Supplier<Set<T>> records, Consumer<Consumer<T>> forEachCompact, IntSupplier compactSize) {
+            this.records = records;
+            this.forEachCompact = forEachCompact;
+            this.compactSize = compactSize;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            synchronized (ModFileScanData.this) {
+                if (classes != null) {
+                    return records.get().iterator();
+                }
+                final List<T> snapshot = new ArrayList<>(compactSize.getAsInt());
+                forEachCompact.accept(snapshot::add);
+                final Iterator<T> iterator = snapshot.iterator();
+                return new Iterator<>() {
+                    @Nullable
+                    private T last;
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public T next() {
+                        return last = iterator.next();
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == null) {
+                            throw new IllegalStateException();
+                        }
+                        View.this.remove(last);
+                        last = null;
+                    }
+                };
+            }
+        }
+
+        @Override
+        public void forEach(Consumer<? super T> action) {
+            forEachCompact.accept(action::accept);
+        }
+
+        @Override
+        public int size() {
+            synchronized (ModFileScanData.this) {
+                return classes != null ? records.get().size() : compactSize.getAsInt();
+            }
+        }
+
+        @Override
+        public boolean add(T t) {
+            synchronized (ModFileScanData.this) {
+                expand();
+                return records.get().add(t);
+            }
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            synchronized (ModFileScanData.this) {
+                expand();
+                return records.get().remove(o);
+            }
+        }
+
+        @Override
+        public void clear() {
+            synchronized (ModFileScanData.this) {
+                expand();
+                records.get().clear();
+            }
+        }
+    }
+
     public record ClassData(Type clazz, Type parent, Set<Type> interfaces) {}
 
     public record AnnotationData(Type annotationType, ElementType targetType, Type clazz, String memberName, Map<String, Object> annotationData) {}
+
+    /**
+     * Interns strings into ids. Shared by the scan data of all mod files, since most type names occur in many of them.
+     */
+    private static final class StringTable {
+        private final StringInterner interner = new StringInterner(1024);
+
+        int id(@Nullable Type type) {
+            return type != null ? id(type.getDescriptor()) : NO_ID;
+        }
+
+        int id(@Nullable String s) {
+            return s != null ? interner.id(s) : NO_ID;
+        }
+
+        String intern(String s) {
+            return interner.string(interner.id(s));
+        }
+
+        @Nullable
+        String string(int id) {
+            return id == NO_ID ? null : interner.string(id);
+        }
+
+        @Nullable
+        Type type(int id) {
+            return id == NO_ID ? null : Type.getType(interner.string(id));
+        }
+    }
 }
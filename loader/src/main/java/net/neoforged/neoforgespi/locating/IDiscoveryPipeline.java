@@ -43,6 +43,32 @@ public interface IDiscoveryPipeline extends IIssueReporting {
      */
     Optional<IModFile> addPath(List<Path> groupedPaths, ModFileDiscoveryAttributes attributes, IncompatibleFileReporting incompatibleFileReporting);
 
+    /**
+     * Submits a single file or folder to the discovery pipeline, like {@link #addPath(Path, ModFileDiscoveryAttributes, IncompatibleFileReporting)},
+     * but allows it to be read in the background.
+     *
+     * @see #submitPath(List, ModFileDiscoveryAttributes, IncompatibleFileReporting)
+     */
+    default void submitPath(Path path, ModFileDiscoveryAttributes attributes, IncompatibleFileReporting incompatibleFileReporting) {
+        submitPath(List.of(path), attributes, incompatibleFileReporting);
+    }
+
+    /**
+     * Submits a group of files or folders to the discovery pipeline, like {@link #addPath(List, ModFileDiscoveryAttributes, IncompatibleFileReporting)},
+     * but allows them to be read in the background.
+     * <p>
+     * Submitted paths are read in parallel, but their results are added in the order in which they were submitted,
+     * before anything else is added to the pipeline and at the latest when the locator returns.
+     * Locators that do not need the resulting mod file should prefer this method over {@code addPath}.
+     *
+     * @param groupedPaths              A set of files and folders that are combined into a single virtual Jar file for mod loading.
+     * @param attributes                Additional attributes that describe the circumstance of how this path was discovered.
+     * @param incompatibleFileReporting The desired behavior if the given file or folder is deemed to be incompatible with NeoForge.
+     */
+    default void submitPath(List<Path> groupedPaths, ModFileDiscoveryAttributes attributes, IncompatibleFileReporting incompatibleFileReporting) {
+        addPath(groupedPaths, attributes, incompatibleFileReporting);
+    }
+
     /**
      * Adds a pre-created {@link JarContents jar} to the discovery pipeline
      * to be further processed by registered {@linkplain IModFileReader readers} into a {@linkplain IModFile mod file}.
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) NeoForged and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package cpw.mods.modlauncher.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cpw.mods.modlauncher.ClassTransformer;
+import cpw.mods.modlauncher.LaunchPluginHandler;
+import cpw.mods.modlauncher.TransformStore;
+import cpw.mods.modlauncher.TransformingClassLoader;
+import cpw.mods.modlauncher.api.ITransformerActivity;
+import cpw.mods.modlauncher.serviceapi.ILaunchPluginService;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.powermock.reflect.Whitebox;
+
+class ClassHierarchyTests {
+    private static final Class<?> HIERARCHY_CLASS = loadHierarchyClass();
+
+    @TempDir
+    Path tempDir;
+
+    private static Class<?> loadHierarchyClass() {
+        try {
+            return Class.forName("cpw.mods.modlauncher.ClassHierarchy");
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ClassTransformer createClassTransformer(final LaunchPluginHandler pluginHandler) throws Exception {
+        // Without a class loader, any class that is not already known to the hierarchy fails the test
+        return Whitebox.invokeConstructor(ClassTransformer.class, new Class[] { TransformStore.class, LaunchPluginHandler.class, TransformingClassLoader.class }, new Object[] { new TransformStore(), pluginHandler, null });
+    }
+
+    private static Object createHierarchy(final Path file) throws Exception {
+        return Whitebox.invokeConstructor(HIERARCHY_CLASS, new Class[] { ClassTransformer.class, Path.class }, new Object[] { createClassTransformer(new LaunchPluginHandler(Stream.empty())), file });
+    }
+
+    private static void addClass(final Object hierarchy, final String name, final String superName, final int access, final String... interfaces) throws Exception {
+        final ClassNode node = new ClassNode();
+        node.visit(Opcodes.V17, access, name, null, superName, interfaces);
+        Whitebox.invokeMethod(hierarchy, "addClass", new Class[] { ClassNode.class }, node);
+    }
+
+    private static String getCommonSuperClass(final Object hierarchy, final String type1, final String type2) throws Exception {
+        return Whitebox.invokeMethod(hierarchy, "getCommonSuperClass", new Class[] { String.class, String.class }, type1, type2);
+    }
+
+    @Test
+    void testCommonSuperClassAndPersistence() throws Exception {
+        final Path file = tempDir.resolve("hierarchy.bin");
+        final Object hierarchy = createHierarchy(file);
+        addClass(hierarchy, "java/lang/Object", null, Opcodes.ACC_PUBLIC);
+        addClass(hierarchy, "test/Itf", "java/lang/Object", Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT);
+        addClass(hierarchy, "test/A", "java/lang/Object", Opcodes.ACC_PUBLIC);
+        addClass(hierarchy, "test/B", "test/A", Opcodes.ACC_PUBLIC, "test/Itf");
+        addClass(hierarchy, "test/C", "test/A", Opcodes.ACC_PUBLIC);
+        addClass(hierarchy, "test/D", "java/lang/Object", Opcodes.ACC_PUBLIC);
+
+        assertEquals("test/A", getCommonSuperClass(hierarchy, "test/B", "test/A"));
+        assertEquals("test/A", getCommonSuperClass(hierarchy, "test/B", "test/C"));
+        assertEquals("test/Itf", getCommonSuperClass(hierarchy, "test/Itf", "test/B"));
+        assertEquals("java/lang/Object", getCommonSuperClass(hierarchy, "test/Itf", "test/C"));
+        assertEquals("java/lang/Object", getCommonSuperClass(hierarchy, "test/B", "test/D"));
+        assertTrue(Files.size(file) > 0);
+
+        // The next launch resolves the same hierarchy from the file alone
+        final Object reopened = createHierarchy(file);
+        assertEquals("test/A", getCommonSuperClass(reopened, "test/B", "test/C"));
+        assertEquals("test/Itf", getCommonSuperClass(reopened, "test/Itf", "test/B"));
+        assertEquals("java/lang/Object", getCommonSuperClass(reopened, "test/B", "test/D"));
+    }
+
+    @Test
+    void testTruncatedFileKeepsCompleteRecords() throws Exception {
+        final Path file = tempDir.resolve("hierarchy.bin");
+        final Object hierarchy = createHierarchy(file);
+        addClass(hierarchy, "java/lang/Object", null, Opcodes.ACC_PUBLIC);
+        addClass(hierarchy, "test/A", "java/lang/Object", Opcodes.ACC_PUBLIC);
+        addClass(hierarchy, "test/B", "test/A", Opcodes.ACC_PUBLIC);
+        final long complete = Files.size(file);
+        addClass(hierarchy, "test/C", "test/B", Opcodes.ACC_PUBLIC);
+
+        // Cut the last record short, as if the game exited while it was written
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(complete + 3);
+        }
+        assertEquals("test/A", getCommonSuperClass(createHierarchy(file), "test/B", "test/A"));
+    }
+
+    @Test
+    void testTransformationTargetQueryHasNoSideEffects() throws Exception {
+        final AtomicInteger auditConsumers = new AtomicInteger();
+        final ILaunchPluginService plugin = new ILaunchPluginService() {
+            @Override
+            public String name() {
+                return "test";
+            }
+
+            @Override
+            public EnumSet<Phase> handlesClass(final Type classType, final boolean isEmpty) {
+                return classType.getInternalName().equals("test/Target") ? EnumSet.of(Phase.BEFORE) : EnumSet.noneOf(Phase.class);
+            }
+
+            @Override
+            public void customAuditConsumer(final String className, final Consumer<String[]> auditDataAcceptor) {
+                auditConsumers.incrementAndGet();
+            }
+        };
+        final ClassTransformer classTransformer = createClassTransformer(new LaunchPluginHandler(Stream.of(plugin)));
+
+        assertTrue(isTransformationTarget(classTransformer, "test/Target"));
+        assertFalse(isTransformationTarget(classTransformer, "test/Other"));
+        // Only an actual transformation hands the plugin an audit consumer
+        assertEquals(0, auditConsumers.get());
+    }
+
+    private static boolean isTransformationTarget(final ClassTransformer classTransformer, final String internalName) throws Exception {
+        return Whitebox.invokeMethod(classTransformer, "isTransformationTarget", new Class[] { Type.class, String.class }, Type.getObjectType(internalName), ITransformerActivity.COMPUTING_FRAMES_REASON);
+    }
+}
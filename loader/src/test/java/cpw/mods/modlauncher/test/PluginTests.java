@@ -15,13 +15,27 @@
 package cpw.mods.modlauncher.test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import cpw.mods.modlauncher.ClassTransformer;
+import cpw.mods.modlauncher.LaunchPluginHandler;
+import cpw.mods.modlauncher.TransformStore;
+import cpw.mods.modlauncher.TransformingClassLoader;
 import cpw.mods.modlauncher.serviceapi.ILaunchPluginService;
 import java.nio.file.Path;
 import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
+import org.powermock.reflect.Whitebox;
 
 class PluginTests {
     @Test
@@ -54,4 +68,82 @@ class PluginTests {
         String s = plugin.getExtension();
         assertEquals("CHEESE", s);
     }
+
+    @Test
+    void classVisitorPluginTests() throws Exception {
+        final AtomicInteger visits = new AtomicInteger();
+        final ILaunchPluginService inspecting = new ClassVisitorPlugin("inspecting", ILaunchPluginService.Phase.BEFORE) {
+            @Override
+            public ClassVisitor visitClass(final Phase phase, final ClassVisitor classVisitor, final Type classType, final String reason, final IntConsumer computeFlags) {
+                return new ClassVisitor(Opcodes.ASM9, classVisitor) {
+                    @Override
+                    public void visit(final int version, final int access, final String name, final String signature, final String superName, final String[] interfaces) {
+                        visits.incrementAndGet();
+                        super.visit(version, access, name, signature, superName, interfaces);
+                    }
+                };
+            }
+        };
+        final ILaunchPluginService adding = new ClassVisitorPlugin("adding", ILaunchPluginService.Phase.AFTER) {
+            @Override
+            public ClassVisitor visitClass(final Phase phase, final ClassVisitor classVisitor, final Type classType, final String reason, final IntConsumer computeFlags) {
+                return new ClassVisitor(Opcodes.ASM9, classVisitor) {
+                    @Override
+                    public void visitEnd() {
+                        computeFlags.accept(ComputeFlags.SIMPLE_REWRITE);
+                        super.visitField(Opcodes.ACC_PUBLIC, "addedfield", "I", null, null).visitEnd();
+                        super.visitEnd();
+                    }
+                };
+            }
+        };
+
+        final ClassNode dummyClass = new ClassNode();
+        dummyClass.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "test/DummyClass", null, "java/lang/Object", null);
+        final ClassWriter cw = new ClassWriter(0);
+        dummyClass.accept(cw);
+        final byte[] input = cw.toByteArray();
+
+        // Inspecting without changes returns the input as is
+        final byte[] inspected = transform(new LaunchPluginHandler(Stream.of(inspecting)), input);
+        assertSame(input, inspected);
+        assertEquals(1, visits.get());
+
+        final byte[] result = transform(new LaunchPluginHandler(Stream.of(inspecting, adding)), input);
+        assertEquals(2, visits.get());
+        final ClassNode resultNode = new ClassNode();
+        new ClassReader(result).accept(resultNode, 0);
+        assertTrue(resultNode.fields.stream().anyMatch(f -> f.name.equals("addedfield")));
+    }
+
+    private static byte[] transform(final LaunchPluginHandler pluginHandler, final byte[] input) throws Exception {
+        final TransformStore transformStore = new TransformStore();
+        final ClassTransformer classTransformer = Whitebox.invokeConstructor(ClassTransformer.class, new Class[] { TransformStore.class, LaunchPluginHandler.class, TransformingClassLoader.class }, new Object[] { transformStore, pluginHandler, null });
+        return Whitebox.invokeMethod(classTransformer, "transform", new Class[] { byte[].class, String.class, String.class }, input, "test.DummyClass", "testing");
+    }
+
+    private abstract static class ClassVisitorPlugin implements ILaunchPluginService {
+        private final String name;
+        private final Phase phase;
+
+        ClassVisitorPlugin(final String name, final Phase phase) {
+            this.name = name;
+            this.phase = phase;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public EnumSet<Phase> handlesClass(final Type classType, final boolean isEmpty) {
+            return EnumSet.of(phase);
+        }
+
+        @Override
+        public boolean usesClassVisitor() {
+            return true;
+        }
+    }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) NeoForged and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package cpw.mods.modlauncher.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import cpw.mods.modlauncher.util.StringInterner;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class StringInternerTests {
+    @Test
+    void testIdsAreConsecutiveAndStable() {
+        final var interner = new StringInterner(1);
+        assertEquals(0, interner.id("a"));
+        assertEquals(1, interner.id("b"));
+        assertEquals(0, interner.id("a"));
+        // Growing past the initial capacity keeps earlier ids
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i + 2, interner.id("s" + i));
+        }
+        assertEquals("a", interner.string(0));
+        assertEquals("b", interner.string(1));
+        assertEquals("s99", interner.string(101));
+    }
+
+    @Test
+    void testConcurrentInterning() throws Exception {
+        final var interner = new StringInterner(1);
+        final var executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Callable<int[]>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tasks.add(() -> {
+                    final int[] ids = new int[1000];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = interner.id("s" + i);
+                    }
+                    return ids;
+                });
+            }
+            final List<Future<int[]>> results = executor.invokeAll(tasks);
+            final int[] expected = results.get(0).get();
+            for (Future<int[]> result : results) {
+                final int[] ids = result.get();
+                for (int i = 0; i < ids.length; i++) {
+                    assertEquals(expected[i], ids[i]);
+                    assertEquals("s" + i, interner.string(ids[i]));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
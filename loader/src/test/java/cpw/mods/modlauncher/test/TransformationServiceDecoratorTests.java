@@ -15,6 +15,8 @@
 package cpw.mods.modlauncher.test;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import cpw.mods.modlauncher.TransformList;
@@ -32,7 +34,9 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
 import org.powermock.reflect.Whitebox;
 
@@ -63,6 +67,34 @@ class TransformationServiceDecoratorTests {
                 () -> assertTrue(targettedClasses.contains("cheesy/PuffMethod"), "targetted classes contains class name cheesy/PuffMethod"));
     }
 
+    @Test
+    void testTransformerPlan() throws Exception {
+        MockTransformerService mockTransformerService = new MockTransformerService() {
+            @Override
+            public List<? extends ITransformer<?>> transformers() {
+                return Stream.of(classNodeTransformer, methodNodeTransformer).collect(Collectors.toList());
+            }
+        };
+        TransformStore store = new TransformStore();
+
+        TransformationServiceDecorator sd = Whitebox.invokeConstructor(TransformationServiceDecorator.class, mockTransformerService);
+        sd.gatherTransformers(store);
+        Object methodPlan = Whitebox.invokeMethod(store, "getTransformerPlan", "cheesy/PuffMethod");
+        List<ITransformer<MethodNode>> targeted = Whitebox.invokeMethod(methodPlan, "getTransformersFor", new Class<?>[] { MethodNode.class }, new MethodNode(Opcodes.ACC_PUBLIC, "fish", "()V", null, null));
+        List<ITransformer<MethodNode>> otherDesc = Whitebox.invokeMethod(methodPlan, "getTransformersFor", new Class<?>[] { MethodNode.class }, new MethodNode(Opcodes.ACC_PUBLIC, "fish", "(I)V", null, null));
+        List<ITransformer<FieldNode>> field = Whitebox.invokeMethod(methodPlan, "getTransformersFor", new Class<?>[] { FieldNode.class }, new FieldNode(Opcodes.ACC_PUBLIC, "fish", "I", null, null));
+        List<ITransformer<ClassNode>> classTransformers = Whitebox.invokeMethod(methodPlan, "classTransformers");
+        Object classPlan = Whitebox.invokeMethod(store, "getTransformerPlan", "cheese/Puffs");
+        List<ITransformer<ClassNode>> puffsTransformers = Whitebox.invokeMethod(classPlan, "classTransformers");
+        assertAll(
+                () -> assertEquals(1, targeted.size(), "method plan contains the targeted method"),
+                () -> assertTrue(targeted.stream().allMatch(s -> Whitebox.getInternalState(s, "wrapped") == methodNodeTransformer), "method plan contains methodTransformer"),
+                () -> assertNull(otherDesc, "method plan matches the method descriptor"),
+                () -> assertNull(field, "method plan has no field transformers"),
+                () -> assertTrue(classTransformers.isEmpty(), "method plan has no class transformers"),
+                () -> assertEquals(1, puffsTransformers.size(), "class plan contains classTransformer"));
+    }
+
     private static <T> Map<TransformTargetLabel, List<ITransformer<T>>> getTransformers(TransformList<T> list) {
         try {
             return Whitebox.invokeMethod(list, "getTransformers");
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) NeoForged and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package cpw.mods.modlauncher.test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import cpw.mods.modlauncher.ClassTransformer;
+import cpw.mods.modlauncher.LaunchPluginHandler;
+import cpw.mods.modlauncher.TransformStore;
+import cpw.mods.modlauncher.TransformTargetLabel;
+import cpw.mods.modlauncher.TransformerAuditTrail;
+import cpw.mods.modlauncher.TransformingClassLoader;
+import cpw.mods.modlauncher.api.ITransformer;
+import cpw.mods.modlauncher.api.ITransformerActivity;
+import cpw.mods.modlauncher.api.ITransformerVotingContext;
+import cpw.mods.modlauncher.api.TargetType;
+import cpw.mods.modlauncher.api.TransformerVoteResult;
+import cpw.mods.modlauncher.serviceapi.ILaunchPluginService;
+import java.lang.module.Configuration;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.powermock.reflect.Whitebox;
+
+class TransformedClassCacheTests {
+    private static final Class<?> CACHE_CLASS = loadCacheClass();
+
+    @TempDir
+    Path tempDir;
+
+    private static Class<?> loadCacheClass() {
+        try {
+            return Class.forName("cpw.mods.modlauncher.TransformedClassCache");
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static TransformerAuditTrail createAuditTrail(int maxClasses) throws Exception {
+        return Whitebox.invokeConstructor(TransformerAuditTrail.class, new Class[] { int.class }, new Object[] { maxClasses });
+    }
+
+    private Object createCache(TransformerAuditTrail auditTrail) throws Exception {
+        return Whitebox.invokeConstructor(CACHE_CLASS, new Class[] { Path.class, TransformerAuditTrail.class }, new Object[] { tempDir, auditTrail });
+    }
+
+    private static byte[] computeIfAbsent(Object cache, String className, byte[] input, Supplier<byte[]> transformer) throws Exception {
+        return Whitebox.invokeMethod(cache, "computeIfAbsent", new Class[] { String.class, byte[].class, Supplier.class }, className, input, transformer);
+    }
+
+    @Test
+    void testHitMissAndInvalidation() throws Exception {
+        final var input = "input".getBytes(StandardCharsets.UTF_8);
+        final var output = "output".getBytes(StandardCharsets.UTF_8);
+        final var transformations = new AtomicInteger();
+        final var auditTrail = createAuditTrail(-1);
+        final Supplier<byte[]> transformer = () -> {
+            transformations.incrementAndGet();
+            auditTrail.addReason("test.Dummy", ITransformerActivity.CLASSLOADING_REASON);
+            return output;
+        };
+
+        assertArrayEquals(output, computeIfAbsent(createCache(auditTrail), "test.Dummy", input, transformer));
+        assertEquals(1, transformations.get());
+
+        // A new launch replays the audit trail of the cached class without transforming it
+        final var nextAuditTrail = createAuditTrail(-1);
+        assertArrayEquals(output, computeIfAbsent(createCache(nextAuditTrail), "test.Dummy", input, transformer));
+        assertEquals(1, transformations.get());
+        assertEquals("re:classloading", nextAuditTrail.getAuditString("test.Dummy"));
+
+        // A changed class is transformed again
+        computeIfAbsent(createCache(auditTrail), "test.Dummy", "changed input".getBytes(StandardCharsets.UTF_8), transformer);
+        assertEquals(2, transformations.get());
+    }
+
+    @Test
+    void testActivitiesAreStoredWhenAuditTrailIsDisabled() throws Exception {
+        final var input = "input".getBytes(StandardCharsets.UTF_8);
+        final var disabledAuditTrail = createAuditTrail(0);
+        computeIfAbsent(createCache(disabledAuditTrail), "test.Dummy", input, () -> {
+            disabledAuditTrail.addReason("test.Dummy", ITransformerActivity.CLASSLOADING_REASON);
+            // Activities of other classes are not stored with this one
+            disabledAuditTrail.addReason("test.Other", ITransformerActivity.CLASSLOADING_REASON);
+            return input;
+        });
+
+        final var auditTrail = createAuditTrail(-1);
+        computeIfAbsent(createCache(auditTrail), "test.Dummy", input, () -> {
+            throw new AssertionError("Cached class was transformed again");
+        });
+        assertEquals("re:classloading", auditTrail.getAuditString("test.Dummy"));
+        assertEquals("", auditTrail.getAuditString("test.Other"));
+    }
+
+    @Test
+    void testClassesHandledByPluginsAreNotCached() throws Exception {
+        final AtomicInteger processed = new AtomicInteger();
+        final ILaunchPluginService plugin = new ILaunchPluginService() {
+            @Override
+            public String name() {
+                return "test";
+            }
+
+            @Override
+            public EnumSet<Phase> handlesClass(final Type classType, final boolean isEmpty) {
+                return EnumSet.of(Phase.BEFORE);
+            }
+
+            @Override
+            public int processClassWithFlags(final Phase phase, final ClassNode classNode, final Type classType, final String reason) {
+                processed.incrementAndGet();
+                return ComputeFlags.NO_REWRITE;
+            }
+        };
+        final var writer = new ClassWriter(0);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "test/Handled", null, "java/lang/Object", null);
+        writer.visitEnd();
+        final var input = writer.toByteArray();
+
+        // Every launch offers the class to the plugin again, since it may keep state about the classes it processed
+        for (int launch = 1; launch <= 2; launch++) {
+            final var auditTrail = createAuditTrail(-1);
+            final var pluginHandler = new LaunchPluginHandler(Stream.of(plugin));
+            final ClassTransformer classTransformer = Whitebox.invokeConstructor(ClassTransformer.class,
+                    new Class[] { TransformStore.class, LaunchPluginHandler.class, TransformingClassLoader.class, TransformerAuditTrail.class, CACHE_CLASS },
+                    new Object[] { new TransformStore(), pluginHandler, null, auditTrail, createCache(auditTrail) });
+            assertArrayEquals(input, Whitebox.<byte[]>invokeMethod(classTransformer, "transform", new Class[] { byte[].class, String.class, String.class }, input, "test.Handled", ITransformerActivity.CLASSLOADING_REASON));
+            assertEquals(launch, processed.get());
+        }
+    }
+
+    @Test
+    void testFingerprint() throws Exception {
+        final var configuration = ModuleLayer.boot().configuration();
+        final var transformStore = new TransformStore();
+        final var pluginHandler = new LaunchPluginHandler(Stream.empty());
+        final var fingerprint = fingerprint(transformStore, pluginHandler, configuration, createAuditTrail(-1));
+        assertEquals(fingerprint, fingerprint(transformStore, pluginHandler, configuration, createAuditTrail(-1)));
+
+        // The audit trail mode and the transformers change the fingerprint
+        assertNotEquals(fingerprint, fingerprint(transformStore, pluginHandler, configuration, createAuditTrail(0)));
+        Whitebox.invokeMethod(transformStore, "addTransformer", new TransformTargetLabel("test.MyClass", TargetType.CLASS), classTransformer(), new MockTransformerService());
+        assertNotEquals(fingerprint, fingerprint(transformStore, pluginHandler, configuration, createAuditTrail(-1)));
+    }
+
+    private static ITransformer<ClassNode> classTransformer() {
+        return new ITransformer<>() {
+            @Override
+            public ClassNode transform(ClassNode input, ITransformerVotingContext context) {
+                return input;
+            }
+
+            @Override
+            public TransformerVoteResult castVote(ITransformerVotingContext context) {
+                return TransformerVoteResult.YES;
+            }
+
+            @Override
+            public Set<Target<ClassNode>> targets() {
+                return Collections.emptySet();
+            }
+
+            @Override
+            public TargetType<ClassNode> getTargetType() {
+                return TargetType.CLASS;
+            }
+        };
+    }
+
+    private static String fingerprint(TransformStore transformStore, LaunchPluginHandler pluginHandler, Configuration configuration, TransformerAuditTrail auditTrail) throws Exception {
+        return Whitebox.invokeMethod(CACHE_CLASS, "computeFingerprint", new Class[] { TransformStore.class, LaunchPluginHandler.class, Configuration.class, TransformerAuditTrail.class }, transformStore, pluginHandler, configuration, auditTrail);
+    }
+}
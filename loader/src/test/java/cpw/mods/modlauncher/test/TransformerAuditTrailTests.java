@@ -0,0 +1,67 @@
+/*
+ * ModLauncher - for launching Java programs with in-flight transformation ability.
+ * Copyright (C) 2017-2019 cpw
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package cpw.mods.modlauncher.test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cpw.mods.modlauncher.TransformerAuditTrail;
+import cpw.mods.modlauncher.api.ITransformerActivity;
+import org.junit.jupiter.api.Test;
+import org.powermock.reflect.Whitebox;
+
+/**
+ * Audit trail tests
+ */
+class TransformerAuditTrailTests {
+    private static TransformerAuditTrail create(int maxClasses) throws Exception {
+        return Whitebox.invokeConstructor(TransformerAuditTrail.class, new Class[] { int.class }, new Object[] { maxClasses });
+    }
+
+    @Test
+    void testActivities() throws Exception {
+        final TransformerAuditTrail auditTrail = create(-1);
+        final var activities = auditTrail.getActivityFor("test.Dummy");
+        assertTrue(activities.isEmpty());
+        auditTrail.addReason("test.Dummy", ITransformerActivity.CLASSLOADING_REASON);
+        auditTrail.addReason("test.Other", ITransformerActivity.COMPUTING_FRAMES_REASON);
+        auditTrail.addReason("test.Dummy", ITransformerActivity.COMPUTING_FRAMES_REASON);
+        // The list is a live view
+        assertEquals(2, activities.size());
+        assertEquals(ITransformerActivity.Type.REASON, activities.get(1).getType());
+        assertArrayEquals(new String[] { ITransformerActivity.COMPUTING_FRAMES_REASON }, activities.get(1).getContext());
+        assertEquals("re:classloading,re:computing_frames", auditTrail.getAuditString("test.Dummy"));
+    }
+
+    @Test
+    void testBounded() throws Exception {
+        final TransformerAuditTrail auditTrail = create(2);
+        auditTrail.addReason("test.First", ITransformerActivity.CLASSLOADING_REASON);
+        auditTrail.addReason("test.Second", ITransformerActivity.CLASSLOADING_REASON);
+        auditTrail.addReason("test.Third", ITransformerActivity.CLASSLOADING_REASON);
+        assertTrue(auditTrail.getActivityFor("test.First").isEmpty());
+        assertEquals(1, auditTrail.getActivityFor("test.Second").size());
+        assertEquals(1, auditTrail.getActivityFor("test.Third").size());
+    }
+
+    @Test
+    void testDisabled() throws Exception {
+        final TransformerAuditTrail auditTrail = create(0);
+        auditTrail.addReason("test.Dummy", ITransformerActivity.CLASSLOADING_REASON);
+        assertTrue(auditTrail.getActivityFor("test.Dummy").isEmpty());
+        assertEquals("", auditTrail.getAuditString("test.Dummy"));
+    }
+}
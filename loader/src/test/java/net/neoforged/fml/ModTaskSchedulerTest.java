@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) NeoForged and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.neoforged.fml;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import net.neoforged.bus.api.IEventBus;
+import net.neoforged.neoforgespi.language.IModInfo;
+import org.junit.jupiter.api.Test;
+
+class ModTaskSchedulerTest {
+    private final List<ModContainer> mods = new ArrayList<>();
+    private final Map<IModInfo, List<IModInfo>> dependencies = new IdentityHashMap<>();
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    private ModContainer mod(String modId, ModContainer... modDependencies) {
+        var info = mock(IModInfo.class);
+        when(info.getModId()).thenReturn(modId);
+        var container = new ModContainer(info) {
+            @Override
+            public IEventBus getEventBus() {
+                return null;
+            }
+        };
+        dependencies.put(info, Arrays.stream(modDependencies).map(ModContainer::getModInfo).toList());
+        mods.add(container);
+        return container;
+    }
+
+    private ModTaskScheduler scheduler(Consumer<ModContainer> task, Runnable onTaskDone) {
+        return new ModTaskScheduler("test", mods, dependencies::get, task, onTaskDone);
+    }
+
+    private void recordTask(ModContainer container) {
+        events.add("start " + container.getModId());
+        events.add("end " + container.getModId());
+    }
+
+    @Test
+    void testDependenciesCompleteFirst() {
+        var a = mod("a");
+        var b = mod("b", a);
+        var c = mod("c", b);
+        var d = mod("d", a);
+        mod("e", c, d);
+
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var result = scheduler(this::recordTask, () -> {}).run(executor, () -> {});
+            assertThat(result.failures()).isEmpty();
+            assertThat(result.timings()).hasSize(5);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(events).hasSize(10);
+        assertThat(events.indexOf("end a")).isLessThan(events.indexOf("start b")).isLessThan(events.indexOf("start d"));
+        assertThat(events.indexOf("end b")).isLessThan(events.indexOf("start c"));
+        assertThat(events.indexOf("end c")).isLessThan(events.indexOf("start e"));
+        assertThat(events.indexOf("end d")).isLessThan(events.indexOf("start e"));
+    }
+
+    @Test
+    void testFailureSkipsTransitiveDependents() {
+        var a = mod("a");
+        var b = mod("b", a);
+        mod("c", b);
+        var d = mod("d");
+        mod("e", d);
+
+        var failure = new RuntimeException("a failed");
+        var done = new AtomicInteger();
+        var result = scheduler(container -> {
+            recordTask(container);
+            if (container == a) {
+                throw failure;
+            }
+        }, done::incrementAndGet).run(Runnable::run, () -> {});
+
+        assertThat(result.failures()).containsExactly(failure);
+        assertThat(events).containsExactly("start a", "end a", "start d", "end d", "start e", "end e");
+        // The failed task was timed, the skipped ones were not
+        assertThat(result.timings().keySet()).extracting(ModContainer::getModId).containsExactlyInAnyOrder("a", "d", "e");
+        // Skipped tasks still count as done
+        assertThat(done.get()).isEqualTo(5);
+    }
+
+    @Test
+    void testLongestChainRunsFirst() {
+        mod("x");
+        var a = mod("a");
+        var b = mod("b", a);
+        mod("c", b);
+
+        // Queue the tasks and run them one at a time on the waiting thread, so that the order is deterministic
+        var queued = new ConcurrentLinkedQueue<Runnable>();
+        var result = scheduler(this::recordTask, () -> {}).run(queued::add, () -> {
+            Runnable next;
+            while ((next = queued.poll()) != null) {
+                next.run();
+            }
+        });
+
+        assertThat(result.failures()).isEmpty();
+        // a starts the longest chain, so it runs before x even though x comes first; x and c tie and keep mod order
+        assertThat(events).containsExactly("start a", "end a", "start b", "end b", "start x", "end x", "start c", "end c");
+    }
+
+    @Test
+    void testRejectedTasksRunOnCallingThread() {
+        var a = mod("a");
+        var b = mod("b", a);
+        mod("c", b);
+        mod("d");
+
+        var threads = Collections.synchronizedList(new ArrayList<Thread>());
+        var result = scheduler(container -> {
+            threads.add(Thread.currentThread());
+            recordTask(container);
+        }, () -> {}).run(command -> {
+            throw new RejectedExecutionException();
+        }, () -> {});
+
+        assertThat(result.failures()).isEmpty();
+        assertThat(result.timings()).hasSize(4);
+        assertThat(threads).hasSize(4).containsOnly(Thread.currentThread());
+        assertThat(events.indexOf("end a")).isLessThan(events.indexOf("start b"));
+        assertThat(events.indexOf("end b")).isLessThan(events.indexOf("start c"));
+        assertThat(events).contains("start d", "end d");
+    }
+}
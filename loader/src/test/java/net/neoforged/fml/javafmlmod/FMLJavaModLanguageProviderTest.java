@@ -108,6 +108,33 @@ public class FMLJavaModLanguageProviderTest extends LauncherTest {
         assertThat(EVENTS).hasSize(1);
     }
 
+    @Test
+    void testParallelDeferredWork() throws Exception {
+        installation.setupProductionClient();
+        installation.buildModJar("test.jar")
+                .withModsToml(builder -> builder.unlicensedJavaMod().addMod("testmod", "1.0"))
+                .addClass("testmod.EntryPoint", """
+                        import net.neoforged.fml.javafmlmod.FMLJavaModLanguageProviderTest;
+                        @net.neoforged.fml.common.Mod("testmod")
+                        public class EntryPoint {
+                            public EntryPoint(net.neoforged.bus.api.IEventBus modEventBus) {
+                                modEventBus.addListener(net.neoforged.fml.event.lifecycle.FMLClientSetupEvent.class, e -> {
+                                    e.enqueueWork(() -> FMLJavaModLanguageProviderTest.MESSAGES.add("main thread"));
+                                    e.enqueueParallelWork(() -> FMLJavaModLanguageProviderTest.MESSAGES.add("parallel 1"));
+                                    e.enqueueParallelWork(() -> FMLJavaModLanguageProviderTest.MESSAGES.add("parallel 2"));
+                                });
+                            }
+                        }
+                        """)
+                .build();
+
+        launchAndLoad("neoforgeclient");
+
+        ModLoader.dispatchParallelEvent("test", Runnable::run, Runnable::run, () -> {}, FMLClientSetupEvent::new);
+
+        assertThat(MESSAGES).containsExactly("parallel 1", "parallel 2", "main thread");
+    }
+
     @Test
     void testMultipleEntrypoints() throws Exception {
         installation.setupProductionClient();
@@ -11,14 +11,23 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.electronwill.nightconfig.core.Config;
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import net.neoforged.fml.ModList;
 import net.neoforged.fml.ModLoader;
 import net.neoforged.fml.ModLoadingException;
 import net.neoforged.fml.ModWorkManager;
+import net.neoforged.fml.common.Mod;
 import net.neoforged.fml.event.lifecycle.FMLClientSetupEvent;
 import net.neoforged.fml.javafmlmod.FMLJavaModLanguageProvider;
 import net.neoforged.fml.testlib.IdentifiableContent;
@@ -26,12 +35,14 @@ import net.neoforged.fml.testlib.SimulatedInstallation;
 import net.neoforged.jarjar.metadata.ContainedJarIdentifier;
 import net.neoforged.jarjar.metadata.ContainedJarMetadata;
 import net.neoforged.jarjar.metadata.ContainedVersion;
+import net.neoforged.neoforgespi.language.ModFileScanData;
 import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
 import org.apache.maven.artifact.versioning.VersionRange;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.objectweb.asm.Type;
 
 class FMLLoaderTest extends LauncherTest {
     private static final ContainedVersion JIJ_V1 = new ContainedVersion(VersionRange.createFromVersion("1.0"), new DefaultArtifactVersion("1.0"));
@@ -207,11 +218,66 @@ class FMLLoaderTest extends LauncherTest {
 
         /**
          * A mod-jar that contains another mod and a plugin jar.
+         * The nested jars are extracted into the nested jar cache.
          */
         @Test
         void testJarInJar() throws Exception {
             installation.setupProductionClient();
-            installation.writeModJar("jijmod.jar",
+            writeJarInJarMod();
+
+            var result = launchAndLoad("neoforgeclient");
+            assertJarInJarLoaded(result);
+            var embeddedPath = result.loadedMods().get("embeddedmod").getFile().getFilePath();
+            assertThat(embeddedPath).startsWith(nestedJarCacheDir()).isRegularFile();
+            assertThat(nestedJarCacheDir().resolve("digests.properties")).isRegularFile();
+        }
+
+        /**
+         * Nested jars are read through the outer jar if extracting them is disabled.
+         */
+        @Test
+        void testJarInJarWithoutExtraction() throws Exception {
+            installation.setupProductionClient();
+            installation.writeConfig("extractNestedJars = false");
+            writeJarInJarMod();
+
+            var result = launchAndLoad("neoforgeclient");
+            assertJarInJarLoaded(result);
+            var embeddedPath = result.loadedMods().get("embeddedmod").getFile().getFilePath();
+            assertThat(embeddedPath.getFileSystem()).isNotEqualTo(FileSystems.getDefault());
+            assertThat(nestedJarCacheDir()).doesNotExist();
+        }
+
+        /**
+         * Nested jars that were extracted by a previous launch are reused, and unused entries are removed.
+         */
+        @Test
+        void testJarInJarCacheHit() throws Exception {
+            installation.setupProductionClient();
+            var outerJar = writeJarInJarMod();
+
+            // The entry of a nested jar is named after the digest of the outer jar and the path of the nested jar
+            var entryPath = "META-INF/jarjar/embedded_mod-1.0.jar";
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(outerJar)));
+            digest.update(entryPath.getBytes(StandardCharsets.UTF_8));
+            var cachedJar = nestedJarCacheDir().resolve(HexFormat.of().formatHex(digest.digest())).resolve("embedded_mod-1.0.jar");
+            Files.createDirectories(cachedJar.getParent());
+            SimulatedInstallation.writeJarFile(cachedJar,
+                    SimulatedInstallation.createModsToml("embeddedmod", "1.0"),
+                    new IdentifiableContent("CACHED_MARKER", "cached.txt"));
+            var staleEntry = Files.createDirectories(nestedJarCacheDir().resolve("stale"));
+
+            var result = launchAndLoad("neoforgeclient");
+            assertJarInJarLoaded(result);
+            var embeddedFile = result.loadedMods().get("embeddedmod").getFile();
+            assertEquals(cachedJar, embeddedFile.getFilePath());
+            assertThat(embeddedFile.findResource("cached.txt")).exists();
+            assertThat(staleEntry).doesNotExist();
+        }
+
+        private Path writeJarInJarMod() throws IOException {
+            return installation.writeModJar("jijmod.jar",
                     SimulatedInstallation.createModsToml("jijmod", "1.0"),
                     SimulatedInstallation.createJarFile(
                             "EMBEDDED_MOD", "META-INF/jarjar/embedded_mod-1.0.jar", SimulatedInstallation.createModsToml("embeddedmod", "1.0")),
@@ -226,17 +292,47 @@ class FMLLoaderTest extends LauncherTest {
                             new ContainedJarMetadata(new ContainedJarIdentifier("modgroup", "embedded-service"), JIJ_V1, "META-INF/jarjar/embedded_service-1.0.jar", false),
                             new ContainedJarMetadata(new ContainedJarIdentifier("modgroup", "embedded-gamelib"), JIJ_V1, "META-INF/jarjar/embedded_gamelib-1.0.jar", false),
                             new ContainedJarMetadata(new ContainedJarIdentifier("modgroup", "embedded-lib"), JIJ_V1, "META-INF/jarjar/embedded_lib-1.0.jar", false)));
+        }
 
-            var result = launchAndLoad("neoforgeclient");
+        private static void assertJarInJarLoaded(LaunchResult result) {
             assertThat(result.gameLayerModules()).containsOnlyKeys("minecraft", "embeddedmod", "embedded.gamelib", "jijmod", "neoforge");
             assertThat(result.pluginLayerModules()).containsOnlyKeys("embedded.lib", "embedded.service");
             assertThat(result.loadedMods()).containsOnlyKeys("minecraft", "neoforge", "embeddedmod", "jijmod");
             assertThat(result.issues()).isEmpty();
         }
 
+        private Path nestedJarCacheDir() {
+            return installation.getGameDir().resolve(".cache/fml/jarinjar");
+        }
+
         /**
          * If a mod file is present in multiple versions, the latest one is used.
          */
+        @Test
+        void testAnnotationIndexSeesAddedAnnotations() throws Exception {
+            installation.setupProductionClient();
+            installation.buildModJar("testmod.jar")
+                    .withTestmodModsToml()
+                    .addClass("testmod.TestMod", """
+                            @net.neoforged.fml.common.Mod("testmod")
+                            public class TestMod {
+                            }
+                            """)
+                    .build();
+
+            launchAndLoad("neoforgeclient");
+            var modType = Type.getType(Mod.class);
+            assertThat(ModList.get().getAnnotatedBy(Mod.class, ElementType.TYPE))
+                    .extracting(ModFileScanData.AnnotationData::memberName)
+                    .contains("testmod.TestMod");
+            assertThat(ModList.get().getAnnotatedBy(modType, ElementType.METHOD)).isEmpty();
+
+            // Annotations added after the first lookup are found as well
+            var added = new ModFileScanData.AnnotationData(modType, ElementType.METHOD, Type.getObjectType("testmod/TestMod"), "run()V", Map.of());
+            ModList.get().getModFileById("testmod").getFile().getScanResult().getAnnotations().add(added);
+            assertThat(ModList.get().getAnnotatedBy(modType, ElementType.METHOD)).containsExactly(added);
+        }
+
         @Test
         void testHighestVersionWins() throws Exception {
             installation.setupProductionClient();
@@ -500,6 +596,51 @@ class FMLLoaderTest extends LauncherTest {
                     "ERROR: Mod mod_c is present in multiple files: test2.jar, test1.jar");
         }
 
+        /**
+         * Paths submitted for parallel reading are added in the order they were submitted,
+         * so duplicates are detected the same way as for paths that are added directly.
+         */
+        @Test
+        void testSubmittedPathsKeepTheirOrder() throws Exception {
+            installation.setupProductionClient();
+            var extraFolder = installation.getGameDir().resolve("extra");
+            Files.createDirectories(extraFolder);
+            var test1 = extraFolder.resolve("test1.jar");
+            var test2 = extraFolder.resolve("test2.jar");
+            SimulatedInstallation.writeJarFile(test1, SimulatedInstallation.createMultiModsToml("mod_a", "1.0", "mod_c", "1.0"));
+            SimulatedInstallation.writeJarFile(test2, SimulatedInstallation.createMultiModsToml("mod_b", "1.0", "mod_c", "1.0"));
+            // The second submission of test1.jar is skipped since it was already located
+            SubmittingLocator.PATHS.addAll(List.of(test1, test2, test1));
+
+            var e = assertThrows(ModLoadingException.class, () -> launchAndLoad("neoforgeclient"));
+            assertThat(getTranslatedIssues(e.getIssues())).containsOnly(
+                    "ERROR: Mod mod_c is present in multiple files: test2.jar, test1.jar");
+        }
+
+        /**
+         * Paths that were submitted before a locator failed are still loaded.
+         */
+        @Test
+        void testSubmittedPathsAreLoadedWhenLocatorFails() throws Exception {
+            installation.setupProductionClient();
+            var extraFolder = installation.getGameDir().resolve("extra");
+            Files.createDirectories(extraFolder);
+            var test1 = extraFolder.resolve("test1.jar");
+            var test2 = extraFolder.resolve("test2.jar");
+            SimulatedInstallation.writeJarFile(test1, SimulatedInstallation.createModsToml("mod_a", "1.0"));
+            SimulatedInstallation.writeJarFile(test2, SimulatedInstallation.createModsToml("mod_b", "1.0"));
+            SubmittingLocator.PATHS.addAll(List.of(test1, test2));
+            SubmittingLocator.failAfterSubmitting = true;
+
+            var e = assertThrows(ModLoadingException.class, () -> launchAndLoad("neoforgeclient"));
+            assertThat(getTranslatedIssues(e.getIssues()))
+                    .hasSize(1)
+                    .allMatch(issue -> issue.contains("Locator failed after submitting paths"));
+            assertThat(LoadingModList.get().getModFiles())
+                    .extracting(modFile -> modFile.getMods().getFirst().getModId())
+                    .contains("mod_a", "mod_b");
+        }
+
         @Test
         void testMissingOrUnsatisfiedForgeFeatures() throws Exception {
             installation.setupProductionClient();
@@ -141,6 +141,7 @@ public abstract class LauncherTest {
         installation.close();
         Launcher.INSTANCE = null;
         FMLLoader.bindings = null;
+        SubmittingLocator.reset();
     }
 
     protected LaunchResult launchAndLoadInNeoForgeDevEnvironment(String launchTarget) throws Exception {
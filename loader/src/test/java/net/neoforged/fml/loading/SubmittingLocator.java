@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) NeoForged and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.neoforged.fml.loading;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import net.neoforged.neoforgespi.ILaunchContext;
+import net.neoforged.neoforgespi.locating.IDiscoveryPipeline;
+import net.neoforged.neoforgespi.locating.IModFileCandidateLocator;
+import net.neoforged.neoforgespi.locating.IncompatibleFileReporting;
+import net.neoforged.neoforgespi.locating.ModFileDiscoveryAttributes;
+
+/**
+ * Submits the paths configured by a test, and optionally fails afterwards.
+ * <p>
+ * It is registered as a service for all tests, but does nothing unless a test configures it.
+ * {@link LauncherTest} resets it after every test.
+ */
+public class SubmittingLocator implements IModFileCandidateLocator {
+    public static final List<Path> PATHS = new ArrayList<>();
+    public static boolean failAfterSubmitting;
+
+    public static void reset() {
+        PATHS.clear();
+        failAfterSubmitting = false;
+    }
+
+    @Override
+    public void findCandidates(ILaunchContext context, IDiscoveryPipeline pipeline) {
+        for (var path : PATHS) {
+            pipeline.submitPath(path, ModFileDiscoveryAttributes.DEFAULT, IncompatibleFileReporting.ERROR);
+        }
+        if (failAfterSubmitting) {
+            throw new IllegalStateException("Locator failed after submitting paths");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "submitting locator";
+    }
+}
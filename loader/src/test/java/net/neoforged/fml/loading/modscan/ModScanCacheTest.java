@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) NeoForged and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package net.neoforged.fml.loading.modscan;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import cpw.mods.jarhandling.JarContentsBuilder;
+import cpw.mods.jarhandling.SecureJar;
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import net.neoforged.fml.loading.moddiscovery.ModFile;
+import net.neoforged.neoforgespi.language.ModFileScanData;
+import net.neoforged.neoforgespi.locating.ModFileDiscoveryAttributes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.Type;
+
+public class ModScanCacheTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testScanDataIsCached() throws IOException {
+        var jar = writeJar("content");
+        var modFile = new ModFile(SecureJar.from(jar), file -> null, new ModFileDiscoveryAttributes(null, null, null, null));
+        var data = scanData();
+        var scans = new AtomicInteger();
+        Supplier<ModFileScanData> scanner = () -> {
+            scans.incrementAndGet();
+            return data;
+        };
+
+        var cache = ModScanCache.open(tempDir.resolve("game"));
+        assertNotNull(cache);
+        cache.computeIfAbsent(modFile, scanner);
+        assertEquals(1, scans.get());
+
+        var cached = ModScanCache.open(tempDir.resolve("game")).computeIfAbsent(modFile, scanner);
+        assertEquals(1, scans.get());
+        assertThat(cached.getClasses()).containsExactlyElementsOf(data.getClasses());
+        assertThat(cached.getAnnotations()).containsExactlyElementsOf(data.getAnnotations());
+
+        // A new modification time alone does not invalidate the entry
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() + 10_000));
+        ModScanCache.open(tempDir.resolve("game")).computeIfAbsent(modFile, scanner);
+        assertEquals(1, scans.get());
+
+        writeJar("changed content");
+        ModScanCache.open(tempDir.resolve("game")).computeIfAbsent(modFile, scanner);
+        assertEquals(2, scans.get());
+    }
+
+    @Test
+    void testMultiPathModFileIsKeyedOnAllPaths() throws IOException {
+        var jar = writeJar("content");
+        var otherJar = writeJar("other.jar", "other content");
+        var scans = new AtomicInteger();
+        Supplier<ModFileScanData> scanner = () -> {
+            scans.incrementAndGet();
+            return scanData();
+        };
+
+        var modFile = new ModFile(SecureJar.from(new JarContentsBuilder().paths(jar, otherJar).build()), file -> null, new ModFileDiscoveryAttributes(null, null, null, null));
+        ModScanCache.open(tempDir.resolve("game")).computeIfAbsent(modFile, scanner);
+        ModScanCache.open(tempDir.resolve("game")).computeIfAbsent(modFile, scanner);
+        assertEquals(1, scans.get());
+
+        // A mod file with the same primary path, but other jars, does not share the entry
+        var singleModFile = new ModFile(SecureJar.from(jar), file -> null, new ModFileDiscoveryAttributes(null, null, null, null));
+        ModScanCache.open(tempDir.resolve("game")).computeIfAbsent(singleModFile, scanner);
+        assertEquals(2, scans.get());
+
+        // Changing a jar other than the primary one invalidates the entry
+        writeJar("other.jar", "changed other content");
+        ModScanCache.open(tempDir.resolve("game")).computeIfAbsent(modFile, scanner);
+        assertEquals(3, scans.get());
+    }
+
+    @Test
+    void testFilteredModFilesAreNotCached() throws IOException {
+        var jar = writeJar("content");
+        var scans = new AtomicInteger();
+        Supplier<ModFileScanData> scanner = () -> {
+            scans.incrementAndGet();
+            return scanData();
+        };
+
+        // Same jar with opposite filters, like the Minecraft and NeoForge jars in a development environment
+        var included = new ModFile(SecureJar.from(new JarContentsBuilder().paths(jar).pathFilter((entry, basePath) -> entry.startsWith("content")).build()), file -> null, new ModFileDiscoveryAttributes(null, null, null, null));
+        var excluded = new ModFile(SecureJar.from(new JarContentsBuilder().paths(jar).pathFilter((entry, basePath) -> !entry.startsWith("content")).build()), file -> null, new ModFileDiscoveryAttributes(null, null, null, null));
+        var cache = ModScanCache.open(tempDir.resolve("game"));
+        cache.computeIfAbsent(included, scanner);
+        cache.computeIfAbsent(excluded, scanner);
+        cache.computeIfAbsent(included, scanner);
+        assertEquals(3, scans.get());
+        try (var entries = Files.list(tempDir.resolve("game/.cache/fml/modscan"))) {
+            assertEquals(0, entries.count());
+        }
+    }
+
+    @Test
+    void testUnusedEntriesAreRemoved() throws IOException {
+        var modFile = new ModFile(SecureJar.from(writeJar("content")), file -> null, new ModFileDiscoveryAttributes(null, null, null, null));
+        var cache = ModScanCache.open(tempDir.resolve("game"));
+        cache.computeIfAbsent(modFile, ModScanCacheTest::scanData);
+        var cacheDir = tempDir.resolve("game/.cache/fml/modscan");
+        try (var entries = Files.list(cacheDir)) {
+            assertEquals(1, entries.count());
+        }
+
+        ModScanCache.open(tempDir.resolve("game")).removeUnusedEntries();
+        try (var entries = Files.list(cacheDir)) {
+            assertEquals(0, entries.count());
+        }
+    }
+
+    private Path writeJar(String content) throws IOException {
+        return writeJar("mod.jar", content);
+    }
+
+    private Path writeJar(String name, String content) throws IOException {
+        var jar = tempDir.resolve(name);
+        try (var out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("content.txt"));
+            out.write(content.getBytes());
+            out.closeEntry();
+        }
+        return jar;
+    }
+
+    private static ModFileScanData scanData() {
+        var data = new ModFileScanData();
+        var clazz = Type.getObjectType("com/example/C1");
+        var annotation = Type.getObjectType("com/example/SomeAnn");
+        data.getClasses().add(new ModFileScanData.ClassData(clazz, Type.getObjectType("java/lang/Object"), Set.of(Type.getObjectType("java/lang/Runnable"))));
+        data.getAnnotations().add(new ModFileScanData.AnnotationData(annotation, ElementType.TYPE, clazz, "com.example.C1", Map.of(
+                "value", List.of("str1", "str2"),
+                "type", Type.getObjectType("com/example/C2"),
+                "enum", new ModAnnotation.EnumHolder("Lcom/example/SomeEnum;", "VAL1"),
+                "nested", Map.of("count", 3))));
+        data.getAnnotations().add(new ModFileScanData.AnnotationData(annotation, ElementType.METHOD, clazz, "run()V", Map.of()));
+        return data;
+    }
+}
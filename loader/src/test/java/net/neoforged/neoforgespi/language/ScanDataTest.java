@@ -10,9 +10,13 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.IOException;
 import java.lang.annotation.ElementType;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
 import net.neoforged.fml.loading.modscan.ModAnnotation;
+import net.neoforged.fml.loading.modscan.Scanner;
 import net.neoforged.fml.test.TestModFile;
 import org.junit.jupiter.api.Test;
 import org.objectweb.asm.Type;
@@ -181,6 +185,106 @@ public class ScanDataTest {
         }
     }
 
+    @Test
+    void testGetAnnotatedBy() throws IOException {
+        try (final var mod = modFile()) {
+            mod.classBuilder()
+                    .addClass("com.example.idx.SomeAnn", """
+                            @interface SomeAnn {
+                            }
+
+                            @SomeAnn
+                            class C1 {
+                                @SomeAnn
+                                public int counter;
+                            }""")
+                    .compile();
+            mod.scan();
+
+            final var type = Type.getObjectType("com/example/idx/SomeAnn");
+            final var scanData = mod.getScanResult();
+            assertThat(scanData.getAnnotatedBy(type, ElementType.TYPE))
+                    .containsExactly(new ModFileScanData.AnnotationData(
+                            type, ElementType.TYPE, Type.getObjectType("com/example/idx/C1"), "com.example.idx.C1", Map.of()));
+            assertThat(scanData.getAnnotatedBy(type, ElementType.METHOD)).isEmpty();
+
+            // Annotations added after the first query are found too
+            final var added = new ModFileScanData.AnnotationData(type, ElementType.METHOD, Type.getObjectType("com/example/idx/C1"), "run()V", Map.of());
+            scanData.getAnnotations().add(added);
+            assertThat(scanData.getAnnotatedBy(type, ElementType.METHOD)).containsExactly(added);
+        }
+    }
+
+    @Test
+    void testParallelScanMatchesSequentialScan() throws IOException {
+        try (final var mod = modFile()) {
+            var builder = mod.classBuilder();
+            builder = builder.addClass("com.example.par.SomeAnn", """
+                    @interface SomeAnn {
+                        int value();
+                    }""");
+            for (int i = 0; i < 200; i++) {
+                builder = builder.addClass("com.example.par.C" + i, """
+                        @SomeAnn(%d)
+                        class C%d {
+                        }""".formatted(i, i));
+            }
+            builder.compile();
+
+            var executor = Executors.newFixedThreadPool(4);
+            try {
+                var sequential = new Scanner(mod).scan();
+                var parallel = new Scanner(mod, executor).scan();
+                assertThat(parallel.getClasses()).hasSize(201).containsExactlyElementsOf(sequential.getClasses());
+                assertThat(parallel.getAnnotations()).hasSize(200).containsExactlyElementsOf(sequential.getAnnotations());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void testCompactRoundTrip() throws IOException {
+        try (final var mod = modFile()) {
+            mod.classBuilder()
+                    .addClass("com.example.rt.SomeAnn", """
+                            @interface SomeAnn {
+                                String[] value();
+                            }
+
+                            @SomeAnn({"a", "b"})
+                            class C1 implements Runnable {
+                                public void run() {
+                                }
+                            }""")
+                    .compile();
+            final var scanData = new Scanner(mod).scan();
+            final var classes = new ArrayList<ModFileScanData.ClassData>();
+            final var annotations = new ArrayList<ModFileScanData.AnnotationData>();
+            scanData.forEachClass(classes::add);
+            scanData.forEachAnnotation(annotations::add);
+
+            // Reading the compact scan data through the sets matches the records they were compacted from
+            assertThat(scanData.getClasses()).hasSize(2).containsExactlyElementsOf(classes);
+            assertThat(scanData.getAnnotations()).hasSize(1).containsExactlyElementsOf(annotations);
+            assertThat(scanData.getClasses()).contains(new ModFileScanData.ClassData(
+                    Type.getObjectType("com/example/rt/C1"), Type.getObjectType("java/lang/Object"), Set.of(Type.getObjectType("java/lang/Runnable"))));
+
+            // Modifying the sets converts the scan data back, and the change survives compacting it again
+            final var type = Type.getObjectType("com/example/rt/SomeAnn");
+            final var added = new ModFileScanData.AnnotationData(type, ElementType.METHOD, Type.getObjectType("com/example/rt/C1"), "run()V", Map.of());
+            assertThat(scanData.getAnnotations().add(added)).isTrue();
+            final var forEachAnnotations = new ArrayList<ModFileScanData.AnnotationData>();
+            scanData.forEachAnnotation(forEachAnnotations::add);
+            assertThat(forEachAnnotations).containsExactly(annotations.get(0), added);
+
+            scanData.compact();
+            assertThat(scanData.getClasses()).containsExactlyElementsOf(classes);
+            assertThat(scanData.getAnnotations()).containsExactly(annotations.get(0), added);
+            assertThat(scanData.getAnnotatedBy(type, ElementType.METHOD)).containsExactly(added);
+        }
+    }
+
     private static TestModFile modFile() {
         return TestModFile.newInstance("""
                 license="LGPL v3"
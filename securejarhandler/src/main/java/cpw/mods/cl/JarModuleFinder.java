@@ -78,7 +78,7 @@ public class JarModuleFinder implements ModuleFinder {
 
         @Override
         public Stream<String> list() throws IOException {
-            return null;
+            return jar.listFiles("").stream();
         }
 
         @Override
@@ -56,6 +56,10 @@ public class ModularURLHandler implements URLStreamHandlerFactory {
 
         @Override
         protected URLConnection openConnection(final URL u) throws IOException {
+            var connection = this.iurlProvider.openConnection(u);
+            if (connection != null) {
+                return connection;
+            }
             return new FunctionURLConnection(u, this.iurlProvider);
         }
     }
@@ -105,6 +109,15 @@ public class ModularURLHandler implements URLStreamHandlerFactory {
 
         Function<URL, InputStream> inputStreamFunction();
 
+        /**
+         * Opens a connection to the given URL, or returns {@code null} to use a connection that is backed
+         * by the other methods of this provider.
+         */
+        @Nullable
+        default URLConnection openConnection(URL url) throws IOException {
+            return null;
+        }
+
         default long getLastModified(URL url) {
             return 0;
         }
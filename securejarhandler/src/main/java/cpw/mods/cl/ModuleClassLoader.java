@@ -1,5 +1,7 @@
 package cpw.mods.cl;
 
+import cpw.mods.jarhandling.StartupIndex;
+import cpw.mods.niofs.union.UnionFileSystem;
 import cpw.mods.util.LambdaExceptionUtils;
 import java.io.IOException;
 import java.io.InputStream;
@@ -15,16 +17,26 @@ import java.lang.module.ResolvedModule;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -49,6 +61,11 @@ public class ModuleClassLoader extends ClassLoader {
     // We don't want to set a parent because we explicitly do not want to delegate to a parent class loader,
     // and that wouldn't even handle the case of multiple parent layers anyway.
     private static final MethodHandle LAYER_BIND_TO_LOADER;
+    // Class loading statistics, only collected while startup profiling is enabled
+    private static final boolean PROFILING = System.getProperty("fml.startupProfile") != null;
+    private static final LongAdder LOADED_CLASSES = new LongAdder();
+    private static final LongAdder CLASS_LOADING_NANOS = new LongAdder();
+    private static final ThreadLocal<int[]> CLASS_LOADING_DEPTH = ThreadLocal.withInitial(() -> new int[1]);
 
     static {
         try {
@@ -126,25 +143,46 @@ public class ModuleClassLoader extends ClassLoader {
                 return ModuleClassLoader.this;
             }
         };
-        // This loop will be O(n^2) for the average set of mods, since they all read one another.
-        // However, we amortize some of the cost by optimizing the common automatic module path.
-        for (var rm : configuration.modules()) {
-            for (var other : rm.reads()) {
-                ClassLoader cl = classLoaderMap.computeIfAbsent(other, findClassLoader);
-                final var descriptor = other.reference().descriptor();
-                if (descriptor.isAutomatic()) {
-                    // No need to run this logic more than once per automatic module
-                    if (processedAutomaticDescriptors.add(descriptor)) {
-                        descriptor.packages().forEach(pn -> this.parentLoaders.put(pn, cl));
+        // The package to module mapping only depends on the module descriptors, so it can be reused from the startup index
+        final var startupIndex = StartupIndex.get();
+        final var indexKey = startupIndex.isEnabled() ? computeIndexKey(name, configuration) : null;
+        final var indexed = startupIndex.lookup(indexKey);
+        if (indexed != null) {
+            for (int i = 0; i < indexed.length; i += 2) {
+                final var module = configuration.findModule(indexed[i + 1]).orElse(null);
+                if (module != null) {
+                    this.parentLoaders.put(indexed[i], classLoaderMap.computeIfAbsent(module, findClassLoader));
+                }
+            }
+        } else {
+            final Map<String, ResolvedModule> packageSources = new HashMap<>();
+            // This loop will be O(n^2) for the average set of mods, since they all read one another.
+            // However, we amortize some of the cost by optimizing the common automatic module path.
+            for (var rm : configuration.modules()) {
+                for (var other : rm.reads()) {
+                    final var descriptor = other.reference().descriptor();
+                    if (descriptor.isAutomatic()) {
+                        // No need to run this logic more than once per automatic module
+                        if (processedAutomaticDescriptors.add(descriptor)) {
+                            descriptor.packages().forEach(pn -> packageSources.put(pn, other));
+                        }
+                    } else {
+                        // We actually use "rm" for this path, so we have to run it each time
+                        descriptor.exports().stream()
+                                .filter(e -> !e.isQualified() || (e.isQualified() && other.configuration() == configuration && e.targets().contains(rm.name())))
+                                .map(ModuleDescriptor.Exports::source)
+                                .forEach(pn -> packageSources.put(pn, other));
                     }
-                } else {
-                    // We actually use "rm" for this path, so we have to run it each time
-                    descriptor.exports().stream()
-                            .filter(e -> !e.isQualified() || (e.isQualified() && other.configuration() == configuration && e.targets().contains(rm.name())))
-                            .map(ModuleDescriptor.Exports::source)
-                            .forEach(pn -> this.parentLoaders.put(pn, cl));
                 }
             }
+            final var recorded = new String[packageSources.size() * 2];
+            int i = 0;
+            for (var entry : packageSources.entrySet()) {
+                this.parentLoaders.put(entry.getKey(), classLoaderMap.computeIfAbsent(entry.getValue(), findClassLoader));
+                recorded[i++] = entry.getKey();
+                recorded[i++] = entry.getValue().name();
+            }
+            startupIndex.record(indexKey, recorded);
         }
         // Bind this classloader to all parent layers recursively,
         // to make sure ServiceLoader can find providers defined in parent layers
@@ -152,6 +190,79 @@ public class ModuleClassLoader extends ClassLoader {
         parentLayers.forEach(p -> forLayerAndParents(p, visitedLayers, l -> bindToLayer(this, l)));
     }
 
+    /**
+     * Computes the startup index key for the parent loader mapping of a configuration.
+     * The mapping only depends on the descriptors of the modules in the configuration and its parents,
+     * and on which configuration each module belongs to.
+     */
+    private static String computeIndexKey(String name, Configuration configuration) {
+        final var startupIndex = StartupIndex.get();
+        final List<String> modules = new ArrayList<>();
+        final Set<Configuration> visited = new HashSet<>();
+        final Deque<Configuration> queue = new ArrayDeque<>();
+        queue.add(configuration);
+        int depth = 0;
+        while (!queue.isEmpty()) {
+            for (int remaining = queue.size(); remaining > 0; remaining--) {
+                final var config = queue.poll();
+                if (!visited.add(config)) continue;
+                for (var module : config.modules()) {
+                    modules.add(depth + ":" + computeModuleKey(startupIndex, module.reference()));
+                }
+                queue.addAll(config.parents());
+            }
+            depth++;
+        }
+        Collections.sort(modules);
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256");
+            for (var module : modules) {
+                digest.update(module.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return "loader|" + name + "|" + HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Identifies a module by the files it was read from, which is much cheaper than describing its descriptor.
+     * Modules that cannot be identified that way, such as folders, are described by their descriptor instead.
+     */
+    private static String computeModuleKey(StartupIndex startupIndex, ModuleReference reference) {
+        final var descriptor = reference.descriptor();
+        final var location = reference.location().orElse(null);
+        if (location != null && "jrt".equals(location.getScheme())) {
+            // Modules of the runtime image only change with the runtime
+            return descriptor.name() + "|jrt|" + Runtime.version();
+        }
+        if (location != null && "file".equals(location.getScheme())) {
+            final var key = startupIndex.jarKey("module", Path.of(location));
+            if (key != null) {
+                return descriptor.name() + "|" + key;
+            }
+        } else if (location != null && "union".equals(location.getScheme())) {
+            try {
+                // Filters cannot be fingerprinted, so only unfiltered jars are identified by their files
+                if (Paths.get(location).getFileSystem() instanceof UnionFileSystem ufs && ufs.getFilesystemFilter() == null) {
+                    final var key = new StringBuilder(descriptor.name());
+                    for (var basePath : ufs.getBasePaths()) {
+                        final var jarKey = startupIndex.jarKey("module", basePath);
+                        if (jarKey == null) {
+                            return StartupIndex.descriptorKey(descriptor);
+                        }
+                        key.append('|').append(jarKey);
+                    }
+                    return key.toString();
+                }
+            } catch (RuntimeException e) {
+                // Not a file system that can be identified, fall back to the descriptor
+            }
+        }
+        return StartupIndex.descriptorKey(descriptor);
+    }
+
     private static void forLayerAndParents(ModuleLayer layer, Set<ModuleLayer> visited, Consumer<ModuleLayer> operation) {
         if (visited.contains(layer)) return;
         visited.add(layer);
@@ -191,6 +302,11 @@ public class ModuleClassLoader extends ClassLoader {
     protected byte[] getClassBytes(final ModuleReader reader, final ModuleReference ref, final String name) {
         var cname = name.replace('.', '/') + ".class";
 
+        if (ref instanceof JarModuleFinder.JarModuleReference jarRef) {
+            // Skip the module reader and its streams, jars can read the bytes directly
+            return jarRef.jar().readFile(cname).orElseGet(() -> new byte[0]);
+        }
+
         try (var istream = closeHandler(Optional.of(reader).flatMap(LambdaExceptionUtils.rethrowFunction(r -> r.open(cname))))) {
             return istream.map(LambdaExceptionUtils.rethrowFunction(InputStream::readAllBytes))
                     .findFirst()
@@ -199,6 +315,26 @@ public class ModuleClassLoader extends ClassLoader {
     }
 
     private Class<?> readerToClass(final ModuleReader reader, final ModuleReference ref, final String name) {
+        if (!PROFILING) {
+            return defineClassFromReader(reader, ref, name);
+        }
+        // Only the outermost class load on a thread is timed, since loading a class can load others
+        var depth = CLASS_LOADING_DEPTH.get();
+        long start = depth[0]++ == 0 ? System.nanoTime() : 0;
+        try {
+            var cls = defineClassFromReader(reader, ref, name);
+            if (cls != null) {
+                LOADED_CLASSES.increment();
+            }
+            return cls;
+        } finally {
+            if (--depth[0] == 0) {
+                CLASS_LOADING_NANOS.add(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private Class<?> defineClassFromReader(final ModuleReader reader, final ModuleReference ref, final String name) {
         var bytes = maybeTransformClassBytes(getClassBytes(reader, ref, name), name, null);
         if (bytes.length == 0) return null;
         var cname = name.replace('.', '/') + ".class";
@@ -210,6 +346,22 @@ public class ModuleClassLoader extends ClassLoader {
         return cls;
     }
 
+    /**
+     * {@return the number of classes defined by all module class loaders}
+     * Only counted if the {@code fml.startupProfile} system property is set.
+     */
+    public static long getLoadedClassCount() {
+        return LOADED_CLASSES.sum();
+    }
+
+    /**
+     * {@return the wall time all module class loaders spent reading, transforming and defining classes, in nanoseconds}
+     * Only measured if the {@code fml.startupProfile} system property is set.
+     */
+    public static long getClassLoadingNanos() {
+        return CLASS_LOADING_NANOS.sum();
+    }
+
     protected byte[] maybeTransformClassBytes(final byte[] bytes, final String name, final String context) {
         return bytes;
     }
@@ -328,16 +480,7 @@ public class ModuleClassLoader extends ClassLoader {
         byte[] bytes = new byte[0];
         Throwable suppressed = null;
         try {
-            final var pname = name.substring(0, name.lastIndexOf('.'));
-            if (this.packageLookup.containsKey(pname)) {
-                bytes = loadFromModule(classNameToModuleName(name), (reader, ref) -> this.getClassBytes(reader, ref, name));
-            } else if (this.parentLoaders.containsKey(pname)) {
-                var cname = name.replace('.', '/') + ".class";
-                try (var is = this.parentLoaders.get(pname).getResourceAsStream(cname)) {
-                    if (is != null)
-                        bytes = is.readAllBytes();
-                }
-            }
+            bytes = getUntransformedClassBytes(name);
         } catch (IOException e) {
             suppressed = e;
         }
@@ -350,6 +493,23 @@ public class ModuleClassLoader extends ClassLoader {
         return maybeTransformedBytes;
     }
 
+    /**
+     * {@return the bytes of the given class as found in its module or parent loader, or an empty array if it cannot be found}
+     */
+    protected byte[] getUntransformedClassBytes(final String name) throws IOException {
+        final var pname = name.substring(0, name.lastIndexOf('.'));
+        if (this.packageLookup.containsKey(pname)) {
+            return loadFromModule(classNameToModuleName(name), (reader, ref) -> this.getClassBytes(reader, ref, name));
+        } else if (this.parentLoaders.containsKey(pname)) {
+            var cname = name.replace('.', '/') + ".class";
+            try (var is = this.parentLoaders.get(pname).getResourceAsStream(cname)) {
+                if (is != null)
+                    return is.readAllBytes();
+            }
+        }
+        return new byte[0];
+    }
+
     public void setFallbackClassLoader(final ClassLoader fallbackClassLoader) {
         this.fallbackClassLoader = fallbackClassLoader;
     }
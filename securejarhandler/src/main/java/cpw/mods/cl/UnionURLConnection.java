@@ -0,0 +1,96 @@
+package cpw.mods.cl;
+
+import cpw.mods.niofs.union.UnionPath;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A connection to a {@code union:} URL, which reads the file it points to directly from its jar or directory.
+ * <p>
+ * The content length and last modified time are taken from the index of the union file system,
+ * so they do not require the file to be read.
+ */
+public class UnionURLConnection extends URLConnection {
+    private final UnionURLStreamHandler handler;
+    @Nullable
+    private UnionPath path;
+    @Nullable
+    private BasicFileAttributes attributes;
+
+    UnionURLConnection(URL url, UnionURLStreamHandler handler) {
+        super(url);
+        this.handler = handler;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        if (connected) {
+            return;
+        }
+        path = handler.resolve(url);
+        attributes = path.getFileSystem().readAttributesIfExists(path, BasicFileAttributes.class);
+        if (attributes == null) {
+            throw new NoSuchFileException(path.toString());
+        }
+        connected = true;
+    }
+
+    /**
+     * {@return the path this connection reads from}
+     */
+    public UnionPath getPath() throws IOException {
+        connect();
+        return path;
+    }
+
+    /**
+     * Opens a channel that reads the file this connection points to.
+     */
+    public SeekableByteChannel openChannel() throws IOException {
+        return Files.newByteChannel(getPath(), StandardOpenOption.READ);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(getPath());
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        var attrs = attributesOrNull();
+        return attrs != null ? attrs.size() : -1;
+    }
+
+    @Override
+    public int getContentLength() {
+        var length = getContentLengthLong();
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            return -1;
+        }
+        return (int) length;
+    }
+
+    @Override
+    public long getLastModified() {
+        var attrs = attributesOrNull();
+        return attrs != null ? attrs.lastModifiedTime().toMillis() : 0;
+    }
+
+    @Nullable
+    private BasicFileAttributes attributesOrNull() {
+        try {
+            connect();
+            return attributes;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
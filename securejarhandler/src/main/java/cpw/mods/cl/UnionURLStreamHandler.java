@@ -6,8 +6,10 @@ import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.function.Function;
 
 public class UnionURLStreamHandler implements ModularURLHandler.IURLProvider {
@@ -16,28 +18,26 @@ public class UnionURLStreamHandler implements ModularURLHandler.IURLProvider {
         return "union";
     }
 
+    @Override
+    public URLConnection openConnection(URL url) {
+        return new UnionURLConnection(url, this);
+    }
+
     @Override
     public Function<URL, InputStream> inputStreamFunction() {
         return u -> {
             try {
-                if (Paths.get(u.toURI()) instanceof UnionPath upath) {
-                    return upath.buildInputStream();
-                } else {
-                    throw new IllegalArgumentException("Invalid Path " + u.toURI() + " at UnionURLStreamHandler");
-                }
-            } catch (URISyntaxException e) {
-                throw new RuntimeException(e);
+                return Files.newInputStream(resolve(u));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-
         };
     }
 
     @Override
     public long getLastModified(URL u) {
         try {
-            return Files.getLastModifiedTime(Paths.get(u.toURI())).toMillis();
-        } catch (URISyntaxException e) {
-            throw new RuntimeException(e);
+            return Files.readAttributes(resolve(u), BasicFileAttributes.class).lastModifiedTime().toMillis();
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -46,11 +46,25 @@ public class UnionURLStreamHandler implements ModularURLHandler.IURLProvider {
     @Override
     public long getContentLength(URL u) {
         try {
-            return Files.size(Paths.get(u.toURI()));
-        } catch (URISyntaxException e) {
-            throw new RuntimeException(e);
+            return Files.readAttributes(resolve(u), BasicFileAttributes.class).size();
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
+
+    /**
+     * {@return the path the given {@code union:} URL points to}
+     * The URL is resolved by the union file system provider, which looks up its file system by the raw URI.
+     */
+    UnionPath resolve(URL url) {
+        try {
+            if (Paths.get(url.toURI()) instanceof UnionPath upath) {
+                return upath;
+            } else {
+                throw new IllegalArgumentException("Invalid Path " + url.toURI() + " at UnionURLStreamHandler");
+            }
+        } catch (URISyntaxException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package cpw.mods.jarhandling;
 
+import cpw.mods.util.FileListing;
 import java.io.Closeable;
 import java.net.URI;
 import java.nio.file.Path;
@@ -29,6 +30,29 @@ public interface JarContents extends Closeable {
      */
     Optional<URI> findFile(String name);
 
+    /**
+     * Reads the contents of a file in the jar.
+     *
+     * <p>Plain jar files are read directly from a memory mapping of the jar,
+     * which is considerably cheaper than going through the file system for small files such as classes.
+     *
+     * @return the contents of the file, or an empty optional if it does not exist
+     */
+    Optional<byte[]> readFile(String name);
+
+    /**
+     * Lists the files in the jar whose name starts with the given prefix, such as {@code "assets/"},
+     * from an index of the jar rather than by walking it.
+     *
+     * <p>The names are separated by {@code /}, sorted, and can be passed to {@link #findFile} and {@link #readFile}.
+     * Files of multi-release jars are listed under the name they are found by.
+     *
+     * <p>The default implementation walks the {@linkplain #getPrimaryPath() primary path} instead.
+     */
+    default List<String> listFiles(String prefix) {
+        return FileListing.list(getPrimaryPath(), prefix);
+    }
+
     /**
      * {@return the manifest of the jar}
      * Empty if no manifest is present in the jar.
@@ -3,6 +3,7 @@ package cpw.mods.jarhandling;
 import cpw.mods.jarhandling.impl.Jar;
 import cpw.mods.jarhandling.impl.JarContentsImpl;
 import cpw.mods.niofs.union.UnionPathFilter;
+import cpw.mods.util.FileListing;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
@@ -12,6 +13,7 @@ import java.lang.module.ModuleReference;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.CodeSigner;
 import java.util.List;
 import java.util.Optional;
@@ -117,6 +119,37 @@ public interface SecureJar {
          */
         Optional<InputStream> open(final String name);
 
+        /**
+         * Reads the full contents of a file in the module.
+         *
+         * @return the contents of the file, or an empty optional if it does not exist
+         */
+        default Optional<byte[]> readFile(final String name) {
+            return open(name).map(is -> {
+                try (is) {
+                    return is.readAllBytes();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        /**
+         * Lists the files in the module whose name starts with the given prefix.
+         *
+         * <p>The default implementation walks the {@linkplain #uri() location} of the module,
+         * and fails if the module has none.
+         *
+         * @see JarContents#listFiles(String)
+         */
+        default List<String> listFiles(final String prefix) {
+            final URI location = uri();
+            if (location == null) {
+                throw new UnsupportedOperationException("Module " + name() + " has no location to list files from");
+            }
+            return FileListing.list(Paths.get(location), prefix);
+        }
+
         /**
          * {@return the manifest of the jar}
          */
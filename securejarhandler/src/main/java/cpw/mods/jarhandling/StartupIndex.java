@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) NeoForged and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package cpw.mods.jarhandling;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.module.ModuleDescriptor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Persistent index of data that is expensive to compute on every launch, but only depends on the set of jars:
+ * the packages of each jar, and the package-to-module mapping that {@link cpw.mods.cl.ModuleClassLoader} computes
+ * for its parent loaders.
+ * <p>
+ * The index is enabled by setting the {@code securejarhandler.startupIndex} system property to a file path.
+ * The file is read on first use. Entries are keyed by the path, size and modification time of the
+ * jars they were computed from, so any changed jar simply misses the index.
+ * Entries that were used or computed during the current launch are written back by {@link #save()},
+ * which should be called once the launch has succeeded.
+ */
+@ApiStatus.Internal
+public final class StartupIndex {
+    private static final int MAGIC = 0x534A4849; // SJHI
+    private static final int VERSION = 1;
+    private static final StartupIndex INSTANCE = new StartupIndex(System.getProperty("securejarhandler.startupIndex"));
+
+    @Nullable
+    private final Path file;
+    // Entries read from the index file
+    private Map<String, String[]> previous;
+    // Entries used during this launch
+    private final Map<String, String[]> current = new ConcurrentHashMap<>();
+    // Entries whose values are only computed when the index is saved
+    private final Map<String, Supplier<String[]>> deferred = new ConcurrentHashMap<>();
+
+    StartupIndex(@Nullable String file) {
+        this.file = file == null || file.isEmpty() ? null : Path.of(file);
+    }
+
+    /**
+     * {@return the startup index of this launch}
+     */
+    public static StartupIndex get() {
+        return INSTANCE;
+    }
+
+    /**
+     * {@return whether the index is enabled}
+     */
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    /**
+     * Builds a key for data derived from the given jar file, or returns {@code null} if the path is not a
+     * regular file (directories cannot be validated cheaply) or the index is disabled.
+     */
+    @Nullable
+    public String jarKey(String kind, Path jar, String... extra) {
+        if (file == null) {
+            return null;
+        }
+        try {
+            var attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return kind + '|' + jar.toAbsolutePath() + '|' + attributes.size() + '|' + attributes.lastModifiedTime().toMillis() + '|' + String.join(",", extra);
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * {@return a string describing the given module descriptor, for use in keys}
+     * It contains the name, modifiers, packages, requires, exports and opens of the module in a stable order,
+     * so that unlike {@link ModuleDescriptor#hashCode()}, two different descriptors never share the same string.
+     */
+    public static String descriptorKey(ModuleDescriptor descriptor) {
+        var key = new StringBuilder(descriptor.name());
+        key.append('|').append(sorted(descriptor.modifiers().stream().map(Enum::name)));
+        key.append('|').append(sorted(descriptor.packages().stream()));
+        key.append('|').append(sorted(descriptor.requires().stream()
+                .map(requires -> sorted(requires.modifiers().stream().map(Enum::name)) + " " + requires.name())));
+        key.append('|').append(sorted(descriptor.exports().stream()
+                .map(exports -> sorted(exports.modifiers().stream().map(Enum::name)) + " " + exports.source() + " to " + sorted(exports.targets().stream()))));
+        key.append('|').append(sorted(descriptor.opens().stream()
+                .map(opens -> sorted(opens.modifiers().stream().map(Enum::name)) + " " + opens.source() + " to " + sorted(opens.targets().stream()))));
+        return key.toString();
+    }
+
+    private static String sorted(Stream<String> values) {
+        return values.sorted().collect(Collectors.joining(",", "[", "]"));
+    }
+
+    /**
+     * {@return the values stored for the given key, or {@code null} if there are none}
+     */
+    @Nullable
+    public String[] lookup(@Nullable String key) {
+        if (key == null || file == null) {
+            return null;
+        }
+        var values = previous().get(key);
+        if (values != null) {
+            current.put(key, values);
+        }
+        return values;
+    }
+
+    /**
+     * Records values for the given key, to be written by the next {@link #save()}.
+     */
+    public void record(@Nullable String key, String[] values) {
+        if (key != null && file != null) {
+            current.put(key, values);
+        }
+    }
+
+    /**
+     * Records values for the given key that keep changing during the launch.
+     * The values are computed by the given supplier when the index is saved.
+     */
+    public void recordLater(@Nullable String key, Supplier<String[]> values) {
+        if (key != null && file != null) {
+            deferred.put(key, values);
+        }
+    }
+
+    /**
+     * Writes all entries used during this launch to the index file, if they differ from what was read.
+     */
+    public synchronized void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        deferred.forEach((key, values) -> current.put(key, values.get()));
+        if (sameEntries(previous(), current)) {
+            return;
+        }
+        var bos = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bos)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(current.size());
+            for (var entry : current.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().length);
+                for (var value : entry.getValue()) {
+                    writeString(out, value);
+                }
+            }
+        }
+        var parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        var temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        Files.write(temp, bos.toByteArray());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        previous = Map.copyOf(current);
+    }
+
+    private static boolean sameEntries(Map<String, String[]> a, Map<String, String[]> b) {
+        if (a.size() != b.size()) return false;
+        for (var entry : b.entrySet()) {
+            if (!Arrays.equals(a.get(entry.getKey()), entry.getValue())) return false;
+        }
+        return true;
+    }
+
+    private synchronized Map<String, String[]> previous() {
+        if (previous == null) {
+            previous = read(file);
+        }
+        return previous;
+    }
+
+    private static Map<String, String[]> read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return Collections.emptyMap();
+        }
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return Collections.emptyMap();
+            }
+            var count = in.readInt();
+            var entries = new HashMap<String, String[]>();
+            for (int i = 0; i < count; i++) {
+                var key = readString(in);
+                var values = new String[in.readInt()];
+                for (int j = 0; j < values.length; j++) {
+                    values[j] = readString(in);
+                }
+                entries.put(key, values);
+            }
+            return entries;
+        } catch (IOException | RuntimeException e) {
+            // A corrupted index is simply rebuilt
+            return Collections.emptyMap();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        var length = in.readInt();
+        var bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -10,6 +10,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.spi.FileSystemProvider;
 import java.security.CodeSigner;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.jar.Attributes;
@@ -138,6 +139,11 @@ public final class VirtualJar implements SecureJar {
             return Optional.empty();
         }
 
+        @Override
+        public List<String> listFiles(String prefix) {
+            return List.of();
+        }
+
         @Override
         public Manifest getManifest() {
             return manifest;
@@ -12,6 +12,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.CodeSigner;
+import java.util.List;
 import java.util.Optional;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
@@ -139,6 +140,16 @@ public class Jar implements SecureJar {
             return jar.findFile(name).map(Paths::get).map(LambdaExceptionUtils.rethrowFunction(Files::newInputStream));
         }
 
+        @Override
+        public Optional<byte[]> readFile(final String name) {
+            return jar.contents.readFile(name);
+        }
+
+        @Override
+        public List<String> listFiles(final String prefix) {
+            return jar.contents.listFiles(prefix);
+        }
+
         @Override
         public Manifest getManifest() {
             return jar.manifest;
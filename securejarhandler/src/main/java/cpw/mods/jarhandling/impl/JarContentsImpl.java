@@ -2,12 +2,14 @@ package cpw.mods.jarhandling.impl;
 
 import cpw.mods.jarhandling.JarContents;
 import cpw.mods.jarhandling.SecureJar;
+import cpw.mods.jarhandling.StartupIndex;
 import cpw.mods.niofs.union.UnionFileSystem;
 import cpw.mods.niofs.union.UnionFileSystemProvider;
 import cpw.mods.niofs.union.UnionPathFilter;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -21,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.function.Supplier;
 import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
@@ -42,6 +45,15 @@ public class JarContentsImpl implements JarContents {
     private final Manifest manifest;
     // Name overrides, if the jar is a multi-release jar
     private final Map<Path, Integer> nameOverrides;
+    // The jar file backing this jar, if it can be indexed in the startup index
+    @Nullable
+    private final Path indexablePath;
+    // The jar file backing this jar, if its entries can be read from a memory mapping
+    @Nullable
+    private final Path mappablePath;
+    // Lazily opened memory mapping of mappablePath, empty if the jar cannot be mapped or was closed
+    @Nullable
+    private volatile Optional<MappedJar> mappedJar;
 
     // Cache for repeated getPackages calls
     private Set<String> packages;
@@ -53,6 +65,10 @@ public class JarContentsImpl implements JarContents {
         if (validPaths.length == 0)
             throw new UncheckedIOException(new IOException("Invalid paths argument, contained no existing paths: " + Arrays.toString(paths)));
         this.filesystem = UFSP.newFileSystem(pathFilter, validPaths);
+        // Filters cannot be fingerprinted, so only plain single jars are eligible for the startup index
+        this.indexablePath = validPaths.length == 1 && pathFilter == null ? validPaths[0] : null;
+        // Only plain jar files on the default file system can be mapped (not folders, nor jars nested in other jars)
+        this.mappablePath = validPaths.length == 1 && validPaths[0].getFileSystem() == FileSystems.getDefault() && Files.isRegularFile(validPaths[0]) ? validPaths[0] : null;
         // Find the manifest, and read its signing data
         this.manifest = readManifestAndSigningData(defaultManifest, validPaths);
         // Read multi-release jar information
@@ -75,6 +91,7 @@ public class JarContentsImpl implements JarContents {
                     try (var jis = new JarInputStream(Files.newInputStream(path))) {
                         // Jar file: use the signature verification code
                         signingData.readJarSigningData(jis);
+                        signingData.useVerificationCache(path);
 
                         if (jis.getManifest() != null) {
                             return new Manifest(jis.getManifest());
@@ -150,6 +167,74 @@ public class JarContentsImpl implements JarContents {
         return Optional.of(this.filesystem.getRoot().resolve(rel)).filter(Files::exists).map(Path::toUri);
     }
 
+    @Override
+    public Optional<byte[]> readFile(String name) {
+        if (!this.nameOverrides.isEmpty()) {
+            var version = this.nameOverrides.get(filesystem.getPath(name));
+            if (version != null) {
+                name = "META-INF/versions/" + version + "/" + name;
+            }
+        }
+        try {
+            var mapped = mappedJar();
+            if (mapped != null && isPlainEntryName(name)) {
+                var filter = filesystem.getFilesystemFilter();
+                if (filter != null && !filter.test(name, mappablePath)) {
+                    return Optional.empty();
+                }
+                return Optional.ofNullable(mapped.read(name));
+            }
+            var path = this.filesystem.getRoot().resolve(name);
+            return Files.exists(path) ? Optional.of(Files.readAllBytes(path)) : Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public List<String> listFiles(String prefix) {
+        var files = filesystem.listFiles(prefix);
+        if (this.nameOverrides.isEmpty()) {
+            return files;
+        }
+        // List versioned files under their unversioned name, which is what they are found by
+        var result = new TreeSet<String>();
+        for (var file : files) {
+            if (!file.startsWith("META-INF/versions/")) {
+                result.add(file);
+            }
+        }
+        for (var name : this.nameOverrides.keySet()) {
+            var file = name.toString();
+            if (file.startsWith(prefix)) {
+                result.add(file);
+            }
+        }
+        return List.copyOf(result);
+    }
+
+    // Names that need normalization are left to the file system
+    private static boolean isPlainEntryName(String name) {
+        return !name.isEmpty() && !name.startsWith("/") && !name.contains("//") && !name.contains("./");
+    }
+
+    @Nullable
+    private MappedJar mappedJar() throws IOException {
+        if (mappablePath == null) {
+            return null;
+        }
+        var mapped = this.mappedJar;
+        if (mapped == null) {
+            synchronized (this) {
+                mapped = this.mappedJar;
+                if (mapped == null) {
+                    this.mappedJar = mapped = Optional.ofNullable(MappedJar.open(mappablePath));
+                }
+            }
+        }
+        return mapped.orElse(null);
+    }
+
     @Override
     public Manifest getManifest() {
         return manifest;
@@ -157,6 +242,19 @@ public class JarContentsImpl implements JarContents {
 
     @Override
     public Set<String> getPackagesExcluding(String... excludedRootPackages) {
+        var index = StartupIndex.get();
+        var indexKey = indexablePath != null ? index.jarKey("packages", indexablePath, excludedRootPackages) : null;
+        var indexed = index.lookup(indexKey);
+        if (indexed != null) {
+            // Stale or corrupt index data can contain duplicates, which Set.of would reject
+            return Set.copyOf(Arrays.asList(indexed));
+        }
+        var packages = computePackagesExcluding(excludedRootPackages);
+        index.record(indexKey, packages.toArray(String[]::new));
+        return packages;
+    }
+
+    private Set<String> computePackagesExcluding(String... excludedRootPackages) {
         Set<String> ignoredRootPackages = new HashSet<>(excludedRootPackages.length + 1);
         ignoredRootPackages.add("META-INF"); // Always ignore META-INF
         ignoredRootPackages.addAll(List.of(excludedRootPackages)); // And additional user-provided packages
@@ -230,6 +328,11 @@ public class JarContentsImpl implements JarContents {
 
     @Override
     public void close() throws IOException {
+        // Other threads may still be reading from the mapping, so it cannot be unmapped explicitly.
+        // It is released here instead, and unmapped once it is garbage collected.
+        synchronized (this) {
+            this.mappedJar = Optional.empty();
+        }
         filesystem.close();
     }
 }
@@ -1,15 +1,18 @@
 package cpw.mods.jarhandling.impl;
 
 import cpw.mods.jarhandling.SecureJar;
+import cpw.mods.jarhandling.StartupIndex;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.CodeSigner;
-import java.util.HashMap;
-import java.util.Hashtable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
@@ -18,14 +21,21 @@ import org.jetbrains.annotations.Nullable;
 
 /**
  * The signing data for a {@link Jar}.
+ * <p>
+ * Entries are verified at most once, and entries of the same jar can be verified concurrently.
+ * If the {@link StartupIndex} is enabled, the verification results of a signed jar are persisted together with
+ * the digest of the jar, so entries of unchanged jars are not verified again on the next launch.
  */
 public class JarSigningData {
     private static final CodeSigner[] EMPTY_CODESIGNERS = new CodeSigner[0];
+    private static final char VERIFIED = 'V';
+    private static final char INVALID = 'I';
+    private static final char DIGEST = 'D';
 
-    private final Hashtable<String, CodeSigner[]> pendingSigners = new Hashtable<>();
-    private final Hashtable<String, CodeSigner[]> verifiedSigners = new Hashtable<>();
+    private final Map<String, CodeSigner[]> pendingSigners = new ConcurrentHashMap<>();
+    private final Map<String, CodeSigner[]> verifiedSigners = new ConcurrentHashMap<>();
     private final ManifestVerifier verifier = new ManifestVerifier();
-    private final Map<String, StatusData> statusData = new HashMap<>();
+    private final Map<String, StatusData> statusData = new ConcurrentHashMap<>();
 
     record StatusData(String name, SecureJar.Status status, CodeSigner[] signers) {
         static void add(final String name, final SecureJar.Status status, final CodeSigner[] signers, JarSigningData data) {
@@ -53,6 +63,94 @@ public class JarSigningData {
         }
     }
 
+    /**
+     * Restores the verification results of a previous launch from the {@link StartupIndex}, and records the results
+     * of this launch to be saved with it. Must be called after {@link #readJarSigningData}, with the jar it was read from.
+     */
+    void useVerificationCache(Path jar) {
+        var index = StartupIndex.get();
+        if (!index.isEnabled() || !hasSecurityData()) {
+            return;
+        }
+        var key = index.jarKey("signatures", jar);
+        if (key == null) {
+            return;
+        }
+
+        // The key only changes with the size and modification time of the jar, so the results are only used
+        // if the digest they were stored with still matches. The jar is only hashed if there are results to check.
+        String jarDigest = null;
+        var cached = index.lookup(key);
+        if (cached != null && cached.length > 0 && cached[0].charAt(0) == DIGEST) {
+            try {
+                jarDigest = digest(jar);
+            } catch (IOException | UncheckedIOException e) {
+                return;
+            }
+            if (cached[0].substring(1).equals(jarDigest)) {
+                restoreVerificationResults(cached);
+            }
+        }
+        var knownDigest = jarDigest;
+        index.recordLater(key, () -> getVerificationResults(jar, knownDigest));
+    }
+
+    private void restoreVerificationResults(String[] cached) {
+        for (int i = 1; i < cached.length; i++) {
+            var name = cached[i].substring(1);
+            if (cached[i].charAt(0) == INVALID) {
+                StatusData.add(name, SecureJar.Status.INVALID, null, this);
+            } else {
+                // The signers come from the signature files, which were verified again when the jar was read
+                var signers = pendingSigners.get(name);
+                if (signers != null) {
+                    verifiedSigners.put(name, signers);
+                    pendingSigners.remove(name);
+                }
+                StatusData.add(name, SecureJar.Status.VERIFIED, signers, this);
+            }
+        }
+    }
+
+    private String[] getVerificationResults(Path jar, @Nullable String jarDigest) {
+        if (jarDigest == null) {
+            // Nothing was cached for this jar, so it is hashed when the index is saved rather than when it is opened
+            try {
+                jarDigest = digest(jar);
+            } catch (IOException | UncheckedIOException e) {
+                // Stored without a digest, which the next launch treats as a miss
+                return new String[0];
+            }
+        }
+        var results = new ArrayList<String>(statusData.size() + 1);
+        for (var data : statusData.values()) {
+            if (!data.name().equals(JarFile.MANIFEST_NAME)) {
+                results.add((data.status() == SecureJar.Status.INVALID ? INVALID : VERIFIED) + data.name());
+            }
+        }
+        // Sorted, so that unchanged results are written in the same order
+        results.sort(null);
+        results.addFirst(DIGEST + jarDigest);
+        return results.toArray(String[]::new);
+    }
+
+    private static String digest(Path jar) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (var in = Files.newInputStream(jar)) {
+            var buffer = new byte[65536];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return SecureJarVerifier.toHexString(digest.digest());
+    }
+
     @Nullable
     CodeSigner[] getManifestSigners() {
         return getData(JarFile.MANIFEST_NAME).map(r -> r.signers).orElse(null);
@@ -94,18 +192,19 @@ public class JarSigningData {
     }
 
     @Nullable
-    synchronized CodeSigner[] verifyAndGetSigners(Manifest manifest, String name, byte[] bytes) {
+    CodeSigner[] verifyAndGetSigners(Manifest manifest, String name, byte[] bytes) {
         if (!hasSecurityData()) return null;
-        if (statusData.containsKey(name)) return statusData.get(name).signers;
+        var known = statusData.get(name);
+        if (known != null) return known.signers;
 
-        var signers = verifier.verify(manifest, pendingSigners, verifiedSigners, name, bytes);
-        if (signers == null) {
-            StatusData.add(name, SecureJar.Status.INVALID, null, this);
-            return null;
-        } else {
-            var ret = signers.orElse(null);
-            StatusData.add(name, SecureJar.Status.VERIFIED, ret, this);
-            return ret;
-        }
+        // Only blocks threads verifying the same entry (or one in the same bin of the map), so each entry is verified once
+        return statusData.computeIfAbsent(name, n -> {
+            var signers = verifier.verify(manifest, pendingSigners, verifiedSigners, n, bytes);
+            if (signers == null) {
+                return new StatusData(n, SecureJar.Status.INVALID, null);
+            } else {
+                return new StatusData(n, SecureJar.Status.VERIFIED, signers.orElse(null));
+            }
+        }).signers;
     }
 }
@@ -17,10 +17,11 @@ class ManifestVerifier {
     private static final boolean DEBUG = Boolean.parseBoolean(System.getProperty("securejarhandler.debugVerifier", "false"));
 
     private static final Base64.Decoder BASE64D = Base64.getDecoder();
-    private final Map<String, MessageDigest> HASHERS = new HashMap<>();
+    // Digests are reused, but never shared between threads, so jars can be verified concurrently
+    private static final ThreadLocal<Map<String, MessageDigest>> HASHERS = ThreadLocal.withInitial(HashMap::new);
 
     private MessageDigest getHasher(String name) {
-        return HASHERS.computeIfAbsent(name.toLowerCase(Locale.ENGLISH), k -> {
+        return HASHERS.get().computeIfAbsent(name.toLowerCase(Locale.ENGLISH), k -> {
             try {
                 return MessageDigest.getInstance(k);
             } catch (NoSuchAlgorithmException e) {
@@ -69,24 +70,26 @@ class ManifestVerifier {
         }
 
         for (var exp : expected) {
-            synchronized (exp.hash()) {
-                exp.hash().reset();
-                byte[] actual = exp.hash().digest(data);
-                if (DEBUG) {
-                    log("[SJH]   " + exp.hash().getAlgorithm() + " Expected: " + SecureJarVerifier.toHexString(exp.value()));
-                    log("[SJH]   " + exp.hash().getAlgorithm() + " Actual:   " + SecureJarVerifier.toHexString(actual));
-                }
-                if (!Arrays.equals(exp.value(), actual)) {
-                    if (DEBUG)
-                        log("[SJH]   Failed: Invalid hashes");
-                    return null;
-                }
+            exp.hash().reset();
+            byte[] actual = exp.hash().digest(data);
+            if (DEBUG) {
+                log("[SJH]   " + exp.hash().getAlgorithm() + " Expected: " + SecureJarVerifier.toHexString(exp.value()));
+                log("[SJH]   " + exp.hash().getAlgorithm() + " Actual:   " + SecureJarVerifier.toHexString(actual));
+            }
+            if (!Arrays.equals(exp.value(), actual)) {
+                if (DEBUG)
+                    log("[SJH]   Failed: Invalid hashes");
+                return null;
             }
         }
 
-        var signers = pending.remove(name);
-        if (signers != null)
+        // Add the signers to the verified ones before removing them from the pending ones,
+        // so that concurrent readers never see both empty
+        var signers = pending.get(name);
+        if (signers != null) {
             verified.put(name, signers);
+            pending.remove(name);
+        }
         return Optional.ofNullable(signers);
     }
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) NeoForged and contributors
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+
+package cpw.mods.jarhandling.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads entries of a jar file directly from a memory mapping of the file, bypassing the zip file system.
+ * <p>
+ * The central directory is parsed once when the jar is opened. Stored entries are copied straight out of the
+ * mapping, and deflated entries are inflated from the mapping into an array of the exact uncompressed size,
+ * using {@link Inflater}s from a shared pool.
+ * <p>
+ * Only the common subset of the zip format is supported: jars that are larger than 2 GiB, use zip64 or
+ * encryption, or contain entries with other compression methods cannot be opened, and callers should fall back
+ * to the file system.
+ */
+final class MappedJar {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int LOC_SIGNATURE = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int CEN_SIZE = 46;
+    private static final int LOC_SIZE = 30;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final Queue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+
+    private final ByteBuffer mapping;
+    private final Map<String, Entry> entries;
+
+    private record Entry(int method, int compressedSize, int size, int localHeaderOffset) {}
+
+    private MappedJar(ByteBuffer mapping, Map<String, Entry> entries) {
+        this.mapping = mapping;
+        this.entries = entries;
+    }
+
+    /**
+     * Maps the given jar file, or returns {@code null} if it uses zip features that are not supported.
+     */
+    @Nullable
+    static MappedJar open(Path path) throws IOException {
+        final ByteBuffer mapping;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        try {
+            var entries = readCentralDirectory(mapping);
+            return entries == null ? null : new MappedJar(mapping, entries);
+        } catch (IndexOutOfBoundsException e) {
+            throw new ZipException("Invalid central directory in " + path);
+        }
+    }
+
+    @Nullable
+    private static Map<String, Entry> readCentralDirectory(ByteBuffer mapping) {
+        // The end of central directory record is followed by a comment of up to 65535 bytes
+        int eocd = -1;
+        for (int pos = mapping.limit() - EOCD_SIZE, min = Math.max(0, pos - 0xFFFF); pos >= min; pos--) {
+            if (mapping.getInt(pos) == EOCD_SIGNATURE) {
+                eocd = pos;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            return null;
+        }
+        int count = Short.toUnsignedInt(mapping.getShort(eocd + 10));
+        long offset = Integer.toUnsignedLong(mapping.getInt(eocd + 16));
+        if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+            // zip64
+            return null;
+        }
+
+        var entries = HashMap.<String, Entry>newHashMap(count);
+        int pos = (int) offset;
+        for (int i = 0; i < count; i++) {
+            if (mapping.getInt(pos) != CEN_SIGNATURE) {
+                return null;
+            }
+            int flags = Short.toUnsignedInt(mapping.getShort(pos + 8));
+            int method = Short.toUnsignedInt(mapping.getShort(pos + 10));
+            int compressedSize = mapping.getInt(pos + 20);
+            int size = mapping.getInt(pos + 24);
+            int nameLength = Short.toUnsignedInt(mapping.getShort(pos + 28));
+            int extraLength = Short.toUnsignedInt(mapping.getShort(pos + 30));
+            int commentLength = Short.toUnsignedInt(mapping.getShort(pos + 32));
+            int localHeaderOffset = mapping.getInt(pos + 42);
+            var nameBytes = new byte[nameLength];
+            mapping.get(pos + CEN_SIZE, nameBytes);
+            var name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            if (!name.endsWith("/")) {
+                // Sizes and offsets that do not fit into a signed int are either zip64 markers or too large anyway
+                if ((flags & 1) != 0 || (method != STORED && method != DEFLATED) || compressedSize < 0 || size < 0 || localHeaderOffset < 0) {
+                    return null;
+                }
+                // Like the zip file system, the last of several entries with the same name wins
+                entries.put(name, new Entry(method, compressedSize, size, localHeaderOffset));
+            }
+            pos += CEN_SIZE + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    /**
+     * {@return the uncompressed contents of the entry with the given name, or {@code null} if there is no such entry}
+     */
+    @Nullable
+    byte[] read(String name) throws IOException {
+        var entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            int loc = entry.localHeaderOffset();
+            if (mapping.getInt(loc) != LOC_SIGNATURE) {
+                throw new ZipException("Invalid local header for entry " + name);
+            }
+            // The local header can have a different extra field than the central directory
+            int dataOffset = loc + LOC_SIZE + Short.toUnsignedInt(mapping.getShort(loc + 26)) + Short.toUnsignedInt(mapping.getShort(loc + 28));
+            var bytes = new byte[entry.size()];
+            if (entry.method() == STORED) {
+                mapping.get(dataOffset, bytes);
+            } else {
+                inflate(mapping.slice(dataOffset, entry.compressedSize()), bytes, name);
+            }
+            return bytes;
+        } catch (IndexOutOfBoundsException e) {
+            throw new ZipException("Truncated entry " + name);
+        }
+    }
+
+    private static void inflate(ByteBuffer input, byte[] output, String name) throws ZipException {
+        var inflater = INFLATERS.poll();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        try {
+            inflater.setInput(input);
+            int read = 0;
+            while (read < output.length) {
+                int n = inflater.inflate(output, read, output.length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != output.length) {
+                throw new ZipException("Unexpected end of deflated entry " + name);
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid deflated entry " + name + ": " + e.getMessage());
+        } finally {
+            inflater.reset();
+            INFLATERS.offer(inflater);
+        }
+    }
+}
@@ -1,39 +1,48 @@
 package cpw.mods.niofs.union;
 
-import java.io.ByteArrayInputStream;
-import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.AccessMode;
+import java.nio.file.DirectoryIteratorException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileStore;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
+import java.nio.file.NotDirectoryException;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.UserPrincipalLookupService;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 import org.jetbrains.annotations.Nullable;
 
 public class UnionFileSystem extends FileSystem {
@@ -59,8 +68,7 @@ public class UnionFileSystem extends FileSystem {
 
     public InputStream buildInputStream(final UnionPath path) {
         try {
-            var bytes = Files.readAllBytes(path);
-            return new ByteArrayInputStream(bytes);
+            return newInputStream(path);
         } catch (IOException ioe) {
             throw new UncheckedIOException(ioe);
         }
@@ -95,11 +103,15 @@ public class UnionFileSystem extends FileSystem {
     private final UnionPath root = new UnionPath(this, "/");
     private final UnionFileSystemProvider provider;
     private final String key;
+    private final String rawKey;
     private final List<Path> basepaths;
     private final int lastElementIndex;
     @Nullable
     private final UnionPathFilter pathFilter;
     private final Map<Path, EmbeddedFileSystemMetadata> embeddedFileSystems;
+    // Entry index of each base path, in the same order as basepaths
+    private final BasePathIndex[] indexes;
+    private volatile boolean closed;
 
     public Path getPrimaryPath() {
         return basepaths.get(basepaths.size() - 1);
@@ -114,21 +126,36 @@ public class UnionFileSystem extends FileSystem {
         return this.key;
     }
 
+    /**
+     * {@return the key as it is escaped in the URIs of the paths of this file system}
+     */
+    String getRawKey() {
+        return this.rawKey;
+    }
+
     private record EmbeddedFileSystemMetadata(Path path, FileSystem fs, SeekableByteChannel fsCh) {}
 
     public UnionFileSystem(final UnionFileSystemProvider provider, @Nullable UnionPathFilter pathFilter, final String key, final Path... basepaths) {
         this.pathFilter = pathFilter;
         this.provider = provider;
         this.key = key;
+        try {
+            this.rawKey = new URI(provider.getScheme(), null, key, null).getRawPath();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
         this.basepaths = IntStream.range(0, basepaths.length)
                 .mapToObj(i -> basepaths[basepaths.length - i - 1])
                 .filter(Files::exists)
                 .toList(); // we flip the list so later elements are first in search order.
-        lastElementIndex = basepaths.length - 1;
+        lastElementIndex = this.basepaths.size() - 1;
         this.embeddedFileSystems = this.basepaths.stream().filter(path -> !Files.isDirectory(path))
                 .map(UnionFileSystem::openFileSystem)
                 .flatMap(Optional::stream)
                 .collect(Collectors.toMap(EmbeddedFileSystemMetadata::path, Function.identity()));
+        this.indexes = this.basepaths.stream()
+                .map(BasePathIndex::new)
+                .toArray(BasePathIndex[]::new);
     }
 
     private static Optional<EmbeddedFileSystemMetadata> openFileSystem(final Path path) {
@@ -153,6 +180,7 @@ public class UnionFileSystem extends FileSystem {
 
     @Override
     public void close() throws IOException {
+        closed = true;
         provider().removeFileSystem(this);
         IOException closeException = null;
         for (var embeddedFs : embeddedFileSystems.values()) {
@@ -173,7 +201,7 @@ public class UnionFileSystem extends FileSystem {
 
     @Override
     public boolean isOpen() {
-        return true;
+        return !closed;
     }
 
     @Override
@@ -216,10 +244,6 @@ public class UnionFileSystem extends FileSystem {
         return new UnionPath(this, first);
     }
 
-    private Path fastPath(final String... parts) {
-        return new UnionPath(this, false, parts);
-    }
-
     @Override
     public PathMatcher getPathMatcher(final String syntaxAndPattern) {
         throw new UnsupportedOperationException();
@@ -235,7 +259,10 @@ public class UnionFileSystem extends FileSystem {
         throw new UnsupportedOperationException();
     }
 
-    List<Path> getBasePaths() {
+    /**
+     * {@return the existing base paths of this file system, in search order} (the primary path is last)
+     */
+    public List<Path> getBasePaths() {
         return this.basepaths;
     }
 
@@ -283,22 +310,18 @@ public class UnionFileSystem extends FileSystem {
      *         or otherwise the last path, if this file system has at least one {@link #basepaths base path}
      */
     private Optional<Path> findFirstFiltered(final UnionPath unionPath) {
-        // Iterate the first base paths to try to find matching existing files
-        for (int i = 0; i < lastElementIndex; i++) {
-            final Path p = this.basepaths.get(i);
-            final Path realPath = toRealPath(p, unionPath);
-            // Test if the real path exists and matches the filter of this file system
-            if (testFilter(realPath, p, null)) {
-                if (fastPathExists(realPath)) {
-                    return Optional.of(realPath);
-                }
+        final String key = indexKey(unionPath);
+        // Iterate the base paths to try to find matching existing files, the index only contains entries matching the filter
+        for (int i = 0; i <= lastElementIndex; i++) {
+            if (indexes[i].contains(key)) {
+                return Optional.of(toRealPath(basepaths.get(i), key));
             }
         }
 
         // Otherwise, if we still haven't found an existing path, return the last possibility without checking its existence
         if (lastElementIndex >= 0) {
             final Path last = basepaths.get(lastElementIndex);
-            final Path realPath = toRealPath(last, unionPath);
+            final Path realPath = toRealPath(last, key);
             // We still care about the FS filter, but not about the existence of the real path
             if (testFilter(realPath, last, null)) {
                 return Optional.of(realPath);
@@ -320,13 +343,11 @@ public class UnionFileSystem extends FileSystem {
     @SuppressWarnings("unchecked")
     public <A extends BasicFileAttributes> A readAttributesIfExists(final UnionPath path, final Class<A> type, final LinkOption... options) throws IOException {
         if (type == BasicFileAttributes.class) {
-            // We need to run the test on the actual path,
-            for (Path base : this.basepaths) {
-                // We need to know the full path for the filter
-                final Path realPath = toRealPath(base, path);
-                final Optional<BasicFileAttributes> fileAttributes = this.getFileAttributes(realPath);
-                if (fileAttributes.isPresent() && testFilter(realPath, base, fileAttributes.get())) {
-                    return (A) fileAttributes.get();
+            final String key = indexKey(path);
+            for (BasePathIndex index : this.indexes) {
+                final BasicFileAttributes attrs = index.attributes(key);
+                if (attrs != null) {
+                    return (A) attrs;
                 }
             }
             return null;
@@ -336,16 +357,16 @@ public class UnionFileSystem extends FileSystem {
     }
 
     public void checkAccess(final UnionPath p, final AccessMode... modes) throws IOException {
+        if (modes.length == 0) {
+            if (!exists(p)) {
+                throw new NoSuchFileException(p.toString());
+            }
+            return;
+        }
         try {
             findFirstFiltered(p).ifPresentOrElse(path -> {
                 try {
-                    if (modes.length == 0) {
-                        if (!fastPathExists(path)) {
-                            throw new UncheckedIOException(new NoSuchFileException(p.toString()));
-                        }
-                    } else {
-                        path.getFileSystem().provider().checkAccess(path, modes);
-                    }
+                    path.getFileSystem().provider().checkAccess(path, modes);
                 } catch (IOException e) {
                     throw new UncheckedIOException(e);
                 }
@@ -358,12 +379,46 @@ public class UnionFileSystem extends FileSystem {
     }
 
     public boolean exists(final UnionPath p) {
-        return findFirstFiltered(p).map(UnionFileSystem::fastPathExists).orElse(false);
+        final String key = indexKey(p);
+        for (BasePathIndex index : this.indexes) {
+            if (index.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lists the files whose path starts with the given prefix, using the indexes of the base paths
+     * instead of walking the file system.
+     * <p>
+     * The paths are relative to the root and separated by {@code /}. They are sorted, and files that exist in
+     * several base paths are listed once. Directories are not listed.
+     * Directory base paths are indexed when files are first listed, so files added to them later are not listed.
+     */
+    public List<String> listFiles(final String prefix) {
+        if (indexes.length == 1) {
+            return indexes[0].listFiles(prefix);
+        }
+        var files = new TreeSet<String>();
+        for (BasePathIndex index : this.indexes) {
+            files.addAll(index.listFiles(prefix));
+        }
+        return List.copyOf(files);
+    }
+
+    /**
+     * {@return the normalized path of the given path relative to the root, as used by the base path indexes}
+     */
+    private String indexKey(final UnionPath path) {
+        return path.toEntryKey();
     }
 
     private Path toRealPath(final Path basePath, final UnionPath path) {
-        var embeddedpath = path.isAbsolute() ? this.root.relativize(path) : path;
-        var resolvepath = embeddedpath.normalize().toString();
+        return toRealPath(basePath, indexKey(path));
+    }
+
+    private Path toRealPath(final Path basePath, final String resolvepath) {
         var efsm = embeddedFileSystems.get(basePath);
         if (efsm != null) {
             return efsm.fs().getPath(resolvepath);
@@ -385,6 +440,18 @@ public class UnionFileSystem extends FileSystem {
         }
     }
 
+    /**
+     * Opens a stream that reads the file directly from the file system of its base path,
+     * without going through a channel or buffering the file.
+     */
+    public InputStream newInputStream(final UnionPath path) throws IOException {
+        var realPath = findFirstFiltered(path);
+        if (realPath.isEmpty()) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return Files.newInputStream(realPath.get());
+    }
+
     private SeekableByteChannel byteChannel(final Path path) {
         try {
             return Files.newByteChannel(path, StandardOpenOption.READ);
@@ -393,62 +460,56 @@ public class UnionFileSystem extends FileSystem {
         }
     }
 
+    /**
+     * Lists a directory from the indexes of the base paths. Entries are listed in the order of the base paths,
+     * and in the order of the directory within each base path. Entries that exist in several base paths
+     * are only listed for the first one.
+     */
     public DirectoryStream<Path> newDirStream(final UnionPath path, final DirectoryStream.Filter<? super Path> filter) throws IOException {
-        List<Closeable> closeables = new ArrayList<>(basepaths.size());
-        Stream<Path> stream = Stream.empty();
-        for (final var bp : basepaths) {
-            final var dir = toRealPath(bp, path);
-            if (!fastPathExists(dir)) {
+        final String key = indexKey(path);
+        List<String> names = null;
+        Set<String> seen = null;
+        for (BasePathIndex index : this.indexes) {
+            final List<String> children = index.listChildren(key, path);
+            if (children.isEmpty()) {
+                continue;
+            }
+            if (names == null) {
+                // Nothing to de-duplicate as long as only one base path contains the directory
+                names = children;
                 continue;
             }
-            final var ds = Files.newDirectoryStream(dir, filter);
-            closeables.add(ds);
-            final var currentPaths = StreamSupport.stream(ds.spliterator(), false)
-                    .filter(p -> testFilter(p, bp, null))
-                    .map(other -> path.resolve(fastPath(dir.relativize(other))));
-            stream = Stream.concat(stream, currentPaths);
-        }
-        final Stream<Path> realStream = stream.distinct();
+            if (seen == null) {
+                seen = new HashSet<>(names);
+                names = new ArrayList<>(names);
+            }
+            for (String name : children) {
+                if (seen.add(name)) {
+                    names.add(name);
+                }
+            }
+        }
+        final List<String> found = names != null ? names : List.of();
         return new DirectoryStream<>() {
             @Override
             public Iterator<Path> iterator() {
-                return realStream.iterator();
+                return found.stream()
+                        .<Path>map(path::resolveCanonical)
+                        .filter(entry -> {
+                            try {
+                                return filter.accept(entry);
+                            } catch (IOException e) {
+                                throw new DirectoryIteratorException(e);
+                            }
+                        })
+                        .iterator();
             }
 
             @Override
-            public void close() throws IOException {
-                List<IOException> exceptions = new ArrayList<>();
-
-                for (Closeable closeable : closeables) {
-                    try {
-                        closeable.close();
-                    } catch (IOException e) {
-                        exceptions.add(e);
-                    }
-                }
-
-                if (!exceptions.isEmpty()) {
-                    IOException aggregate = new IOException("Failed to close some streams in UnionFileSystem.newDirStream");
-                    exceptions.forEach(aggregate::addSuppressed);
-                    throw aggregate;
-                }
-            }
+            public void close() {}
         };
     }
 
-    /**
-     * Create a relative UnionPath from the path elements of the given {@link Path}.
-     */
-    private Path fastPath(Path pathToConvert) {
-        String[] parts = new String[pathToConvert.getNameCount()];
-
-        for (int i = 0; i < parts.length; i++) {
-            parts[i] = pathToConvert.getName(i).toString();
-        }
-
-        return fastPath(parts);
-    }
-
     /*
      * Standardize paths:
      * Path separators converted to /
@@ -470,4 +531,211 @@ public class UnionFileSystem extends FileSystem {
             sPath = sPath.substring(1);
         return pathFilter.test(sPath, basePath);
     }
+
+    /**
+     * Index of the names of the entries of a single base path that match the {@link #pathFilter filter},
+     * as their normalized path relative to the base path. Only the names are kept, split into sorted arrays of
+     * files and directories together with their position in the walk of the base path, so that directories are
+     * listed in their own order. Attributes are read from the base path when they are requested.
+     * <p>
+     * Jars cannot change while they are open, so their index is built once on first use and is authoritative.
+     * Directories can change at any time, so lookups in them always go to the file system. Their index is only
+     * built to list files, once, so listed files are those that existed when files were first listed.
+     */
+    private final class BasePathIndex {
+        private final Path basePath;
+        private final boolean directory;
+        // Built on first use
+        @Nullable
+        private volatile Entries entries;
+
+        /**
+         * The sorted keys of the files and directories, and the position of each key in the walk of the base path.
+         */
+        private record Entries(String[] files, int[] fileOrder, String[] directories, int[] directoryOrder) {}
+
+        private BasePathIndex(final Path basePath) {
+            this.basePath = basePath;
+            this.directory = Files.isDirectory(basePath);
+        }
+
+        /**
+         * {@return whether the entry with the given key exists and is not filtered out}
+         */
+        boolean contains(final String key) {
+            if (!directory) {
+                final Entries entries = entries();
+                return Arrays.binarySearch(entries.files(), key) >= 0 || Arrays.binarySearch(entries.directories(), key) >= 0;
+            }
+            return directoryAttributes(key) != null;
+        }
+
+        /**
+         * {@return the attributes of the entry with the given key, or {@code null} if it does not exist or is filtered out}
+         */
+        @Nullable
+        BasicFileAttributes attributes(final String key) {
+            if (!directory) {
+                return contains(key) ? getFileAttributes(toRealPath(basePath, key)).orElse(null) : null;
+            }
+            return directoryAttributes(key);
+        }
+
+        @Nullable
+        private BasicFileAttributes directoryAttributes(final String key) {
+            // Files may have been added, modified or deleted since the directory was indexed
+            final Path realPath = toRealPath(basePath, key);
+            final BasicFileAttributes attrs = getFileAttributes(realPath).orElse(null);
+            if (attrs == null || !testFilter(realPath, basePath, attrs)) {
+                return null;
+            }
+            return attrs;
+        }
+
+        /**
+         * {@return the names of the children of the directory with the given key, or an empty list if this
+         * base path does not contain the directory}
+         */
+        List<String> listChildren(final String key, final UnionPath path) throws IOException {
+            if (directory) {
+                // Directories are listed directly, since files may have been added since they were indexed
+                final Path dir = toRealPath(basePath, key);
+                if (!fastPathExists(dir)) {
+                    return List.of();
+                }
+                final List<String> names = new ArrayList<>();
+                try (var stream = Files.newDirectoryStream(dir)) {
+                    for (Path child : stream) {
+                        final String name = child.getFileName().toString();
+                        if (contains(key.isEmpty() ? name : key + SEP_STRING + name)) {
+                            names.add(name);
+                        }
+                    }
+                }
+                return names;
+            }
+            final Entries entries = entries();
+            if (Arrays.binarySearch(entries.files(), key) >= 0) {
+                throw new NotDirectoryException(path.toString());
+            }
+            final String prefix = key.isEmpty() ? "" : key + SEP_STRING;
+            final List<Child> children = new ArrayList<>();
+            addChildren(entries.files(), entries.fileOrder(), prefix, children);
+            addChildren(entries.directories(), entries.directoryOrder(), prefix, children);
+            // List the children in the order of the directory, like the file system of the base path does
+            children.sort(null);
+            final List<String> names = new ArrayList<>(children.size());
+            for (Child child : children) {
+                names.add(child.name());
+            }
+            return names;
+        }
+
+        private record Child(int order, String name) implements Comparable<Child> {
+            @Override
+            public int compareTo(final Child other) {
+                return Integer.compare(order, other.order);
+            }
+        }
+
+        private static void addChildren(final String[] keys, final int[] order, final String prefix, final List<Child> children) {
+            for (int i = startOf(keys, prefix); i < keys.length && keys[i].startsWith(prefix); i++) {
+                final String name = keys[i].substring(prefix.length());
+                // Skip the directory itself and entries of its subdirectories
+                if (!name.isEmpty() && name.indexOf('/') < 0) {
+                    children.add(new Child(order[i], name));
+                }
+            }
+        }
+
+        /**
+         * {@return the sorted keys of the files whose key starts with the given prefix}
+         */
+        List<String> listFiles(final String prefix) {
+            final String[] files = entries().files();
+            final int from = startOf(files, prefix);
+            int to = from;
+            while (to < files.length && files[to].startsWith(prefix)) {
+                to++;
+            }
+            return Collections.unmodifiableList(Arrays.asList(files).subList(from, to));
+        }
+
+        /**
+         * {@return the index of the first key in the given sorted keys that is not less than the given prefix}
+         */
+        private static int startOf(final String[] keys, final String prefix) {
+            final int index = Arrays.binarySearch(keys, prefix);
+            return index < 0 ? -index - 1 : index;
+        }
+
+        private Entries entries() {
+            var entries = this.entries;
+            if (entries == null) {
+                synchronized (this) {
+                    entries = this.entries;
+                    if (entries == null) {
+                        this.entries = entries = build();
+                    }
+                }
+            }
+            return entries;
+        }
+
+        private Entries build() {
+            final var efsm = embeddedFileSystems.get(basePath);
+            final Path indexRoot = efsm != null ? efsm.fs().getPath(SEP_STRING) : basePath;
+            // Keys in the order of the walk, so that directories can be listed in their own order
+            final List<String> walked = new ArrayList<>();
+            final BitSet walkedDirectories = new BitSet();
+            try {
+                Files.walkFileTree(indexRoot, directory ? EnumSet.of(FileVisitOption.FOLLOW_LINKS) : EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+                        add(dir, attrs);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                        add(file, attrs);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+                        // Unreadable entries are treated as missing, just like getFileAttributes does
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    private void add(final Path path, final BasicFileAttributes attrs) {
+                        if (testFilter(path, basePath, attrs)) {
+                            walkedDirectories.set(walked.size(), attrs.isDirectory());
+                            walked.add(indexRoot.relativize(path).toString().replace('\\', '/'));
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to index base path " + basePath, e);
+            }
+            final int[] fileOrder = sortedPositions(walked, IntStream.range(0, walked.size()).filter(i -> !walkedDirectories.get(i)));
+            final int[] directoryOrder = sortedPositions(walked, walkedDirectories.stream());
+            return new Entries(keysAt(walked, fileOrder), fileOrder, keysAt(walked, directoryOrder), directoryOrder);
+        }
+
+        /**
+         * {@return the given positions in the walk, sorted by their key}
+         */
+        private static int[] sortedPositions(final List<String> walked, final IntStream positions) {
+            return positions.boxed().sorted(Comparator.comparing(walked::get)).mapToInt(Integer::intValue).toArray();
+        }
+
+        private static String[] keysAt(final List<String> walked, final int[] positions) {
+            final String[] keys = new String[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                keys[i] = walked.get(positions[i]);
+            }
+            return keys;
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package cpw.mods.niofs.union;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -23,16 +24,20 @@ import java.nio.file.attribute.FileAttributeView;
 import java.nio.file.attribute.FileTime;
 import java.nio.file.spi.FileSystemProvider;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 import org.jetbrains.annotations.Nullable;
 
 public class UnionFileSystemProvider extends FileSystemProvider {
-    private final Map<String, UnionFileSystem> fileSystems = new HashMap<>();
-    private int index = 0;
+    private final Map<String, UnionFileSystem> fileSystems = new ConcurrentHashMap<>();
+    // File systems by the raw, still escaped, key in their URIs, so that resolving a URI does not need to decode it.
+    // Only holds the raw key of each file system, see UnionFileSystem.getRawKey()
+    private final Map<String, UnionFileSystem> fileSystemsByRawKey = new ConcurrentHashMap<>();
+    private final AtomicInteger index = new AtomicInteger();
 
     @Override
     public String getScheme() {
@@ -129,33 +134,49 @@ public class UnionFileSystemProvider extends FileSystemProvider {
                 .map(Path::normalize)
                 .toArray(Path[]::new);
 
-        synchronized (fileSystems) {
-            var ufs = new UnionFileSystem(this, pathfilter, key, normpaths);
-            fileSystems.put(key, ufs);
-            return ufs;
-        }
+        var ufs = new UnionFileSystem(this, pathfilter, key, normpaths);
+        fileSystems.put(key, ufs);
+        fileSystemsByRawKey.put(ufs.getRawKey(), ufs);
+        return ufs;
     }
 
-    private synchronized String makeKey(Path path) {
+    private String makeKey(Path path) {
         var key = (path instanceof UnionPath p) ? p.getFileSystem().getKey() : path.toAbsolutePath().normalize().toUri().getPath();
-        return key.replace('!', '_') + "#" + index++;
+        // Keys are unique, so a file system can never be replaced by another one with the same key
+        return key.replace('!', '_') + "#" + index.getAndIncrement();
     }
 
     @Override
     public Path getPath(final URI uri) {
-        var parts = uri.getPath().split("!");
-        if (parts.length > 1) {
-            return getFileSystem(uri).getPath(parts[1]);
-        } else {
-            return ((UnionFileSystem) getFileSystem(uri)).getRoot();
+        var fs = getFileSystem(uri);
+        var rawPath = uri.getRawPath();
+        int sep = rawPath.indexOf('!');
+        if (sep < 0) {
+            return fs.getRoot();
         }
+        // Only decode the path if the entry contains escaped characters
+        var path = rawPath.indexOf('%', sep) >= 0 ? uri.getPath() : rawPath;
+        sep = path.indexOf('!');
+        int end = path.indexOf('!', sep + 1);
+        var entry = path.substring(sep + 1, end >= 0 ? end : path.length());
+        return entry.isEmpty() ? fs.getRoot() : fs.getPath(entry);
     }
 
     @Override
-    public FileSystem getFileSystem(final URI uri) {
-        var parts = uri.getPath().split("!");
-        if (!fileSystems.containsKey(parts[0])) throw new FileSystemNotFoundException();
-        return fileSystems.get(parts[0]);
+    public UnionFileSystem getFileSystem(final URI uri) {
+        var rawPath = uri.getRawPath();
+        int sep = rawPath.indexOf('!');
+        var rawKey = sep >= 0 ? rawPath.substring(0, sep) : rawPath;
+        var fs = fileSystemsByRawKey.get(rawKey);
+        if (fs != null) {
+            return fs;
+        }
+        // The URI escapes the key differently than the file system does
+        var path = uri.getPath();
+        sep = path.indexOf('!');
+        fs = fileSystems.get(sep >= 0 ? path.substring(0, sep) : path);
+        if (fs == null) throw new FileSystemNotFoundException();
+        return fs;
     }
 
     @Override
@@ -168,6 +189,17 @@ public class UnionFileSystemProvider extends FileSystemProvider {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public InputStream newInputStream(final Path path, final OpenOption... options) throws IOException {
+        if (path instanceof UnionPath up) {
+            for (var option : options) {
+                if (option != StandardOpenOption.READ) throw new UnsupportedOperationException();
+            }
+            return up.getFileSystem().newInputStream(up);
+        }
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public DirectoryStream<Path> newDirectoryStream(final Path dir, final DirectoryStream.Filter<? super Path> filter) throws IOException {
         if (dir instanceof UnionPath up) {
@@ -262,9 +294,8 @@ public class UnionFileSystemProvider extends FileSystemProvider {
     }
 
     void removeFileSystem(UnionFileSystem fs) {
-        synchronized (fileSystems) {
-            fileSystems.remove(fs.getKey());
-        }
+        fileSystems.remove(fs.getKey(), fs);
+        fileSystemsByRawKey.remove(fs.getRawKey(), fs);
     }
 
     private class UnionBasicFileAttributeView implements BasicFileAttributeView {
@@ -9,28 +9,39 @@ import java.nio.file.Path;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Deque;
-import java.util.List;
 import java.util.Objects;
-import java.util.function.IntBinaryOperator;
-import java.util.stream.IntStream;
 
+/**
+ * A path in a {@link UnionFileSystem}.
+ * <p>
+ * The path is stored as a single string in its canonical form, which is also what {@link #toString()} returns,
+ * together with the offsets at which its names start. The names themselves are only created when asked for,
+ * and the offsets are shared between a path and its parents.
+ */
 public class UnionPath implements Path {
+    private static final int[] NO_OFFSETS = new int[0];
+    private static final int[] SINGLE_NAME_OFFSETS = { 0 };
+
     private final UnionFileSystem fileSystem;
     private final boolean absolute;
-    private final String[] pathParts;
+    // The canonical form of the path: separated by single slashes, starting with one if absolute, and never ending with one
+    private final String path;
+    // The start of every name in the path, only the first nameCount entries belong to this path
+    private final int[] offsets;
+    private final int nameCount;
+    private int hash;
 
     // Store the normalized path after it has been created first
     private UnionPath normalized;
+    // The normalized path relative to the root, as used to look up entries
+    private String entryKey;
 
     UnionPath(final UnionFileSystem fileSystem, final String... pathParts) {
         this.fileSystem = fileSystem;
-        if (pathParts.length == 0) {
-            this.absolute = false;
-            this.pathParts = new String[0];
+        final String longstring;
+        if (pathParts.length == 1) {
+            longstring = pathParts[0];
         } else {
             StringBuilder joiner = new StringBuilder();
             for (int i = 0; i < pathParts.length; i++) {
@@ -40,45 +51,112 @@ public class UnionPath implements Path {
                     if (i < pathParts.length - 1) joiner.append(UnionFileSystem.SEP_STRING);
                 }
             }
-            final var longstring = joiner.toString();
-            this.absolute = longstring.startsWith(UnionFileSystem.SEP_STRING);
-            this.pathParts = getPathParts(longstring);
+            longstring = joiner.toString();
         }
-        this.normalized = null;
-    }
-
-    // Private constructor only for known correct split and extra value for absolute
-    UnionPath(final UnionFileSystem fileSystem, boolean absolute, final String... pathParts) {
-        this(fileSystem, absolute, false, pathParts);
+        this.absolute = longstring.startsWith(UnionFileSystem.SEP_STRING);
+        this.path = canonicalize(longstring, this.absolute);
+        this.offsets = findOffsets(this.path, this.absolute);
+        this.nameCount = this.offsets.length;
     }
 
-    private UnionPath(final UnionFileSystem fileSystem, boolean absolute, boolean isNormalized, final String... pathParts) {
+    private UnionPath(final UnionFileSystem fileSystem, boolean absolute, String path, int[] offsets, int nameCount) {
         this.fileSystem = fileSystem;
         this.absolute = absolute;
-        this.pathParts = pathParts;
-        if (isNormalized)
-            this.normalized = this;
-        else
-            this.normalized = null;
-    }
-
-    private String[] getPathParts(final String longstring) {
-        var clean = longstring.replace('\\', '/');
-        int startIndex = 0;
-        List<String> parts = new ArrayList<>();
-        while (startIndex != longstring.length()) {
-            int index = clean.indexOf('/', startIndex);
-            if (index == -1) {
-                parts.add(clean.substring(startIndex));
-                break;
-            }
-            // Skips double slash and slash and start/end
-            if (index != startIndex) {
-                parts.add(clean.substring(startIndex, index));
+        this.path = path;
+        this.offsets = offsets;
+        this.nameCount = nameCount;
+    }
+
+    /**
+     * Creates a path in this file system from a string that is already in canonical form.
+     */
+    private UnionPath canonicalPath(boolean absolute, String path) {
+        var pathOffsets = findOffsets(path, absolute);
+        return new UnionPath(this.fileSystem, absolute, path, pathOffsets, pathOffsets.length);
+    }
+
+    /**
+     * {@return the given path with backslashes replaced, duplicate and trailing separators removed,
+     * and a leading separator only if it is absolute}
+     */
+    private static String canonicalize(final String path, boolean absolute) {
+        boolean canonical = path.indexOf('\\') < 0 && path.indexOf("//") < 0
+                && (path.length() <= 1 || !path.endsWith(UnionFileSystem.SEP_STRING))
+                && (absolute || !path.startsWith(UnionFileSystem.SEP_STRING));
+        if (canonical) {
+            return path;
+        }
+        var builder = new StringBuilder(path.length());
+        if (absolute) {
+            builder.append('/');
+        }
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '\\' || c == '/') {
+                if (builder.length() > 0 && builder.charAt(builder.length() - 1) != '/') {
+                    builder.append('/');
+                }
+            } else {
+                builder.append(c);
             }
-            startIndex = (index + 1);
         }
-        return parts.toArray(String[]::new);
+        if (builder.length() > 1 && builder.charAt(builder.length() - 1) == '/') {
+            builder.setLength(builder.length() - 1);
+        }
+        return builder.toString();
+    }
+
+    private static int[] findOffsets(final String path, boolean absolute) {
+        int start = absolute ? 1 : 0;
+        if (path.length() <= start) {
+            return NO_OFFSETS;
+        }
+        if (start == 0 && path.indexOf('/') < 0) {
+            return SINGLE_NAME_OFFSETS;
+        }
+        int count = 1;
+        for (int i = start; i < path.length(); i++) {
+            if (path.charAt(i) == '/') count++;
+        }
+        var result = new int[count];
+        result[0] = start;
+        int name = 1;
+        for (int i = start; i < path.length(); i++) {
+            if (path.charAt(i) == '/') result[name++] = i + 1;
+        }
+        return result;
+    }
+
+    private int nameStart(int index) {
+        return this.offsets[index];
+    }
+
+    private int nameEnd(int index) {
+        return index + 1 < this.nameCount ? this.offsets[index + 1] - 1 : this.path.length();
+    }
+
+    private int nameLength(int index) {
+        return nameEnd(index) - nameStart(index);
+    }
+
+    private boolean nameEquals(int index, UnionPath other, int otherIndex) {
+        int length = nameLength(index);
+        return length == other.nameLength(otherIndex) && this.path.regionMatches(nameStart(index), other.path, other.nameStart(otherIndex), length);
+    }
+
+    private boolean nameEquals(int index, String name) {
+        return nameLength(index) == name.length() && this.path.startsWith(name, nameStart(index));
+    }
+
+    private UnionPath singleName(int index) {
+        if (!this.absolute && this.nameCount == 1) {
+            return this;
+        }
+        return new UnionPath(this.fileSystem, false, this.path.substring(nameStart(index), nameEnd(index)), SINGLE_NAME_OFFSETS, 1);
+    }
+
+    private UnionPath emptyPath(boolean absolute) {
+        return new UnionPath(this.fileSystem, absolute, absolute ? UnionFileSystem.SEP_STRING : "", NO_OFFSETS, 0);
     }
 
     @Override
@@ -102,20 +180,22 @@ public class UnionPath implements Path {
 
     @Override
     public Path getFileName() {
-        if (this.pathParts.length > 0) {
-            return new UnionPath(this.getFileSystem(), false, this.pathParts[this.pathParts.length - 1]);
+        if (this.nameCount > 0) {
+            return singleName(this.nameCount - 1);
         } else {
             // normally would be null for the empty absolute path and empty string for the empty relative
             // path. But again, very much stuff relies on it and there's no current directory for union
             // paths, so it does not really matter.
-            return new UnionPath(this.fileSystem, false);
+            return emptyPath(false);
         }
     }
 
     @Override
     public Path getParent() {
-        if (this.pathParts.length > 0) {
-            return new UnionPath(this.fileSystem, this.absolute, Arrays.copyOf(this.pathParts, this.pathParts.length - 1));
+        if (this.nameCount > 1) {
+            return new UnionPath(this.fileSystem, this.absolute, this.path.substring(0, nameStart(this.nameCount - 1) - 1), this.offsets, this.nameCount - 1);
+        } else if (this.nameCount == 1) {
+            return emptyPath(this.absolute);
         } else {
             return null;
         }
@@ -123,26 +203,34 @@ public class UnionPath implements Path {
 
     @Override
     public int getNameCount() {
-        return this.pathParts.length;
+        return this.nameCount;
     }
 
     @Override
     public Path getName(final int index) {
-        if (index < 0 || index > this.pathParts.length - 1) throw new IllegalArgumentException();
-        return new UnionPath(this.fileSystem, false, this.pathParts[index]);
+        if (index < 0 || index > this.nameCount - 1) throw new IllegalArgumentException();
+        return singleName(index);
     }
 
     @Override
     public UnionPath subpath(final int beginIndex, final int endIndex) {
-        if (!this.absolute && this.pathParts.length == 0 && beginIndex == 0 && endIndex == 1)
-            return new UnionPath(this.fileSystem, false);
-        if (beginIndex < 0 || beginIndex > this.pathParts.length - 1 || endIndex < 0 || endIndex > this.pathParts.length || beginIndex >= endIndex) {
-            throw new IllegalArgumentException("Out of range " + beginIndex + " to " + endIndex + " for length " + this.pathParts.length);
+        if (!this.absolute && this.nameCount == 0 && beginIndex == 0 && endIndex == 1)
+            return emptyPath(false);
+        if (beginIndex < 0 || beginIndex > this.nameCount - 1 || endIndex < 0 || endIndex > this.nameCount || beginIndex >= endIndex) {
+            throw new IllegalArgumentException("Out of range " + beginIndex + " to " + endIndex + " for length " + this.nameCount);
         }
-        if (!this.absolute && beginIndex == 0 && endIndex == this.pathParts.length) {
+        if (!this.absolute && beginIndex == 0 && endIndex == this.nameCount) {
             return this;
         }
-        return new UnionPath(this.fileSystem, false, Arrays.copyOfRange(this.pathParts, beginIndex, endIndex));
+        var subpath = this.path.substring(nameStart(beginIndex), nameEnd(endIndex - 1));
+        if (!this.absolute && beginIndex == 0) {
+            return new UnionPath(this.fileSystem, false, subpath, this.offsets, endIndex);
+        }
+        var suboffsets = new int[endIndex - beginIndex];
+        for (int i = 0; i < suboffsets.length; i++) {
+            suboffsets[i] = this.offsets[beginIndex + i] - this.offsets[beginIndex];
+        }
+        return new UnionPath(this.fileSystem, false, subpath, suboffsets, suboffsets.length);
     }
 
     @Override
@@ -153,7 +241,12 @@ public class UnionPath implements Path {
         if (other instanceof UnionPath bp) {
             if (this.absolute != bp.absolute)
                 return false;
-            return checkArraysMatch(this.pathParts, bp.pathParts, false);
+            var length = Math.min(this.nameCount, bp.nameCount);
+            for (int i = 0; i < length; i++) {
+                if (!nameEquals(i, bp, i))
+                    return false;
+            }
+            return true;
         }
         return false;
     }
@@ -166,61 +259,104 @@ public class UnionPath implements Path {
         if (other instanceof UnionPath bp) {
             if (!this.absolute && bp.absolute)
                 return false;
-            return checkArraysMatch(this.pathParts, bp.pathParts, true);
+            var length = Math.min(this.nameCount, bp.nameCount);
+            for (int i = 0; i < length; i++) {
+                if (!nameEquals(this.nameCount - i - 1, bp, bp.nameCount - i - 1))
+                    return false;
+            }
+            return true;
         }
         return false;
     }
 
-    private static boolean checkArraysMatch(String[] array1, String[] array2, boolean reverse) {
-        var length = Math.min(array1.length, array2.length);
-        IntBinaryOperator offset = reverse ? (l, i) -> l - i - 1 : (l, i) -> i;
-        for (int i = 0; i < length; i++) {
-            if (!Objects.equals(array1[offset.applyAsInt(array1.length, i)], array2[offset.applyAsInt(array2.length, i)]))
-                return false;
-        }
-        return true;
-    }
-
     @Override
     public Path normalize() {
         if (normalized != null)
             return normalized;
-        Deque<String> normpath = new ArrayDeque<>();
-        for (String pathPart : this.pathParts) {
-            switch (pathPart) {
-                case ".":
-                    break;
-                case "..":
-                    if (normpath.isEmpty() || normpath.getLast().equals("..")) {
-                        // .. on an empty path is allowed, so keep it
-                        normpath.addLast(pathPart);
-                    } else {
-                        normpath.removeLast();
-                    }
-                    break;
-                default:
-                    normpath.addLast(pathPart);
-                    break;
+        boolean hasDots = false;
+        for (int i = 0; i < this.nameCount && !hasDots; i++) {
+            hasDots = nameEquals(i, ".") || nameEquals(i, "..");
+        }
+        if (!hasDots) {
+            normalized = this;
+            return this;
+        }
+        // Indexes of the names that remain
+        int[] normpath = new int[this.nameCount];
+        int size = 0;
+        for (int i = 0; i < this.nameCount; i++) {
+            if (nameEquals(i, ".")) {
+                continue;
             }
+            if (nameEquals(i, "..")) {
+                if (size == 0 || nameEquals(normpath[size - 1], "..")) {
+                    // .. on an empty path is allowed, so keep it
+                    normpath[size++] = i;
+                } else {
+                    size--;
+                }
+            } else {
+                normpath[size++] = i;
+            }
+        }
+        var builder = new StringBuilder(this.path.length());
+        if (this.absolute) {
+            builder.append('/');
         }
-        normalized = new UnionPath(this.fileSystem, this.absolute, true, normpath.toArray(new String[0]));
+        for (int i = 0; i < size; i++) {
+            if (i > 0) builder.append('/');
+            builder.append(this.path, nameStart(normpath[i]), nameEnd(normpath[i]));
+        }
+        var result = canonicalPath(this.absolute, builder.toString());
+        result.normalized = result;
+        normalized = result;
         return normalized;
     }
 
+    /**
+     * {@return the normalized form of this path relative to the root of the file system, as a string}
+     */
+    String toEntryKey() {
+        if (entryKey == null) {
+            var norm = (UnionPath) normalize();
+            entryKey = norm.absolute ? norm.path.substring(1) : norm.path;
+        }
+        return entryKey;
+    }
+
     @Override
     public Path resolve(final Path other) {
         if (other instanceof UnionPath path) {
             if (path.isAbsolute()) {
                 return path;
             }
-            String[] mergedParts = new String[this.pathParts.length + path.pathParts.length];
-            System.arraycopy(this.pathParts, 0, mergedParts, 0, this.pathParts.length);
-            System.arraycopy(path.pathParts, 0, mergedParts, this.pathParts.length, path.pathParts.length);
-            return new UnionPath(this.fileSystem, this.absolute, mergedParts);
+            if (path.nameCount == 0) {
+                return this;
+            }
+            if (this.nameCount == 0) {
+                return this.absolute ? canonicalPath(true, UnionFileSystem.SEP_STRING + path.path) : path;
+            }
+            var merged = this.path + '/' + path.path;
+            var mergedOffsets = Arrays.copyOf(this.offsets, this.nameCount + path.nameCount);
+            int shift = this.path.length() + 1;
+            for (int i = 0; i < path.nameCount; i++) {
+                mergedOffsets[this.nameCount + i] = path.offsets[i] + shift;
+            }
+            return new UnionPath(this.fileSystem, this.absolute, merged, mergedOffsets, mergedOffsets.length);
         }
         return other;
     }
 
+    /**
+     * {@return this path resolved against the given relative path string, which must already be in canonical form}
+     */
+    UnionPath resolveCanonical(final String other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        return canonicalPath(this.absolute, this.nameCount == 0 ? this.path + other : this.path + '/' + other);
+    }
+
     @Override
     public Path relativize(final Path other) {
         if (other.getFileSystem() != this.getFileSystem()) throw new IllegalArgumentException("Wrong filesystem");
@@ -232,30 +368,29 @@ public class UnionPath implements Path {
                 // so we just allow this.
                 //throw new IllegalArgumentException("Different types of path");
             }
-            var length = Math.min(this.pathParts.length, p.pathParts.length);
+            var length = Math.min(this.nameCount, p.nameCount);
             int i = 0;
             while (i < length) {
-                if (!Objects.equals(this.pathParts[i], p.pathParts[i]))
+                if (!nameEquals(i, p, i))
                     break;
                 i++;
             }
 
-            var remaining = this.pathParts.length - i;
-            if (remaining == 0 && i == p.pathParts.length) {
-                return new UnionPath(this.getFileSystem(), false);
+            var remaining = this.nameCount - i;
+            if (remaining == 0 && i == p.nameCount) {
+                return emptyPath(false);
             } else if (remaining == 0) {
                 return p.subpath(i, p.getNameCount());
             } else {
-                var updots = IntStream.range(0, remaining).mapToObj(idx -> "..").toArray(String[]::new);
-                if (i == p.pathParts.length) {
-                    return new UnionPath(this.getFileSystem(), false, updots);
-                } else {
-                    var subpath = p.subpath(i, p.getNameCount());
-                    String[] mergedParts = new String[updots.length + subpath.pathParts.length];
-                    System.arraycopy(updots, 0, mergedParts, 0, updots.length);
-                    System.arraycopy(subpath.pathParts, 0, mergedParts, updots.length, subpath.pathParts.length);
-                    return new UnionPath(this.getFileSystem(), false, mergedParts);
+                var builder = new StringBuilder();
+                for (int up = 0; up < remaining; up++) {
+                    if (up > 0) builder.append('/');
+                    builder.append("..");
                 }
+                if (i < p.nameCount) {
+                    builder.append('/').append(p.path, p.nameStart(i), p.path.length());
+                }
+                return canonicalPath(false, builder.toString());
             }
         }
         throw new IllegalArgumentException("Wrong filesystem");
@@ -299,29 +434,51 @@ public class UnionPath implements Path {
                 return 1;
             else if (!this.absolute && path.absolute)
                 return -1;
-            else
-                return Arrays.compare(this.pathParts, path.pathParts);
+            var length = Math.min(this.nameCount, path.nameCount);
+            for (int i = 0; i < length; i++) {
+                int result = compareNames(i, path, i);
+                if (result != 0)
+                    return result;
+            }
+            return this.nameCount - path.nameCount;
         } else {
             return 0;
         }
     }
 
+    private int compareNames(int index, UnionPath other, int otherIndex) {
+        int start = nameStart(index), otherStart = other.nameStart(otherIndex);
+        int length = nameLength(index), otherLength = other.nameLength(otherIndex);
+        int common = Math.min(length, otherLength);
+        for (int i = 0; i < common; i++) {
+            int diff = this.path.charAt(start + i) - other.path.charAt(otherStart + i);
+            if (diff != 0)
+                return diff;
+        }
+        return length - otherLength;
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (o instanceof UnionPath p) {
-            return p.getFileSystem() == this.getFileSystem() && this.absolute == p.absolute && Arrays.equals(this.pathParts, p.pathParts);
+            return p.getFileSystem() == this.getFileSystem() && this.absolute == p.absolute && this.path.equals(p.path);
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(this.fileSystem) + 31 * Arrays.hashCode(this.pathParts);
+        int h = hash;
+        if (h == 0) {
+            h = Objects.hashCode(this.fileSystem) + 31 * this.path.hashCode();
+            hash = h;
+        }
+        return h;
     }
 
     @Override
     public String toString() {
-        return (this.absolute ? UnionFileSystem.SEP_STRING : "") + String.join(UnionFileSystem.SEP_STRING, this.pathParts);
+        return this.path;
     }
 
     public InputStream buildInputStream() {
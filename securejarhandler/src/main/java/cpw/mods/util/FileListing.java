@@ -0,0 +1,42 @@
+package cpw.mods.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Lists files by walking a directory or jar, for contents that have no index of their own.
+ */
+public final class FileListing {
+    private FileListing() {}
+
+    /**
+     * Lists the regular files below the given directory or jar file whose name starts with the given prefix.
+     * The names are relative to the root of the directory or jar, separated by {@code /}, and sorted.
+     */
+    public static List<String> list(final Path location, final String prefix) {
+        try {
+            if (Files.isDirectory(location)) {
+                return walk(location, prefix);
+            }
+            try (var fs = FileSystems.newFileSystem(location)) {
+                return walk(fs.getPath("/"), prefix);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list the files of " + location, e);
+        }
+    }
+
+    private static List<String> walk(final Path root, final String prefix) throws IOException {
+        try (var walk = Files.walk(root)) {
+            return walk.filter(Files::isRegularFile)
+                    .map(path -> root.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/"))
+                    .filter(name -> name.startsWith(prefix))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package cpw.mods.cl.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cpw.mods.cl.UnionURLConnection;
+import cpw.mods.cl.UnionURLStreamHandler;
+import cpw.mods.niofs.union.UnionFileSystemProvider;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestUnionURLConnection {
+    private static final UnionFileSystemProvider UFSP = (UnionFileSystemProvider) FileSystemProvider.installedProviders().stream().filter(fsp -> fsp.getScheme().equals("union")).findFirst().orElseThrow(() -> new IllegalStateException("Couldn't find UnionFileSystemProvider"));
+    private static final UnionURLStreamHandler HANDLER = new UnionURLStreamHandler();
+    private static final URLStreamHandler STREAM_HANDLER = new URLStreamHandler() {
+        @Override
+        protected URLConnection openConnection(URL u) {
+            return HANDLER.openConnection(u);
+        }
+    };
+
+    @TempDir
+    Path tempDir;
+
+    private static URL toUrl(Path path) throws IOException {
+        return URL.of(path.toUri(), STREAM_HANDLER);
+    }
+
+    @Test
+    public void testContentLengthAndLastModified() throws IOException {
+        var file = Files.writeString(tempDir.resolve("file.txt"), "some content");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000_000_000L));
+        var ufs = UFSP.newFileSystem((path, base) -> true, tempDir);
+
+        var connection = (UnionURLConnection) toUrl(ufs.getPath("file.txt")).openConnection();
+        assertEquals(12, connection.getContentLength());
+        assertEquals(12, connection.getContentLengthLong());
+        assertEquals(1_000_000_000_000L, connection.getLastModified());
+        try (var in = connection.getInputStream()) {
+            assertEquals("some content", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(ufs.getPath("/file.txt"), connection.getPath());
+
+        // Missing entries have no content length and cannot be read
+        var missing = toUrl(ufs.getPath("missing.txt")).openConnection();
+        assertEquals(-1, missing.getContentLength());
+        assertEquals(0, missing.getLastModified());
+        assertThrows(NoSuchFileException.class, missing::getInputStream);
+        ufs.close();
+    }
+
+    @Test
+    public void testEscapedEntries() throws IOException {
+        var dir = Files.createDirectories(tempDir.resolve("with space"));
+        Files.writeString(Files.createDirectories(dir.resolve("sub dir")).resolve("file #1%.txt"), "escaped");
+        var ufs = UFSP.newFileSystem((path, base) -> true, dir);
+
+        var url = toUrl(ufs.getPath("sub dir/file #1%.txt"));
+        assertTrue(url.getPath().contains("%20"));
+        var connection = url.openConnection();
+        assertEquals(7, connection.getContentLength());
+        try (var in = connection.getInputStream()) {
+            assertEquals("escaped", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        ufs.close();
+    }
+
+    @Test
+    public void testResolveAfterClose() throws IOException {
+        Files.writeString(tempDir.resolve("file.txt"), "content");
+        var ufs = UFSP.newFileSystem((path, base) -> true, tempDir);
+        var url = toUrl(ufs.getPath("file.txt"));
+        try (var in = url.openStream()) {
+            assertEquals("content", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        // URLs of a closed file system no longer resolve, even after they were resolved before
+        ufs.close();
+        assertThrows(FileSystemNotFoundException.class, () -> url.openConnection().connect());
+
+        // A new file system over the same directory gets URLs of its own
+        var reopened = UFSP.newFileSystem((path, base) -> true, tempDir);
+        try (var in = toUrl(reopened.getPath("file.txt")).openStream()) {
+            assertEquals("content", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        reopened.close();
+    }
+}
@@ -0,0 +1,61 @@
+package cpw.mods.jarhandling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class TestJarContents {
+    /**
+     * Wraps the given object, but uses the default implementations of the given interface.
+     */
+    private static <T> T withDefaults(Class<T> type, T contents) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            if (method.isDefault()) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            }
+            try {
+                return method.invoke(contents, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }));
+    }
+
+    @Test
+    public void testDefaultListFilesMatchesIndex() throws IOException {
+        for (Path path : List.of(
+                Paths.get("src", "test", "resources", "dir1"),
+                Paths.get("sjh-jmh", "src", "testjars", "testjar1.jar"))) {
+            try (var contents = JarContents.of(path)) {
+                var defaults = withDefaults(JarContents.class, contents);
+                assertEquals(contents.listFiles(""), defaults.listFiles(""));
+                assertEquals(contents.listFiles("subdir1/"), defaults.listFiles("subdir1/"));
+                assertEquals(contents.listFiles("cpw/mods/"), defaults.listFiles("cpw/mods/"));
+            }
+        }
+    }
+
+    @Test
+    public void testDefaultModuleListFilesMatchesIndex() throws IOException {
+        var jar = SecureJar.from(Paths.get("src", "test", "resources", "dir1"));
+        var provider = jar.moduleDataProvider();
+        var defaults = withDefaults(SecureJar.ModuleDataProvider.class, provider);
+        assertEquals(provider.listFiles(""), defaults.listFiles(""));
+        assertEquals(provider.listFiles("subdir1/"), defaults.listFiles("subdir1/"));
+        jar.close();
+
+        // Modules without a location have nothing to walk
+        var virtualJar = new VirtualJar("virtual", Paths.get("src", "test", "resources", "dir1"), "some.pkg");
+        assertEquals(List.of(), virtualJar.moduleDataProvider().listFiles(""));
+        assertThrows(UnsupportedOperationException.class, () -> withDefaults(SecureJar.ModuleDataProvider.class, virtualJar.moduleDataProvider()).listFiles(""));
+        virtualJar.close();
+    }
+}
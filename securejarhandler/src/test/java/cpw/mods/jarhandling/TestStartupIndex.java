@@ -0,0 +1,119 @@
+package cpw.mods.jarhandling;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.lang.module.ModuleDescriptor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestStartupIndex {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        var file = tempDir.resolve("index.bin");
+        var jar = Files.writeString(tempDir.resolve("test.jar"), "content");
+
+        var index = new StartupIndex(file.toString());
+        var key = index.jarKey("packages", jar);
+        assertNotNull(key);
+        assertNull(index.lookup(key));
+        index.record(key, new String[] { "a", "b" });
+        index.recordLater("later", () -> new String[] { "c" });
+        index.save();
+
+        var reopened = new StartupIndex(file.toString());
+        assertArrayEquals(new String[] { "a", "b" }, reopened.lookup(reopened.jarKey("packages", jar)));
+        assertArrayEquals(new String[] { "c" }, reopened.lookup("later"));
+    }
+
+    @Test
+    public void testChangedJarMissesIndex() throws IOException {
+        var file = tempDir.resolve("index.bin");
+        var jar = Files.writeString(tempDir.resolve("test.jar"), "content");
+
+        var index = new StartupIndex(file.toString());
+        index.record(index.jarKey("packages", jar), new String[] { "a" });
+        index.save();
+
+        Files.writeString(jar, "changed content");
+        var reopened = new StartupIndex(file.toString());
+        assertNull(reopened.lookup(reopened.jarKey("packages", jar)));
+    }
+
+    @Test
+    public void testTruncatedIndexIsIgnored() throws IOException {
+        var file = tempDir.resolve("index.bin");
+        var index = new StartupIndex(file.toString());
+        index.record("key", new String[] { "a", "b" });
+        index.save();
+
+        var bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        assertNull(new StartupIndex(file.toString()).lookup("key"));
+    }
+
+    @Test
+    public void testDisabledIndex() throws IOException {
+        var jar = Files.writeString(tempDir.resolve("test.jar"), "content");
+        var index = new StartupIndex(null);
+        assertNull(index.jarKey("packages", jar));
+        index.record("key", new String[] { "a" });
+        assertNull(index.lookup("key"));
+    }
+
+    @Test
+    public void testDescriptorKey() {
+        var descriptor = ModuleDescriptor.newModule("test")
+                .packages(Set.of("a", "b", "c"))
+                .requires("other")
+                .exports("a")
+                .exports("b", Set.of("x", "y"))
+                .opens("c")
+                .build();
+        var sameDescriptor = ModuleDescriptor.newModule("test")
+                .opens("c")
+                .exports("b", Set.of("y", "x"))
+                .exports("a")
+                .requires("other")
+                .packages(Set.of("c", "b", "a"))
+                .build();
+        assertEquals(StartupIndex.descriptorKey(descriptor), StartupIndex.descriptorKey(sameDescriptor));
+
+        // Any change to what the module exports or reads changes the key
+        var otherExports = ModuleDescriptor.newModule("test")
+                .packages(Set.of("a", "b", "c"))
+                .requires("other")
+                .exports("a")
+                .exports("b", Set.of("x"))
+                .opens("c")
+                .build();
+        assertNotEquals(StartupIndex.descriptorKey(descriptor), StartupIndex.descriptorKey(otherExports));
+        var otherPackages = ModuleDescriptor.newModule("test")
+                .packages(Set.of("a", "b", "c", "d"))
+                .requires("other")
+                .exports("a")
+                .exports("b", Set.of("x", "y"))
+                .opens("c")
+                .build();
+        assertNotEquals(StartupIndex.descriptorKey(descriptor), StartupIndex.descriptorKey(otherPackages));
+        var otherRequires = ModuleDescriptor.newModule("test")
+                .packages(Set.of("a", "b", "c"))
+                .requires(Set.of(ModuleDescriptor.Requires.Modifier.TRANSITIVE), "other")
+                .exports("a")
+                .exports("b", Set.of("x", "y"))
+                .opens("c")
+                .build();
+        assertNotEquals(StartupIndex.descriptorKey(descriptor), StartupIndex.descriptorKey(otherRequires));
+    }
+}
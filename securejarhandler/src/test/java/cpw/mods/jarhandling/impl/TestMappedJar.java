@@ -0,0 +1,113 @@
+package cpw.mods.jarhandling.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cpw.mods.jarhandling.JarContents;
+import cpw.mods.jarhandling.JarContentsBuilder;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestMappedJar {
+    private static final byte[] STORED = "stored contents".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DEFLATED = "deflated contents ".repeat(1000).getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeJar() throws IOException {
+        var jar = tempDir.resolve("test.jar");
+        try (var out = new JarOutputStream(Files.newOutputStream(jar))) {
+            var stored = new ZipEntry("pkg/Stored.class");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(STORED.length);
+            var crc = new CRC32();
+            crc.update(STORED);
+            stored.setCrc(crc.getValue());
+            out.putNextEntry(stored);
+            out.write(STORED);
+            out.closeEntry();
+
+            out.putNextEntry(new ZipEntry("pkg/"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("pkg/Deflated.class"));
+            out.write(DEFLATED);
+            out.closeEntry();
+        }
+        return jar;
+    }
+
+    @Test
+    void testMappedJar() throws IOException {
+        var mapped = MappedJar.open(writeJar());
+        assertNotNull(mapped);
+        assertArrayEquals(STORED, mapped.read("pkg/Stored.class"));
+        assertArrayEquals(DEFLATED, mapped.read("pkg/Deflated.class"));
+        assertEquals(null, mapped.read("pkg/Missing.class"));
+        assertEquals(null, mapped.read("pkg/"));
+    }
+
+    @Test
+    void testReadFile() throws IOException {
+        try (var contents = JarContents.of(writeJar())) {
+            assertArrayEquals(STORED, contents.readFile("pkg/Stored.class").orElseThrow());
+            assertArrayEquals(DEFLATED, contents.readFile("pkg/Deflated.class").orElseThrow());
+            assertEquals(Optional.empty(), contents.readFile("pkg/Missing.class"));
+            // Names that need normalization go through the file system
+            assertArrayEquals(STORED, contents.readFile("pkg/../pkg/Stored.class").orElseThrow());
+        }
+    }
+
+    @Test
+    void testDuplicateEntries() throws IOException {
+        // Zip output streams reject duplicate names, so write two entries with names of the same length and rename one
+        var jar = tempDir.resolve("duplicate.jar");
+        try (var out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("pkg/A.class"));
+            out.write("first".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("pkg/B.class"));
+            out.write("second".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        var bytes = new String(Files.readAllBytes(jar), StandardCharsets.ISO_8859_1);
+        Files.write(jar, bytes.replace("pkg/B.class", "pkg/A.class").getBytes(StandardCharsets.ISO_8859_1));
+
+        byte[] expected;
+        try (var zipfs = FileSystems.newFileSystem(jar)) {
+            expected = Files.readAllBytes(zipfs.getPath("pkg/A.class"));
+        }
+        var mapped = MappedJar.open(jar);
+        assertNotNull(mapped);
+        assertArrayEquals(expected, mapped.read("pkg/A.class"));
+    }
+
+    @Test
+    void testReadFileAfterClose() throws IOException {
+        var contents = JarContents.of(writeJar());
+        assertArrayEquals(STORED, contents.readFile("pkg/Stored.class").orElseThrow());
+        contents.close();
+        assertThrows(ClosedFileSystemException.class, () -> contents.readFile("pkg/Stored.class"));
+    }
+
+    @Test
+    void testReadFileFiltered() throws IOException {
+        try (var contents = new JarContentsBuilder().paths(writeJar()).pathFilter((path, base) -> !path.equals("pkg/Stored.class")).build()) {
+            assertTrue(contents.readFile("pkg/Stored.class").isEmpty());
+            assertArrayEquals(DEFLATED, contents.readFile("pkg/Deflated.class").orElseThrow());
+        }
+    }
+}
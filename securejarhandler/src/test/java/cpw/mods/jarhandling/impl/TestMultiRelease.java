@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -27,6 +28,17 @@ public class TestMultiRelease {
         Assertions.assertNotEquals("too new", bContents.strip());
     }
 
+    @Test
+    public void testListFiles() {
+        Path rootDir = Paths.get("src", "test", "resources", "multirelease");
+        var jar = SecureJar.from(rootDir);
+
+        // Versioned files are listed under their unversioned name
+        Assertions.assertEquals(List.of("META-INF/MANIFEST.MF", "a.txt", "b.txt"), jar.moduleDataProvider().listFiles(""));
+        Assertions.assertEquals(List.of("a.txt"), jar.moduleDataProvider().listFiles("a"));
+        Assertions.assertEquals(List.of(), jar.moduleDataProvider().listFiles("c"));
+    }
+
     @Test
     public void testMultiReleaseNoVersions() {
         Path rootDir = Paths.get("src", "test", "resources", "multirelease-noversions");
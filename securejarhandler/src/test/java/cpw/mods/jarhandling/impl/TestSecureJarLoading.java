@@ -12,7 +12,12 @@ import cpw.mods.jarhandling.SecureJar;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.security.CodeSigner;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import org.junit.jupiter.api.BeforeAll;
@@ -121,4 +126,37 @@ public class TestSecureJarLoading {
             }
         }
     }
+
+    @Test // The same signed files are verified from several threads at once
+    void testConcurrentVerification() throws Exception {
+        final var path = Paths.get("src", "test", "resources", "signed.zip");
+        SecureJar jar = SecureJar.from(path);
+        var entries = new HashMap<String, byte[]>();
+        try (var is = Files.newInputStream(path)) {
+            ZipInputStream zis = new ZipInputStream(is);
+            for (var ze = zis.getNextEntry(); ze != null; ze = zis.getNextEntry()) {
+                if (SecureJarVerifier.isSigningRelated(ze.getName())) continue;
+                if (ze.isDirectory()) continue;
+                entries.put(ze.getName(), zis.readAllBytes());
+            }
+        }
+
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var results = new ArrayList<Future<CodeSigner[]>>();
+            for (int i = 0; i < 8; i++) {
+                entries.forEach((name, bytes) -> results.add(executor.submit(() -> jar.moduleDataProvider().verifyAndGetSigners(name, bytes))));
+            }
+            for (var result : results) {
+                var cs = result.get();
+                assertNotNull(cs, "Has code signers array");
+                assertTrue(cs.length > 0, "With length > 0");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (var name : entries.keySet()) {
+            assertEquals(SecureJar.Status.VERIFIED, jar.getFileStatus(name), "Entry is verified");
+        }
+    }
 }
@@ -1,19 +1,25 @@
 package cpw.mods.niofs.union;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -26,6 +32,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class TestUnionFS {
     private static final UnionFileSystemProvider UFSP = (UnionFileSystemProvider) FileSystemProvider.installedProviders().stream().filter(fsp -> fsp.getScheme().equals("union")).findFirst().orElseThrow(() -> new IllegalStateException("Couldn't find UnionFileSystemProvider"));
@@ -292,4 +299,133 @@ public class TestUnionFS {
                     StreamSupport.stream(dirStream.spliterator(), false).map(p -> () -> Files.exists(p)));
         }
     }
+
+    @Test
+    void testDirectoryIndexRefresh(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("first.txt"), "first");
+        final var ufs = UFSP.newFileSystem((path, base) -> !path.startsWith("filtered"), dir);
+        assertTrue(Files.exists(ufs.getPath("first.txt")));
+        assertFalse(Files.exists(ufs.getPath("second.txt")));
+
+        // Files created after the directory was indexed must still be found
+        Files.createDirectories(dir.resolve("sub"));
+        Files.writeString(dir.resolve("sub/second.txt"), "second");
+        Files.writeString(dir.resolve("filtered.txt"), "filtered");
+        assertTrue(Files.exists(ufs.getPath("sub/second.txt")));
+        assertTrue(Files.isDirectory(ufs.getPath("sub")));
+        assertEquals("second", Files.readString(ufs.getPath("/sub/second.txt")));
+        assertFalse(Files.exists(ufs.getPath("filtered.txt")));
+
+        // Modified files must not report the attributes they had when they were first looked up
+        Files.writeString(dir.resolve("first.txt"), "modified first");
+        assertEquals("modified first".length(), Files.size(ufs.getPath("first.txt")));
+        assertEquals("modified first", Files.readString(ufs.getPath("first.txt")));
+
+        // Deleted files must no longer be found
+        Files.delete(dir.resolve("sub/second.txt"));
+        assertFalse(Files.exists(ufs.getPath("sub/second.txt")));
+        assertThrows(NoSuchFileException.class, () -> Files.size(ufs.getPath("sub/second.txt")));
+        Files.delete(dir.resolve("sub"));
+        assertFalse(Files.exists(ufs.getPath("sub")));
+    }
+
+    @Test
+    void testStreamingInputStream() throws IOException {
+        final var jar1 = Paths.get("sjh-jmh", "src", "testjars", "testjar1.jar").toAbsolutePath().normalize();
+        final var ufs = UFSP.newFileSystem((path, base) -> true, jar1);
+        final var path = ufs.getPath("cpw/mods/niofs/union/UnionPath.class");
+        final var expected = Files.readAllBytes(path);
+        try (var in = Files.newInputStream(path)) {
+            assertEquals(expected.length, Files.size(path));
+            assertArrayEquals(expected, in.readAllBytes());
+        }
+        assertThrows(NoSuchFileException.class, () -> Files.newInputStream(ufs.getPath("Missing.class")));
+
+        assertTrue(ufs.isOpen());
+        ufs.close();
+        assertFalse(ufs.isOpen());
+    }
+
+    @Test
+    void testUriRoundTrip() throws IOException {
+        final var dir1 = Paths.get("src", "test", "resources", "dir1").toAbsolutePath().normalize();
+        final var ufs = UFSP.newFileSystem((path, base) -> true, dir1);
+        final var path = ufs.getPath("subdir1/masktestd1.txt");
+        final var uri = path.toUri();
+        assertSame(ufs, UFSP.getFileSystem(uri));
+        assertEquals(path.toAbsolutePath(), Paths.get(uri));
+        assertEquals(ufs.getRoot(), UFSP.getPath(ufs.getRoot().toUri()));
+
+        ufs.close();
+        assertThrows(FileSystemNotFoundException.class, () -> UFSP.getFileSystem(uri));
+    }
+
+    @Test
+    void testListFiles() throws IOException {
+        final var dir1 = Paths.get("src", "test", "resources", "dir1").toAbsolutePath().normalize();
+        final var dir2 = Paths.get("src", "test", "resources", "dir2").toAbsolutePath().normalize();
+        final var ufs = UFSP.newFileSystem((path, base) -> !path.equals("masktest2.txt"), dir1, dir2);
+
+        // Files in both base paths are listed once, filtered files and directories are not listed
+        assertEquals(List.of("masktest.txt", "masktest3.txt", "subdir1/masktestsd1.txt"), ufs.listFiles(""));
+        assertEquals(List.of("subdir1/masktestsd1.txt"), ufs.listFiles("subdir1/"));
+        assertEquals(List.of(), ufs.listFiles("missing/"));
+        assertThrows(UnsupportedOperationException.class, () -> ufs.listFiles("subdir1/").add("other.txt"));
+
+        final var jar1 = Paths.get("sjh-jmh", "src", "testjars", "testjar1.jar").toAbsolutePath().normalize();
+        final var jarFs = UFSP.newFileSystem(null, jar1);
+        final List<String> walked;
+        try (var walk = Files.walk(jarFs.getRoot())) {
+            walked = walk.filter(Files::isRegularFile).map(p -> jarFs.getRoot().relativize(p).toString()).sorted().toList();
+        }
+        assertEquals(walked, jarFs.listFiles(""));
+    }
+
+    @Test
+    void testDirectoryListing(@TempDir Path dir) throws IOException {
+        final var first = Files.createDirectories(dir.resolve("first"));
+        final var second = Files.createDirectories(dir.resolve("second"));
+        Files.writeString(first.resolve("shared.txt"), "first");
+        Files.writeString(second.resolve("shared.txt"), "second");
+        Files.writeString(second.resolve("only.txt"), "second");
+        final var ufs = UFSP.newFileSystem((path, base) -> !path.startsWith("filtered"), first, second);
+
+        // Entries present in several base paths are listed once
+        assertEquals(Set.of("shared.txt", "only.txt"), listNames(ufs.getRoot()));
+
+        // Files created after the directories were indexed are listed, filtered files are not
+        Files.writeString(first.resolve("added.txt"), "added");
+        Files.writeString(first.resolve("filtered.txt"), "filtered");
+        assertEquals(Set.of("shared.txt", "only.txt", "added.txt"), listNames(ufs.getRoot()));
+        assertThrows(NotDirectoryException.class, () -> Files.newDirectoryStream(ufs.getPath("only.txt")).close());
+    }
+
+    private static Set<String> listNames(Path dir) throws IOException {
+        try (var stream = Files.newDirectoryStream(dir)) {
+            final List<String> names = new ArrayList<>();
+            stream.forEach(path -> names.add(path.getFileName().toString()));
+            assertEquals(names.size(), Set.copyOf(names).size(), "Duplicate entries in " + names);
+            return Set.copyOf(names);
+        }
+    }
+
+    @Test
+    void testUriWithEscapedKey(@TempDir Path tempDir) throws IOException {
+        final var dir = Files.createDirectories(tempDir.resolve("with space"));
+        Files.writeString(dir.resolve("file.txt"), "content");
+        final var ufs = UFSP.newFileSystem((path, base) -> true, dir);
+        final var uri = ufs.getPath("file.txt").toUri();
+        assertTrue(uri.getRawPath().contains("%20"));
+        assertSame(ufs, UFSP.getFileSystem(uri));
+        assertEquals("content", Files.readString(Paths.get(uri)));
+
+        // A URI that escapes the key differently still finds the file system
+        final var otherUri = URI.create(uri.toString().replace("with%20space", "with%20sp%61ce"));
+        assertSame(ufs, UFSP.getFileSystem(otherUri));
+        assertEquals("content", Files.readString(Paths.get(otherUri)));
+
+        ufs.close();
+        assertThrows(FileSystemNotFoundException.class, () -> UFSP.getFileSystem(uri));
+        assertThrows(FileSystemNotFoundException.class, () -> UFSP.getFileSystem(otherUri));
+    }
 }
@@ -197,6 +197,30 @@ public class TestUnionPath {
         // relativize is tested in TestUnionFS
     }
 
+    @Test
+    void testCompareAndHash() {
+        var fsp = (UnionFileSystemProvider) FileSystemProvider.installedProviders().stream().filter(fs -> fs.getScheme().equals("union")).findFirst().orElseThrow();
+        var fs = fsp.newFileSystem((path, base) -> true, Paths.get("src").toAbsolutePath().normalize());
+
+        // Paths that were built differently but have the same names are equal
+        var parsed = fs.getPath("/one/two/three");
+        var built = fs.getPath("/").resolve("one").resolve(fs.getPath("two", "three"));
+        var parent = fs.getPath("/one/two/three/four").getParent();
+        assertEquals(parsed, built);
+        assertEquals(parsed, parent);
+        assertEquals(parsed.hashCode(), built.hashCode());
+        assertEquals(parsed.hashCode(), parent.hashCode());
+        assertEquals("three", parent.getFileName().toString());
+        assertEquals(fs.getPath("two/three"), parent.subpath(1, 3));
+
+        // Names are compared one by one, shorter paths come first
+        assertTrue(fs.getPath("a/b").compareTo(fs.getPath("a/c")) < 0);
+        assertTrue(fs.getPath("a/b").compareTo(fs.getPath("a/b/c")) < 0);
+        assertTrue(fs.getPath("a/bc").compareTo(fs.getPath("a/b/c")) > 0);
+        assertEquals(0, fs.getPath("a/b").compareTo(fs.getPath("a//b/")));
+        assertTrue(fs.getPath("/a").compareTo(fs.getPath("a")) > 0);
+    }
+
     private static void testNameParts(UnionFileSystem fs, Path path, String... names) {
         // getNameCount
         assertEquals(names.length, path.getNameCount());